@@ -0,0 +1,184 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequestEncoder;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameDecoder;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameEncoder;
+import io.netty.handler.codec.string.StringEncoder;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode a message with the handlers installed by the NettyChannelInitializer for a codec, and decode it with the
+ * handlers of the other side, on embedded channels, without network.
+ * The average encoded size of a message is reported next to the throughput, to compare the bytes on the wire of each
+ * codec.
+ *
+ * @author Grégory Van den Borre
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    /**
+     * STRING_BINARY is the STRING codec with the length prefixed binary frames.
+     */
+    @Param({"STRING", "STRING_BINARY", "WEBSOCKET", "HTTP"})
+    public String codec;
+
+    @Param({"32", "1024", "16384"})
+    public int messageSize;
+
+    private String message;
+
+    private EmbeddedChannel encoder;
+
+    private EmbeddedChannel decoder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.message = MessageSeparation.MESSAGE_BEGIN + "a".repeat(this.messageSize) + MessageSeparation.MESSAGE_END;
+        switch (this.codec) {
+            case "STRING":
+                this.encoder = new EmbeddedChannel(new StringEncoder(CharsetUtil.UTF_8));
+                this.decoder = new EmbeddedChannel(new MessageFrameDecoder(false, MAX_FRAME_LENGTH));
+                break;
+            case "STRING_BINARY":
+                this.encoder = new EmbeddedChannel(new LengthFieldPrepender(4), new StringEncoder(CharsetUtil.UTF_8));
+                this.decoder = new EmbeddedChannel(new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, 4, 0, 4));
+                break;
+            case "WEBSOCKET":
+                // Frames sent by a client are masked.
+                this.encoder = new EmbeddedChannel(new WebSocket13FrameEncoder(true));
+                this.decoder = new EmbeddedChannel(new WebSocket13FrameDecoder(true, false, MAX_FRAME_LENGTH));
+                break;
+            case "HTTP":
+                this.encoder = new EmbeddedChannel(new HttpRequestEncoder());
+                this.decoder = new EmbeddedChannel(new HttpServerCodec(), new HttpObjectAggregator(MAX_FRAME_LENGTH));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown codec: " + this.codec);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.encoder.finishAndReleaseAll();
+        this.decoder.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void encodeDecode(final Blackhole blackhole, final EncodedSize size) {
+        this.encoder.writeOutbound(this.newMessage());
+        size.messages++;
+        ByteBuf encoded;
+        while ((encoded = this.encoder.readOutbound()) != null) {
+            size.bytes += encoded.readableBytes();
+            this.decoder.writeInbound(encoded);
+        }
+        Object decoded;
+        while ((decoded = this.decoder.readInbound()) != null) {
+            blackhole.consume(decoded);
+            ReferenceCountUtil.release(decoded);
+        }
+    }
+
+    private Object newMessage() {
+        switch (this.codec) {
+            case "WEBSOCKET":
+                return new TextWebSocketFrame(this.message);
+            case "HTTP":
+                ByteBuf content = Unpooled.copiedBuffer(this.message, CharsetUtil.UTF_8);
+                DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST,
+                        "/", content);
+                request.headers().set(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+                return request;
+            default:
+                return this.message;
+        }
+    }
+
+    /**
+     * Bytes written by the encoder, reported as the average size of an encoded message.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+
+        private long bytes;
+
+        private long messages;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytes = 0;
+            this.messages = 0;
+        }
+
+        /**
+         * @return The average number of bytes on the wire for a message.
+         */
+        public double encodedBytesPerMessage() {
+            return this.messages == 0 ? 0 : (double) this.bytes / this.messages;
+        }
+    }
+}
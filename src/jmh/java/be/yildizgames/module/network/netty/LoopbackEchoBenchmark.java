@@ -0,0 +1,292 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Echo messages over loopback through the pipelines built by the NettyChannelInitializer, for every codec, transport,
+ * and with or without flush consolidation.
+ * roundTrip measures the latency of a single message, burst the throughput of many messages sent without waiting.
+ * A transport not available on the machine fails its trial, the other ones still run.
+ *
+ * @author Grégory Van den Borre
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoopbackEchoBenchmark {
+
+    /**
+     * Number of messages sent without waiting in a burst.
+     */
+    private static final int BURST = 256;
+
+    @Param({"STRING", "WEBSOCKET"})
+    public DecoderEncoder codec;
+
+    @Param({"NIO", "EPOLL", "IO_URING"})
+    public NettyTransport transport;
+
+    @Param({"false", "true"})
+    public boolean flushConsolidation;
+
+    @Param({"64"})
+    public int messageSize;
+
+    private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+
+    private EventLoopGroup serverGroup;
+
+    private EventLoopGroup clientGroup;
+
+    private Channel client;
+
+    private String message;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if (!this.transport.isAvailable()) {
+            throw new IllegalStateException(this.transport + " transport not available.");
+        }
+        this.message = MessageSeparation.MESSAGE_BEGIN + "a".repeat(this.messageSize) + MessageSeparation.MESSAGE_END;
+        PipelineConfiguration.Builder pipelineBuilder = PipelineConfiguration.builder();
+        if (this.flushConsolidation) {
+            pipelineBuilder.flushConsolidation(256, true);
+        }
+        PipelineConfiguration pipeline = pipelineBuilder.build();
+        this.serverGroup = this.transport.newEventLoopGroup(1);
+        this.clientGroup = this.transport.newEventLoopGroup(1);
+        Channel server = new ServerBootstrap()
+                .group(this.serverGroup)
+                .channel(this.transport.getServerChannelClass())
+                .childHandler(new NettyChannelInitializer(new EchoFactory(this.codec, true, null), pipeline))
+                .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .sync()
+                .channel();
+        InetSocketAddress address = (InetSocketAddress) server.localAddress();
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        URI uri = new URI("ws://" + address.getHostString() + ":" + address.getPort() + "/websocket");
+        this.client = new Bootstrap()
+                .group(this.clientGroup)
+                .channel(this.transport.getChannelClass())
+                .handler(new NettyChannelInitializer(new EchoFactory(this.codec, false, uri, this.received, ready),
+                        pipeline))
+                .connect(address)
+                .sync()
+                .channel();
+        if (this.codec != DecoderEncoder.WEBSOCKET) {
+            ready.complete(null);
+        }
+        ready.get(10, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (this.client != null) {
+            this.client.close().syncUninterruptibly();
+        }
+        if (this.clientGroup != null) {
+            this.clientGroup.shutdownGracefully().syncUninterruptibly();
+        }
+        if (this.serverGroup != null) {
+            this.serverGroup.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object roundTrip() throws InterruptedException {
+        this.client.writeAndFlush(this.newMessage());
+        return this.received.take();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @OperationsPerInvocation(BURST)
+    public void burst() throws InterruptedException {
+        for (int i = 0; i < BURST; i++) {
+            this.client.writeAndFlush(this.newMessage());
+        }
+        for (int i = 0; i < BURST; i++) {
+            this.received.take();
+        }
+    }
+
+    private Object newMessage() {
+        return this.codec == DecoderEncoder.WEBSOCKET ? new TextWebSocketFrame(this.message) : this.message;
+    }
+
+    /**
+     * Create the echo handler on the server side, and the receiving handler on the client side.
+     */
+    private static final class EchoFactory implements HandlerFactory {
+
+        private final DecoderEncoder codec;
+
+        private final boolean server;
+
+        private final URI uri;
+
+        private final BlockingQueue<Object> received;
+
+        private final CompletableFuture<Void> ready;
+
+        private EchoFactory(final DecoderEncoder codec, final boolean server, final URI uri) {
+            this(codec, server, uri, null, null);
+        }
+
+        private EchoFactory(final DecoderEncoder codec, final boolean server, final URI uri,
+                            final BlockingQueue<Object> received, final CompletableFuture<Void> ready) {
+            super();
+            this.codec = codec;
+            this.server = server;
+            this.uri = uri;
+            this.received = received;
+            this.ready = ready;
+        }
+
+        @Override
+        public ChannelHandler create() {
+            if (this.server) {
+                return new EchoHandler();
+            }
+            ReceiveHandler receiver = new ReceiveHandler(this.received, this.ready);
+            if (this.codec != DecoderEncoder.WEBSOCKET) {
+                return receiver;
+            }
+            return new ChannelInitializer<Channel>() {
+
+                @Override
+                protected void initChannel(final Channel ch) {
+                    ch.pipeline().addLast(new WebSocketClientProtocolHandler(
+                            WebSocketClientHandshakerFactory.newHandshaker(EchoFactory.this.uri, WebSocketVersion.V13,
+                                    null, true, new DefaultHttpHeaders())));
+                    ch.pipeline().addLast(receiver);
+                }
+            };
+        }
+
+        @Override
+        public DecoderEncoder getCodec() {
+            return this.codec;
+        }
+
+        @Override
+        public boolean isServer() {
+            return this.server;
+        }
+    }
+
+    /**
+     * Send back every received message, the frames are forwarded without copy.
+     */
+    private static final class EchoHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+            if (msg instanceof String || msg instanceof WebSocketFrame) {
+                ctx.writeAndFlush(msg);
+            } else {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+    }
+
+    /**
+     * Hand the echoed messages to the benchmark thread.
+     */
+    private static final class ReceiveHandler extends ChannelInboundHandlerAdapter {
+
+        private final BlockingQueue<Object> received;
+
+        private final CompletableFuture<Void> ready;
+
+        private ReceiveHandler(final BlockingQueue<Object> received, final CompletableFuture<Void> ready) {
+            super();
+            this.received = received;
+            this.ready = ready;
+        }
+
+        @Override
+        public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt) throws Exception {
+            if (evt == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+                this.ready.complete(null);
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+            if (msg instanceof TextWebSocketFrame) {
+                this.received.add(((TextWebSocketFrame) msg).text());
+                ((TextWebSocketFrame) msg).release();
+            } else {
+                this.received.add(msg);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.client;
+
+import be.yildizgames.module.network.netty.MessageFrameDecoder;
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the client STRING framing at the byte level by the MessageFrameDecoder, with the former client pipeline, a
+ * StringDecoder followed by the text reassembly of the AbstractClientMessageHandler, on a stream cut in chunks of a
+ * given size.
+ *
+ * @author Grégory Van den Borre
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientDecoderBenchmark {
+
+    /**
+     * Number of messages in the stream.
+     */
+    private static final int MESSAGES = 100;
+
+    @Param({"16", "256"})
+    public int messageSize;
+
+    /**
+     * Size of the received chunks, 1460 is a typical TCP segment payload.
+     */
+    @Param({"64", "1460", "16384"})
+    public int chunkSize;
+
+    private ByteBuf stream;
+
+    private EmbeddedChannel frameDecoder;
+
+    private EmbeddedChannel stringDecoder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String message = MessageSeparation.MESSAGE_BEGIN + "a".repeat(this.messageSize) + MessageSeparation.MESSAGE_END;
+        this.stream = Unpooled.unreleasableBuffer(
+                Unpooled.copiedBuffer(message.repeat(MESSAGES), CharsetUtil.UTF_8).asReadOnly());
+        // The client is never connected, it only receives the decoded messages.
+        SimpleClientNetty client = new SimpleClientNetty(new Bootstrap());
+        this.frameDecoder = new EmbeddedChannel(new MessageFrameDecoder(true, 1 << 20), new SimpleClientHandler(client));
+        this.stringDecoder = new EmbeddedChannel(
+                new StringDecoder(CharsetUtil.UTF_8), new FormerClientHandler(client));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.frameDecoder.finishAndReleaseAll();
+        this.stringDecoder.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void frameDecoder() {
+        this.receive(this.frameDecoder);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void stringDecoder() {
+        this.receive(this.stringDecoder);
+    }
+
+    private void receive(final EmbeddedChannel channel) {
+        int length = this.stream.readableBytes();
+        for (int offset = 0; offset < length; offset += this.chunkSize) {
+            int size = Math.min(this.chunkSize, length - offset);
+            channel.writeInbound(Unpooled.copiedBuffer(this.stream.slice(offset, size)));
+        }
+    }
+
+    /**
+     * Client handler of the former STRING pipeline, every decoded chunk is reassembled and split in messages.
+     */
+    private static final class FormerClientHandler extends AbstractClientMessageHandler<String> {
+
+        private FormerClientHandler(final SimpleClientNetty client) {
+            super(client);
+        }
+
+        @Override
+        protected void channelRead0(final ChannelHandlerContext ctx, final String message) {
+            this.handleMessage(message, ByteBufUtil.utf8Bytes(message));
+        }
+    }
+}
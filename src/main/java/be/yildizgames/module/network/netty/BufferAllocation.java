@@ -0,0 +1,195 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.RecvByteBufAllocator;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Buffer allocator used by the channels, and adaptive receive buffer bounds per codec.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class BufferAllocation {
+
+    /**
+     * Allocator shared by all the channels using this configuration.
+     */
+    private final ByteBufAllocator allocator;
+
+    /**
+     * Receive buffer allocator for every configured codec.
+     */
+    private final Map<DecoderEncoder, RecvByteBufAllocator> receiveAllocators;
+
+    /**
+     * Allocator metrics.
+     */
+    private final BufferPoolMetrics metrics;
+
+    private BufferAllocation(final Builder builder) {
+        super();
+        if (!builder.pooled) {
+            this.allocator = new UnpooledByteBufAllocator(builder.preferDirect);
+        } else if (builder.heapArenas < 0 && builder.directArenas < 0 && builder.preferDirect) {
+            this.allocator = PooledByteBufAllocator.DEFAULT;
+        } else {
+            this.allocator = new PooledByteBufAllocator(
+                    builder.preferDirect,
+                    builder.heapArenas < 0 ? PooledByteBufAllocator.defaultNumHeapArena() : builder.heapArenas,
+                    builder.directArenas < 0 ? PooledByteBufAllocator.defaultNumDirectArena() : builder.directArenas,
+                    PooledByteBufAllocator.defaultPageSize(),
+                    PooledByteBufAllocator.defaultMaxOrder(),
+                    PooledByteBufAllocator.defaultSmallCacheSize(),
+                    PooledByteBufAllocator.defaultNormalCacheSize(),
+                    PooledByteBufAllocator.defaultUseCacheForAllThreads());
+        }
+        this.receiveAllocators = new EnumMap<>(builder.receiveAllocators);
+        this.metrics = new BufferPoolMetrics(this.allocator);
+    }
+
+    /**
+     * @return A new builder, initialized with pooled direct buffers and the netty default arena counts.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The allocator shared by all the channels using this configuration.
+     */
+    public ByteBufAllocator getAllocator() {
+        return this.allocator;
+    }
+
+    /**
+     * @param codec Codec used by the channel.
+     * @return The receive buffer allocator for this codec, empty to keep the netty default.
+     */
+    public Optional<RecvByteBufAllocator> getReceiveAllocator(final DecoderEncoder codec) {
+        return Optional.ofNullable(this.receiveAllocators.get(codec));
+    }
+
+    /**
+     * @return The allocator memory and arena metrics.
+     */
+    public BufferPoolMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Build a buffer allocation configuration.
+     */
+    public static final class Builder {
+
+        private final Map<DecoderEncoder, RecvByteBufAllocator> receiveAllocators = new EnumMap<>(DecoderEncoder.class);
+
+        private boolean pooled = true;
+
+        private boolean preferDirect = true;
+
+        private int heapArenas = -1;
+
+        private int directArenas = -1;
+
+        private Builder() {
+            super();
+        }
+
+        /**
+         * Allocate a new buffer every time instead of using a pool.
+         *
+         * @return This builder.
+         */
+        public Builder unpooled() {
+            this.pooled = false;
+            return this;
+        }
+
+        /**
+         * Allocate heap buffers instead of direct buffers.
+         *
+         * @return This builder.
+         */
+        public Builder heap() {
+            this.preferDirect = false;
+            return this;
+        }
+
+        /**
+         * @param arenas Number of heap arenas of the pool, netty default is 2 * available cores.
+         * @return This builder.
+         */
+        public Builder heapArenas(final int arenas) {
+            this.heapArenas = requirePositive(arenas, "Heap arenas");
+            return this;
+        }
+
+        /**
+         * @param arenas Number of direct arenas of the pool, netty default is 2 * available cores.
+         * @return This builder.
+         */
+        public Builder directArenas(final int arenas) {
+            this.directArenas = requirePositive(arenas, "Direct arenas");
+            return this;
+        }
+
+        /**
+         * Set the bounds of the adaptive receive buffer for the channels using a codec.
+         *
+         * @param codec Codec to configure.
+         * @param minimum Minimum receive buffer size, in bytes.
+         * @param initial Initial receive buffer size, in bytes.
+         * @param maximum Maximum receive buffer size, in bytes.
+         * @return This builder.
+         */
+        public Builder receiveBuffer(final DecoderEncoder codec, final int minimum, final int initial, final int maximum) {
+            this.receiveAllocators.put(codec, new AdaptiveRecvByteBufAllocator(minimum, initial, maximum));
+            return this;
+        }
+
+        /**
+         * @return The built configuration, the allocator is created at this time.
+         */
+        public BufferAllocation build() {
+            return new BufferAllocation(this);
+        }
+
+        private static int requirePositive(final int value, final String name) {
+            if (value < 0) {
+                throw new IllegalArgumentException(name + " must be positive: " + value);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetric;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+
+import java.util.List;
+
+/**
+ * Live memory and pool metrics of a buffer allocator, values are computed on every call.
+ * Allocations served by the thread local caches are not counted by netty, the arena allocations are the cache misses,
+ * and the number of threads sharing an arena shows the arena contention.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class BufferPoolMetrics {
+
+    /**
+     * Memory metrics, null if the allocator does not provide them.
+     */
+    private final ByteBufAllocatorMetric metric;
+
+    /**
+     * Pool metrics, null if the allocator is not pooled.
+     */
+    private final PooledByteBufAllocatorMetric pooledMetric;
+
+    /**
+     * Create the metrics for an allocator.
+     *
+     * @param allocator Allocator to monitor.
+     */
+    public BufferPoolMetrics(final ByteBufAllocator allocator) {
+        super();
+        this.metric = allocator instanceof ByteBufAllocatorMetricProvider
+                ? ((ByteBufAllocatorMetricProvider) allocator).metric()
+                : null;
+        this.pooledMetric = allocator instanceof PooledByteBufAllocator
+                ? ((PooledByteBufAllocator) allocator).metric()
+                : null;
+    }
+
+    /**
+     * @return true if the allocator is pooled, the arena metrics are 0 otherwise.
+     */
+    public boolean isPooled() {
+        return this.pooledMetric != null;
+    }
+
+    /**
+     * @return The direct memory used by the allocator, in bytes, -1 if unknown.
+     */
+    public long getUsedDirectMemory() {
+        return this.metric == null ? -1 : this.metric.usedDirectMemory();
+    }
+
+    /**
+     * @return The heap memory used by the allocator, in bytes, -1 if unknown.
+     */
+    public long getUsedHeapMemory() {
+        return this.metric == null ? -1 : this.metric.usedHeapMemory();
+    }
+
+    public int getDirectArenas() {
+        return this.pooledMetric == null ? 0 : this.pooledMetric.numDirectArenas();
+    }
+
+    public int getHeapArenas() {
+        return this.pooledMetric == null ? 0 : this.pooledMetric.numHeapArenas();
+    }
+
+    /**
+     * @return The number of threads having a local cache.
+     */
+    public int getThreadLocalCaches() {
+        return this.pooledMetric == null ? 0 : this.pooledMetric.numThreadLocalCaches();
+    }
+
+    /**
+     * @return The highest number of threads sharing a same direct arena, more than 1 means contention on this arena.
+     */
+    public int getMaxThreadsPerDirectArena() {
+        return this.pooledMetric == null ? 0 : maxThreads(this.pooledMetric.directArenas());
+    }
+
+    /**
+     * @return The highest number of threads sharing a same heap arena, more than 1 means contention on this arena.
+     */
+    public int getMaxThreadsPerHeapArena() {
+        return this.pooledMetric == null ? 0 : maxThreads(this.pooledMetric.heapArenas());
+    }
+
+    /**
+     * @return The number of allocations not served by a thread local cache.
+     */
+    public long getArenaAllocations() {
+        return this.pooledMetric == null
+                ? 0
+                : allocations(this.pooledMetric.directArenas()) + allocations(this.pooledMetric.heapArenas());
+    }
+
+    /**
+     * @return The number of buffers currently allocated from the arenas.
+     */
+    public long getActiveArenaAllocations() {
+        if (this.pooledMetric == null) {
+            return 0;
+        }
+        long result = 0;
+        for (PoolArenaMetric arena : this.pooledMetric.directArenas()) {
+            result += arena.numActiveAllocations();
+        }
+        for (PoolArenaMetric arena : this.pooledMetric.heapArenas()) {
+            result += arena.numActiveAllocations();
+        }
+        return result;
+    }
+
+    private static int maxThreads(final List<PoolArenaMetric> arenas) {
+        int result = 0;
+        for (PoolArenaMetric arena : arenas) {
+            result = Math.max(result, arena.numThreadCaches());
+        }
+        return result;
+    }
+
+    private static long allocations(final List<PoolArenaMetric> arenas) {
+        long result = 0;
+        for (PoolArenaMetric arena : arenas) {
+            result += arena.numAllocations();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Buffer pool: direct=" + this.getUsedDirectMemory()
+                + " heap=" + this.getUsedHeapMemory()
+                + " arenaAllocations=" + this.getArenaAllocations()
+                + " activeArenaAllocations=" + this.getActiveArenaAllocations()
+                + " threadCaches=" + this.getThreadLocalCaches()
+                + " maxThreadsPerDirectArena=" + this.getMaxThreadsPerDirectArena();
+    }
+}
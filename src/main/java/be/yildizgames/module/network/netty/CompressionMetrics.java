@@ -0,0 +1,124 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the permessage-deflate compression of the outbound websocket messages.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class CompressionMetrics {
+
+    /**
+     * Size of the compressed messages before compression, in bytes.
+     */
+    private final LongAdder uncompressedBytes = new LongAdder();
+
+    /**
+     * Size of the compressed messages after compression, in bytes.
+     */
+    private final LongAdder compressedBytes = new LongAdder();
+
+    /**
+     * Number of compressed frames.
+     */
+    private final LongAdder compressedFrames = new LongAdder();
+
+    /**
+     * Number of frames sent uncompressed, because they were under the threshold.
+     */
+    private final LongAdder skippedFrames = new LongAdder();
+
+    /**
+     * Size of the frames sent uncompressed, in bytes.
+     */
+    private final LongAdder skippedBytes = new LongAdder();
+
+    /**
+     * Time spent compressing, in nanoseconds.
+     */
+    private final LongAdder compressionNanos = new LongAdder();
+
+    CompressionMetrics() {
+        super();
+    }
+
+    void compressed(final int before, final int after, final long nanos) {
+        this.compressedFrames.increment();
+        this.uncompressedBytes.add(before);
+        this.compressedBytes.add(after);
+        this.compressionNanos.add(nanos);
+    }
+
+    void skipped(final int size) {
+        this.skippedFrames.increment();
+        this.skippedBytes.add(size);
+    }
+
+    /**
+     * @return The size of the compressed frames before compression, divided by their size after compression, 1 if
+     * nothing was compressed.
+     */
+    public double getCompressionRatio() {
+        long after = this.compressedBytes.sum();
+        return after == 0 ? 1 : (double) this.uncompressedBytes.sum() / after;
+    }
+
+    /**
+     * @return The number of bytes saved by the compression.
+     */
+    public long getSavedBytes() {
+        return this.uncompressedBytes.sum() - this.compressedBytes.sum();
+    }
+
+    public long getCompressedFrames() {
+        return this.compressedFrames.sum();
+    }
+
+    public long getSkippedFrames() {
+        return this.skippedFrames.sum();
+    }
+
+    public long getSkippedBytes() {
+        return this.skippedBytes.sum();
+    }
+
+    /**
+     * @return The total time spent compressing, in nanoseconds.
+     */
+    public long getCompressionNanos() {
+        return this.compressionNanos.sum();
+    }
+
+    /**
+     * @return The average time spent compressing a frame, in nanoseconds.
+     */
+    public long getAverageCompressionNanos() {
+        long frames = this.compressedFrames.sum();
+        return frames == 0 ? 0 : this.compressionNanos.sum() / frames;
+    }
+}
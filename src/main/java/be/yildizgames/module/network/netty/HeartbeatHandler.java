@@ -0,0 +1,239 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Close the dead connections, send the heartbeat pings, answer the pings of the other side, and measure the round
+ * trip time from the pongs.
+ * The connection is closed when nothing is received for the reader idle time, a ping is sent when nothing is sent for
+ * the writer idle time, and at every heartbeat interval.
+ * With the STRING codec, ping and pong are control messages carrying the sender time, the other side must have the
+ * heartbeat enabled too to answer them. With the WEBSOCKET codec, ping and pong frames are used. Pings are not
+ * supported by the binary framing of the STRING codec and by the HTTP codec, the connections are then only closed when
+ * idle.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class HeartbeatHandler extends ChannelInboundHandlerAdapter {
+
+    private static final System.Logger LOGGER = System.getLogger(HeartbeatHandler.class.getName());
+
+    /**
+     * Ping control message content prefix, control messages start with a control character like the resume ones.
+     */
+    private static final String PING = "\u0001ping:";
+
+    /**
+     * Pong control message content prefix.
+     */
+    private static final String PONG = "\u0001pong:";
+
+    /**
+     * Weight of a new sample in the smoothed round trip time, as a right shift, 1/8 like TCP.
+     */
+    private static final int SMOOTHING_SHIFT = 3;
+
+    /**
+     * True if the pings are websocket frames, false if they are text messages.
+     */
+    private final boolean webSocket;
+
+    /**
+     * Interval between two pings, 0 to only send them when the writer is idle.
+     */
+    private final long intervalMillis;
+
+    /**
+     * True once pings can be sent: when the channel is active, or when the handshake is complete for a websocket.
+     * Only accessed from the event loop.
+     */
+    private boolean ready;
+
+    /**
+     * Periodic pings, null if not started.
+     */
+    private ScheduledFuture<?> heartbeat;
+
+    /**
+     * Smoothed round trip time, 0 until the first pong, only written from the event loop.
+     */
+    private volatile long smoothedRoundTrip;
+
+    /**
+     * Last measured round trip time, 0 until the first pong, only written from the event loop.
+     */
+    private volatile long lastRoundTrip;
+
+    /**
+     * Create a new handler.
+     *
+     * @param webSocket True if the channel uses the WEBSOCKET codec.
+     * @param interval Interval between two pings, zero to only send them when the writer is idle.
+     */
+    public HeartbeatHandler(final boolean webSocket, final Duration interval) {
+        super();
+        this.webSocket = webSocket;
+        this.intervalMillis = interval.toMillis();
+    }
+
+    @Override
+    public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+        if (!this.webSocket) {
+            this.start(ctx);
+        }
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        this.ready = false;
+        if (this.heartbeat != null) {
+            this.heartbeat.cancel(false);
+            this.heartbeat = null;
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            IdleState state = ((IdleStateEvent) evt).state();
+            if (state == IdleState.READER_IDLE) {
+                LOGGER.log(System.Logger.Level.DEBUG, "Closing idle connection: {0}", ctx.channel());
+                ctx.close();
+            } else if (state == IdleState.WRITER_IDLE) {
+                this.ping(ctx);
+            }
+            return;
+        }
+        // Nothing can be sent on a websocket before the handshake is complete.
+        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete
+                || evt == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+            this.start(ctx);
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+        if (msg instanceof String) {
+            String content = ResumeProtocol.controlContent((String) msg);
+            if (content != null && content.startsWith(PING)) {
+                ctx.writeAndFlush(frame(PONG + content.substring(PING.length())));
+                return;
+            }
+            if (content != null && content.startsWith(PONG)) {
+                try {
+                    this.pong(Long.parseLong(content.substring(PONG.length())));
+                } catch (NumberFormatException e) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Invalid pong: {0}", content);
+                }
+                return;
+            }
+        } else if (msg instanceof PingWebSocketFrame) {
+            // The pong takes over the ping content.
+            ctx.writeAndFlush(new PongWebSocketFrame(((PingWebSocketFrame) msg).content()));
+            return;
+        } else if (msg instanceof PongWebSocketFrame) {
+            ByteBuf content = ((PongWebSocketFrame) msg).content();
+            if (content.readableBytes() >= Long.BYTES) {
+                this.pong(content.getLong(content.readerIndex()));
+            }
+            content.release();
+            return;
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    /**
+     * @return The smoothed round trip time, empty until the first pong is received.
+     */
+    public Optional<Duration> getRoundTripTime() {
+        long current = this.smoothedRoundTrip;
+        return current == 0 ? Optional.empty() : Optional.of(Duration.ofNanos(current));
+    }
+
+    /**
+     * @return The last measured round trip time, empty until the first pong is received.
+     */
+    public Optional<Duration> getLastRoundTripTime() {
+        long current = this.lastRoundTrip;
+        return current == 0 ? Optional.empty() : Optional.of(Duration.ofNanos(current));
+    }
+
+    private void start(final ChannelHandlerContext ctx) {
+        this.ready = true;
+        if (this.intervalMillis > 0 && this.heartbeat == null) {
+            this.heartbeat = ctx.executor().scheduleAtFixedRate(() -> this.ping(ctx),
+                    this.intervalMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void ping(final ChannelHandlerContext ctx) {
+        // The writer can be idle during the websocket handshake, while only the HTTP codec is in the pipeline.
+        if (!this.ready) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (this.webSocket) {
+            ctx.writeAndFlush(new PingWebSocketFrame(ctx.alloc().buffer(Long.BYTES).writeLong(now)));
+        } else {
+            ctx.writeAndFlush(frame(PING + now));
+        }
+    }
+
+    /**
+     * Update the round trip time, on the event loop.
+     *
+     * @param sent Time the ping was sent, as given by System.nanoTime.
+     */
+    private void pong(final long sent) {
+        // At least 1 ns, 0 means no sample yet.
+        long sample = Math.max(System.nanoTime() - sent, 1);
+        long previous = this.smoothedRoundTrip;
+        this.lastRoundTrip = sample;
+        this.smoothedRoundTrip = previous == 0 ? sample : previous + ((sample - previous) >> SMOOTHING_SHIFT);
+    }
+
+    private static String frame(final String content) {
+        return MessageSeparation.MESSAGE_BEGIN + content + MessageSeparation.MESSAGE_END;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the received messages rejected because they exceed the maximum message size, for all the connections
+ * sharing a pipeline configuration.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class InboundSizeMetrics {
+
+    /**
+     * Number of rejected messages.
+     */
+    private final LongAdder rejectedMessages = new LongAdder();
+
+    InboundSizeMetrics() {
+        super();
+    }
+
+    void rejected() {
+        this.rejectedMessages.increment();
+    }
+
+    public long getRejectedMessages() {
+        return this.rejectedMessages.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Oversized messages rejected: " + this.getRejectedMessages();
+    }
+}
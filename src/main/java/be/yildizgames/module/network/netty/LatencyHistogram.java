@@ -0,0 +1,271 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of durations, in nanoseconds, every power of two range is split in 16 buckets, so a value is
+ * reported with at most 6.25% error.
+ * Every recording thread, typically an event loop, writes its own buckets without lock nor contention, they are
+ * merged when read. The buckets of a terminated thread are folded into a retired recorder and dropped, so short
+ * lived recording threads do not accumulate.
+ * The buckets of a thread are found in a single thread local shared by all the histograms, so creating many
+ * histograms does not consume a thread local index each.
+ * A percentile is reported as the upper bound of the bucket holding it, capped by the largest recorded value, so it is
+ * never lower than the exact percentile, and at most 6.25% higher.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * Buckets of the current thread for every histogram it recorded a value in, a histogram no longer used can be
+     * garbage collected.
+     */
+    private static final FastThreadLocal<Map<LatencyHistogram, Recorder>> RECORDERS = new FastThreadLocal<>() {
+
+        @Override
+        protected Map<LatencyHistogram, Recorder> initialValue() {
+            return new WeakHashMap<>();
+        }
+    };
+
+    /**
+     * Buckets of every thread that recorded a value.
+     */
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+
+    /**
+     * Values recorded by the terminated threads.
+     */
+    private final Recorder retired = new Recorder(null);
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos Duration, in nanoseconds.
+     */
+    public void record(final long nanos) {
+        RECORDERS.get().computeIfAbsent(this, LatencyHistogram::newRecorder).record(Math.max(0, nanos));
+    }
+
+    /**
+     * Create the buckets of the current thread.
+     *
+     * @return The created recorder, registered to be read.
+     */
+    private Recorder newRecorder() {
+        Recorder result = new Recorder(Thread.currentThread());
+        this.recorders.add(result);
+        return result;
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public synchronized long getCount() {
+        long result = 0;
+        for (Recorder r : this.collect()) {
+            result += r.count.get();
+        }
+        return result;
+    }
+
+    /**
+     * @return The largest recorded value, in nanoseconds.
+     */
+    public synchronized long getMax() {
+        long result = 0;
+        for (Recorder r : this.collect()) {
+            result = Math.max(result, r.max.get());
+        }
+        return result;
+    }
+
+    /**
+     * @return The mean of the recorded values, in nanoseconds.
+     */
+    public synchronized long getMean() {
+        long count = 0;
+        long sum = 0;
+        for (Recorder r : this.collect()) {
+            count += r.count.get();
+            sum += r.sum.get();
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @param percentile Percentile to compute, between 0 and 100.
+     * @return The value under which the given percentage of the recorded values are, in nanoseconds, it is the upper
+     * bound of the bucket holding the percentile, capped by the largest recorded value.
+     */
+    public synchronized long getPercentile(final double percentile) {
+        long[] merged = new long[BUCKETS];
+        long count = 0;
+        long max = 0;
+        for (Recorder r : this.collect()) {
+            max = Math.max(max, r.max.get());
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = r.counts.get(i);
+                merged[i] += c;
+                count += c;
+            }
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long cumulated = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulated += merged[i];
+            if (cumulated >= target) {
+                return Math.min(highest(i), max);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Clear the recorded values, a value recorded at the same time may be lost.
+     */
+    public synchronized void reset() {
+        for (Recorder r : this.collect()) {
+            for (int i = 0; i < BUCKETS; i++) {
+                r.counts.set(i, 0);
+            }
+            r.count.set(0);
+            r.sum.set(0);
+            r.max.set(0);
+        }
+    }
+
+    /**
+     * Fold the recorders of the terminated threads into the retired one, and drop them.
+     * The termination of a thread is detected with Thread.isAlive, so all its values are visible.
+     *
+     * @return The recorders of the live threads, and the retired one.
+     */
+    private List<Recorder> collect() {
+        List<Recorder> result = new ArrayList<>(this.recorders.size() + 1);
+        for (Recorder r : this.recorders) {
+            if (r.owner.isAlive()) {
+                result.add(r);
+            } else if (this.recorders.remove(r)) {
+                this.retired.fold(r);
+            }
+        }
+        result.add(this.retired);
+        return result;
+    }
+
+    static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long value(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param index Bucket index.
+     * @return The highest value of the bucket.
+     */
+    static long highest(final int index) {
+        long next = value(index + 1);
+        // The bucket after the one holding Long.MAX_VALUE overflows.
+        return next <= 0 ? Long.MAX_VALUE : next - 1;
+    }
+
+    /**
+     * Buckets written by a single thread, the values are published with lazySet, without memory barrier.
+     */
+    private static final class Recorder {
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong sum = new AtomicLong();
+
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Thread writing the buckets, null for the retired recorder.
+         */
+        private final Thread owner;
+
+        private Recorder(final Thread owner) {
+            super();
+            this.owner = owner;
+        }
+
+        private void record(final long value) {
+            int index = index(value);
+            this.counts.lazySet(index, this.counts.get(index) + 1);
+            this.count.lazySet(this.count.get() + 1);
+            this.sum.lazySet(this.sum.get() + value);
+            if (value > this.max.get()) {
+                this.max.lazySet(value);
+            }
+        }
+
+        /**
+         * Add the values of a recorder whose thread is terminated, called with the histogram lock held.
+         *
+         * @param other Recorder to add.
+         */
+        private void fold(final Recorder other) {
+            for (int i = 0; i < BUCKETS; i++) {
+                this.counts.lazySet(i, this.counts.get(i) + other.counts.get(i));
+            }
+            this.count.lazySet(this.count.get() + other.count.get());
+            this.sum.lazySet(this.sum.get() + other.sum.get());
+            this.max.lazySet(Math.max(this.max.get(), other.max.get()));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.CharsetUtil;
+
+import java.util.List;
+
+/**
+ * Split the received bytes on the message delimiters, and emit one String per complete message.
+ * The delimiters are searched directly in the received buffer, a message received in several reads is only decoded
+ * once complete, and bytes already scanned are not scanned again.
+ * A message longer than the maximum frame length raises a TooLongFrameException as soon as it is detected, its bytes
+ * are then discarded until its end delimiter is received, and the decoding resumes with the next message.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class MessageFrameDecoder extends ByteToMessageDecoder {
+
+    /**
+     * Encoded message end delimiter.
+     */
+    private static final byte[] END = MessageSeparation.MESSAGE_END.getBytes(CharsetUtil.UTF_8);
+
+    /**
+     * True to emit the message content only, false to keep the begin and end delimiters.
+     */
+    private final boolean stripDelimiters;
+
+    /**
+     * Maximum length of a message, delimiters included, in bytes.
+     */
+    private final int maxFrameLength;
+
+    /**
+     * Number of bytes, from the reader index, already scanned without finding an end delimiter.
+     */
+    private int scanned;
+
+    /**
+     * True while the bytes of a too long message are discarded, until its end delimiter is received.
+     */
+    private boolean discardingTooLongFrame;
+
+    /**
+     * Create a new decoder.
+     *
+     * @param stripDelimiters True to emit the message content only, false to keep the begin and end delimiters.
+     * @param maxFrameLength Maximum length of a message, delimiters included, in bytes.
+     */
+    //@Requires("maxFrameLength > 0")
+    public MessageFrameDecoder(final boolean stripDelimiters, final int maxFrameLength) {
+        super();
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("Max frame length must be greater than 0: " + maxFrameLength);
+        }
+        this.stripDelimiters = stripDelimiters;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out) {
+        while (in.isReadable()) {
+            if (this.discardingTooLongFrame && !this.discard(in)) {
+                return;
+            }
+            int start = in.readerIndex();
+            int end = indexOf(in, start + this.scanned, in.writerIndex(), END);
+            if (end < 0) {
+                if (in.readableBytes() > this.maxFrameLength) {
+                    this.discardingTooLongFrame = true;
+                    this.scanned = 0;
+                    int length = in.readableBytes();
+                    this.discard(in);
+                    throw this.tooLong(length);
+                }
+                this.scanned = Math.max(0, in.readableBytes() - END.length + 1);
+                return;
+            }
+            this.scanned = 0;
+            int frameEnd = end + END.length;
+            if (frameEnd - start > this.maxFrameLength) {
+                in.readerIndex(frameEnd);
+                throw this.tooLong(frameEnd - start);
+            }
+            String frame = this.decodeFrame(in, start, end, frameEnd);
+            in.readerIndex(frameEnd);
+            if (!frame.isEmpty()) {
+                out.add(frame);
+            }
+        }
+    }
+
+    /**
+     * Discard the bytes of a too long message up to its end delimiter.
+     *
+     * @param in Received bytes.
+     * @return True if the end delimiter was found and the discarding is over, false if more bytes must be discarded.
+     */
+    private boolean discard(final ByteBuf in) {
+        int end = indexOf(in, in.readerIndex(), in.writerIndex(), END);
+        if (end < 0) {
+            // The last bytes are kept, they could be the beginning of a delimiter split over two reads.
+            int skipped = Math.max(0, in.readableBytes() - END.length + 1);
+            in.skipBytes(skipped);
+            return false;
+        }
+        int frameEnd = end + END.length;
+        in.readerIndex(frameEnd);
+        this.discardingTooLongFrame = false;
+        return true;
+    }
+
+    private TooLongFrameException tooLong(final int length) {
+        return new TooLongFrameException("Message length exceeds " + this.maxFrameLength + ": " + length);
+    }
+
+    private String decodeFrame(final ByteBuf in, final int start, final int end, final int frameEnd) {
+        if (!this.stripDelimiters) {
+            return in.toString(start, frameEnd - start, CharsetUtil.UTF_8);
+        }
+        // As the former string pipeline, every begin delimiter is removed, not only the leading ones.
+        return in.toString(start, end - start, CharsetUtil.UTF_8).replace(MessageSeparation.MESSAGE_BEGIN, "");
+    }
+
+    /**
+     * Find the first occurrence of a delimiter in a buffer.
+     *
+     * @param buffer Buffer to search in.
+     * @param from First index to search, inclusive.
+     * @param to Last index to search, exclusive.
+     * @param delimiter Delimiter to find.
+     * @return The index of the delimiter first byte, or -1 if not found.
+     */
+    static int indexOf(final ByteBuf buffer, final int from, final int to, final byte[] delimiter) {
+        int index = from;
+        while (index < to) {
+            index = buffer.indexOf(index, to, delimiter[0]);
+            if (index < 0) {
+                return -1;
+            }
+            if (startsWith(buffer, index, to, delimiter)) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(final ByteBuf buffer, final int index, final int to, final byte[] delimiter) {
+        if (index + delimiter.length > to) {
+            return false;
+        }
+        for (int i = 1; i < delimiter.length; i++) {
+            if (buffer.getByte(index + i) != delimiter[i]) {
+                return false;
+            }
+        }
+        return buffer.getByte(index) == delimiter[0];
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.CorruptedWebSocketFrameException;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+import io.netty.util.CharsetUtil;
+
+/**
+ * Count the messages rejected by the decoders because they exceed the maximum message size, this handler is placed
+ * just before the message handler to receive the decoder exceptions.
+ * A text message sent in several websocket frames is only assembled by the message handler, so the size of the frames
+ * received until the message end delimiter is checked here, and the connection is closed before the message handler
+ * buffers more than the maximum size.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class MessageSizeLimiter extends ChannelInboundHandlerAdapter {
+
+    /**
+     * Encoded message end delimiter.
+     */
+    private static final byte[] END = MessageSeparation.MESSAGE_END.getBytes(CharsetUtil.UTF_8);
+
+    /**
+     * Maximum size of a received message, in bytes.
+     */
+    private final int maxMessageSize;
+
+    private final InboundSizeMetrics metrics;
+
+    /**
+     * Size of the text frames received since the last message end delimiter, in bytes.
+     */
+    private long pendingText;
+
+    /**
+     * Create a new handler.
+     *
+     * @param maxMessageSize Maximum size of a received message, in bytes.
+     * @param metrics Statistics to update.
+     */
+    MessageSizeLimiter(final int maxMessageSize, final InboundSizeMetrics metrics) {
+        super();
+        this.maxMessageSize = maxMessageSize;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+        if (msg instanceof TextWebSocketFrame) {
+            ByteBuf content = ((TextWebSocketFrame) msg).content();
+            int end = lastIndexOfDelimiter(content);
+            if (end < 0) {
+                this.pendingText += content.readableBytes();
+            } else {
+                // Only the bytes after the last complete message are waiting for their end.
+                this.pendingText = content.writerIndex() - end - END.length;
+            }
+            if (this.pendingText > this.maxMessageSize) {
+                long length = this.pendingText;
+                this.pendingText = 0;
+                ((TextWebSocketFrame) msg).release();
+                throw new TooLongFrameException("Message length exceeds " + this.maxMessageSize + ": " + length);
+            }
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
+        if (cause instanceof TooLongFrameException || (cause instanceof CorruptedWebSocketFrameException
+                && ((CorruptedWebSocketFrameException) cause).closeStatus() == WebSocketCloseStatus.MESSAGE_TOO_BIG)) {
+            this.metrics.rejected();
+        }
+        super.exceptionCaught(ctx, cause);
+    }
+
+    /**
+     * Count a message rejected by the message handler, while assembling it.
+     */
+    public void rejected() {
+        this.metrics.rejected();
+    }
+
+    /**
+     * @return The maximum size of a received message, in bytes.
+     */
+    public int getMaxMessageSize() {
+        return this.maxMessageSize;
+    }
+
+    /**
+     * @param content Frame content.
+     * @return The index of the last message end delimiter, -1 if none.
+     */
+    private static int lastIndexOfDelimiter(final ByteBuf content) {
+        int result = -1;
+        int index = MessageFrameDecoder.indexOf(content, content.readerIndex(), content.writerIndex(), END);
+        while (index >= 0) {
+            result = index;
+            index = MessageFrameDecoder.indexOf(content, index + END.length, content.writerIndex(), END);
+        }
+        return result;
+    }
+}
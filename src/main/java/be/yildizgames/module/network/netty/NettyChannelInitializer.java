@@ -24,18 +24,29 @@
 
 package be.yildizgames.module.network.netty;
 
+import be.yildizgames.module.network.DecoderEncoder;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpMessage;
 import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolConfig;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.CharsetUtil;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Pipeline factory to build a pipeline to use for netty transfer, every time a channel is initialized, the pipeline is
  * filled with the handler provided by this class.
@@ -44,11 +55,21 @@ import io.netty.util.CharsetUtil;
  */
 public final class NettyChannelInitializer extends ChannelInitializer<SocketChannel> {
 
+    /**
+     * Size of the length prefix of the binary frames, in bytes.
+     */
+    private static final int LENGTH_FIELD_LENGTH = 4;
+
     /**
      * Create additional handler every time a channel is initialized.
      */
     private final HandlerFactory factory;
 
+    /**
+     * Options for the handlers to add.
+     */
+    private final PipelineConfiguration configuration;
+
     /**
      * Create a new instance and register the handlers.
      *
@@ -57,37 +78,149 @@ public final class NettyChannelInitializer extends ChannelInitializer<SocketChan
     //@Requires codec != null
     //@Requires factory != null
     public NettyChannelInitializer(final HandlerFactory factory) {
+        this(factory, PipelineConfiguration.defaultConfiguration());
+    }
+
+    /**
+     * Create a new instance and register the handlers.
+     *
+     * @param factory Create additional handler every time a channel is initialized.
+     * @param configuration Options for the handlers to add.
+     */
+    //@Requires factory != null
+    //@Requires configuration != null
+    public NettyChannelInitializer(final HandlerFactory factory, final PipelineConfiguration configuration) {
         super();
         this.factory = factory;
+        this.configuration = configuration;
     }
 
 
     @Override
     protected void initChannel(final SocketChannel ch) {
+        this.configuration.getAllocation().ifPresent(a -> {
+            ch.config().setAllocator(a.getAllocator());
+            a.getReceiveAllocator(this.factory.getCodec()).ifPresent(ch.config()::setRecvByteBufAllocator);
+        });
+        this.configuration.getWriteBufferWaterMark().ifPresent(ch.config()::setWriteBufferWaterMark);
         ChannelPipeline pipeline = ch.pipeline();
+        TrafficMetricsHandler trafficMetrics = this.configuration.getTrafficMetrics(this.factory.getCodec())
+                .map(TrafficMetricsHandler::new)
+                .orElse(null);
+        if (trafficMetrics != null) {
+            // Head of the pipeline, before the rate limiter, to see every raw byte, including the dropped ones.
+            pipeline.addLast(trafficMetrics);
+        }
+        RateLimitHandler rateLimit = this.configuration.isRateLimit() && this.factory.isServer()
+                ? this.configuration.newRateLimitHandler()
+                : null;
+        if (rateLimit != null) {
+            // Before the codec, to count the raw bytes.
+            pipeline.addLast(rateLimit);
+        }
+        if (this.configuration.isFlushConsolidation()) {
+            // Before the codec and every handler writing messages, to intercept their flushes, only the traffic
+            // metrics and the rate limiter, which never flush, are closer to the head.
+            pipeline.addLast(new FlushConsolidationHandler(this.configuration.getExplicitFlushAfterFlushes(),
+                    this.configuration.isConsolidateWhenNoReadInProgress()));
+        }
+        // Pings are websocket frames or text control messages, not supported by the binary frames and HTTP.
+        boolean pings = this.factory.getCodec() == DecoderEncoder.WEBSOCKET
+                || (this.factory.getCodec() == DecoderEncoder.STRING && !this.configuration.isBinary());
+        if (this.configuration.isIdleDetection()) {
+            // Before the codec, so any received bytes count as activity.
+            pipeline.addLast(new IdleStateHandler(this.configuration.getReaderIdleTime().toMillis(),
+                    pings ? this.configuration.getWriterIdleTime().toMillis() : 0, 0, TimeUnit.MILLISECONDS));
+        }
         switch (factory.getCodec()) {
             case STRING:
+                if (this.configuration.isBinary()) {
+                    pipeline.addLast(new LengthFieldBasedFrameDecoder(this.configuration.getMaxFrameLength(),
+                            0, LENGTH_FIELD_LENGTH, 0, LENGTH_FIELD_LENGTH));
+                    pipeline.addLast(new LengthFieldPrepender(LENGTH_FIELD_LENGTH));
+                    pipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
+                    break;
+                }
                 pipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
-                pipeline.addLast(new StringDecoder(CharsetUtil.UTF_8));
+                // The server handler parses the delimiters itself, the client receives the message content only.
+                pipeline.addLast(new MessageFrameDecoder(!this.factory.isServer(), this.configuration.getMaxFrameLength()));
                 break;
             case HTTP:
                 pipeline.addLast(new HttpServerCodec());
-                pipeline.addLast(new HttpObjectAggregator(65536));
+                pipeline.addLast(new CountingHttpObjectAggregator(this.configuration.getMaxMessageSize(DecoderEncoder.HTTP),
+                        this.configuration.getInboundSizeMetrics()));
                 pipeline.addLast(new ChunkedWriteHandler());
                 break;
             case WEBSOCKET:
                 if (this.factory.isServer()) {
                     pipeline.addLast(new HttpServerCodec());
-                    pipeline.addLast(new HttpObjectAggregator(65536));
-                    pipeline.addLast(new WebSocketServerProtocolHandler("/websocket"));
+                    pipeline.addLast(new CountingHttpObjectAggregator(this.configuration.getMaxMessageSize(DecoderEncoder.HTTP),
+                            this.configuration.getInboundSizeMetrics()));
+                    this.configuration.getCompression().ifPresent(c -> c.addServerHandlers(pipeline));
+                    WebSocketServerProtocolConfig.Builder protocol = WebSocketServerProtocolConfig.newBuilder()
+                            .websocketPath("/websocket")
+                            // Extensions must be allowed for the compressed frames to be accepted.
+                            .allowExtensions(this.configuration.isCompression())
+                            // The pongs measure the round trip time.
+                            .dropPongFrames(!this.configuration.isHeartbeat())
+                            .maxFramePayloadLength(this.configuration.getMaxMessageSize(DecoderEncoder.WEBSOCKET));
+                    pipeline.addLast(new WebSocketServerProtocolHandler(protocol.build()));
                 } else {
                     pipeline.addLast(new HttpClientCodec());
-                    pipeline.addLast(new HttpObjectAggregator(8192));
+                    pipeline.addLast(new CountingHttpObjectAggregator(this.configuration.getMaxMessageSize(DecoderEncoder.HTTP),
+                            this.configuration.getInboundSizeMetrics()));
+                    this.configuration.getCompression().ifPresent(c -> c.addClientHandlers(pipeline));
+                }
+                if (this.configuration.isWebSocketFragmentation()) {
+                    // Binary fragments are streamed to the message handler, only text messages are aggregated.
+                    pipeline.addLast(new TextFrameAggregator(this.configuration.getMaxWebSocketMessageSize()));
+                    pipeline.addLast(new WebSocketFragmenter(this.configuration.getWebSocketFragmentSize()));
                 }
                 break;
             default:
                 throw new IllegalArgumentException("Unknown codec: " + factory.getCodec());
         }
+        if (this.configuration.isOutboundQueue()) {
+            // After the codec, to queue the messages before they are encoded.
+            pipeline.addLast(new OutboundQueueHandler(this.configuration.getMaxQueuedMessages(),
+                    this.configuration.getSlowConsumerPolicy()));
+        }
+        if (trafficMetrics != null) {
+            pipeline.addLast(trafficMetrics.getMessageProbe());
+        }
+        if (rateLimit != null) {
+            pipeline.addLast(rateLimit.getMessageLimiter());
+        }
+        // Receives the decoders exceptions, the client handshaker reads its frame limit from it.
+        pipeline.addLast(new MessageSizeLimiter(this.configuration.getMaxMessageSize(this.factory.getCodec()),
+                this.configuration.getInboundSizeMetrics()));
+        if (this.configuration.isIdleDetection()) {
+            pipeline.addLast(new HeartbeatHandler(this.factory.getCodec() == DecoderEncoder.WEBSOCKET,
+                    pings ? this.configuration.getHeartbeatInterval() : Duration.ZERO));
+        }
         pipeline.addLast("handler", this.factory.create());
     }
+
+    /**
+     * Count the HTTP requests rejected because of their content length, they are answered with a 413 status without
+     * raising an exception. An oversized response raises a TooLongFrameException, counted by the size limiter.
+     */
+    private static final class CountingHttpObjectAggregator extends HttpObjectAggregator {
+
+        private final InboundSizeMetrics metrics;
+
+        private CountingHttpObjectAggregator(final int maxContentLength, final InboundSizeMetrics metrics) {
+            super(maxContentLength);
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected void handleOversizedMessage(final ChannelHandlerContext ctx, final HttpMessage oversized)
+                throws Exception {
+            if (oversized instanceof HttpRequest) {
+                this.metrics.rejected();
+            }
+            super.handleOversizedMessage(ctx, oversized);
+        }
+    }
 }
@@ -0,0 +1,239 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.incubator.channel.uring.IOUring;
+import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
+import io.netty.incubator.channel.uring.IOUringServerSocketChannel;
+import io.netty.incubator.channel.uring.IOUringSocketChannel;
+
+import java.util.Locale;
+
+/**
+ * I/O transport used by the netty event loops and channels.
+ * Native transports are only used when they are available on the running platform, NIO is always available.
+ *
+ * @author Grégory Van den Borre
+ */
+public enum NettyTransport {
+
+    /**
+     * Java NIO selector based transport, available everywhere.
+     */
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(final int threads) {
+            return new NioEventLoopGroup(threads);
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> getServerChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getChannelClass() {
+            return NioSocketChannel.class;
+        }
+
+        @Override
+        public boolean isReusePortSupported() {
+            return false;
+        }
+    },
+
+    /**
+     * Linux native edge-triggered epoll transport.
+     */
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            try {
+                return Epoll.isAvailable();
+            } catch (LinkageError e) {
+                return false;
+            }
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(final int threads) {
+            return new EpollEventLoopGroup(threads);
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> getServerChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public boolean isReusePortSupported() {
+            return true;
+        }
+    },
+
+    /**
+     * Linux native io_uring transport, requires the optional netty incubator io_uring dependency and a recent kernel.
+     */
+    IO_URING {
+        @Override
+        public boolean isAvailable() {
+            try {
+                return IOUring.isAvailable();
+            } catch (LinkageError e) {
+                return false;
+            }
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(final int threads) {
+            return new IOUringEventLoopGroup(threads);
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> getServerChannelClass() {
+            return IOUringServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getChannelClass() {
+            return IOUringSocketChannel.class;
+        }
+
+        @Override
+        public boolean isReusePortSupported() {
+            return true;
+        }
+    };
+
+    /**
+     * System property used to select the transport, possible values are auto, nio, epoll and io_uring.
+     */
+    public static final String PROPERTY = "yildiz.network.transport";
+
+    private static final System.Logger LOGGER = System.getLogger(NettyTransport.class.getName());
+
+    /**
+     * @return true if the transport can be used on the running platform.
+     */
+    public abstract boolean isAvailable();
+
+    /**
+     * Create a new event loop group for this transport.
+     *
+     * @param threads Number of threads, 0 to use the netty default.
+     * @return The created group.
+     */
+    //@Requires("threads >= 0")
+    //@Ensures("result != null")
+    public abstract EventLoopGroup newEventLoopGroup(int threads);
+
+    /**
+     * @return The server channel class matching this transport.
+     */
+    public abstract Class<? extends ServerSocketChannel> getServerChannelClass();
+
+    /**
+     * @return The client channel class matching this transport.
+     */
+    public abstract Class<? extends SocketChannel> getChannelClass();
+
+    /**
+     * @return true if several server channels can be bound on the same port with SO_REUSEPORT.
+     */
+    public abstract boolean isReusePortSupported();
+
+    /**
+     * Select the transport to use from the system property, if none is set, the best available transport is used.
+     *
+     * @return The selected transport.
+     */
+    //@Ensures("result.isAvailable()")
+    public static NettyTransport fromConfiguration() {
+        String value = System.getProperty(PROPERTY, "auto").trim().toUpperCase(Locale.ROOT);
+        if ("AUTO".equals(value) || value.isEmpty()) {
+            return NettyTransport.best();
+        }
+        try {
+            return NettyTransport.select(NettyTransport.valueOf(value));
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Unknown network transport {0}, using best available.", value);
+            return NettyTransport.best();
+        }
+    }
+
+    /**
+     * Select the best available transport, epoll first, then io_uring, and finally NIO.
+     *
+     * @return The best available transport.
+     */
+    //@Ensures("result.isAvailable()")
+    public static NettyTransport best() {
+        for (NettyTransport transport : new NettyTransport[]{EPOLL, IO_URING}) {
+            if (transport.isAvailable()) {
+                LOGGER.log(System.Logger.Level.INFO, "Network transport selected: {0}", transport);
+                return transport;
+            }
+        }
+        LOGGER.log(System.Logger.Level.INFO, "Network transport selected: {0}", NIO);
+        return NIO;
+    }
+
+    /**
+     * Select the requested transport, or fall back to NIO if it is not available on this platform.
+     *
+     * @param requested Requested transport.
+     * @return The requested transport if available, NIO otherwise.
+     */
+    //@Requires("requested != null")
+    //@Ensures("result.isAvailable()")
+    public static NettyTransport select(final NettyTransport requested) {
+        if (requested.isAvailable()) {
+            LOGGER.log(System.Logger.Level.INFO, "Network transport selected: {0}", requested);
+            return requested;
+        }
+        LOGGER.log(System.Logger.Level.WARNING, "Network transport {0} not available, falling back to {1}.", requested, NIO);
+        return NIO;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Hold the outbound messages while the channel is not writable, and write them once it becomes writable again.
+ * The channel writability is driven by the write buffer water mark, when the queue is full, the slow consumer policy
+ * is applied.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class OutboundQueueHandler extends ChannelDuplexHandler {
+
+    private static final System.Logger LOGGER = System.getLogger(OutboundQueueHandler.class.getName());
+
+    /**
+     * Maximum number of messages waiting for the channel to be writable.
+     */
+    private final int maxQueuedMessages;
+
+    /**
+     * Action to take when the queue is full.
+     */
+    private final SlowConsumerPolicy policy;
+
+    /**
+     * Messages waiting for the channel to be writable, only accessed from the event loop.
+     */
+    private final Deque<PendingWrite> queue = new ArrayDeque<>();
+
+    /**
+     * Number of queued messages, readable from any thread.
+     */
+    private volatile int queueDepth;
+
+    /**
+     * Number of dropped messages, only written from the event loop.
+     */
+    private volatile long droppedMessages;
+
+    /**
+     * Create a new handler.
+     *
+     * @param maxQueuedMessages Maximum number of messages waiting for the channel to be writable.
+     * @param policy Action to take when the queue is full.
+     */
+    //@Requires("maxQueuedMessages > 0")
+    //@Requires("policy != null")
+    public OutboundQueueHandler(final int maxQueuedMessages, final SlowConsumerPolicy policy) {
+        super();
+        this.maxQueuedMessages = maxQueuedMessages;
+        this.policy = policy;
+    }
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
+        boolean lowPriority = msg instanceof LowPriorityMessage;
+        Object message = lowPriority ? ((LowPriorityMessage) msg).getMessage() : msg;
+        if (this.queue.isEmpty() && ctx.channel().isWritable()) {
+            ctx.write(message, promise);
+            return;
+        }
+        this.queue.addLast(new PendingWrite(message, promise, lowPriority));
+        if (this.queue.size() > this.maxQueuedMessages) {
+            this.applyPolicy(ctx);
+        }
+        this.queueDepth = this.queue.size();
+    }
+
+    @Override
+    public void channelWritabilityChanged(final ChannelHandlerContext ctx) {
+        if (ctx.channel().isWritable()) {
+            this.drain(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) {
+        this.discardAll();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) {
+        this.discardAll();
+    }
+
+    /**
+     * @return The number of messages waiting for the channel to be writable.
+     */
+    public int getQueueDepth() {
+        return this.queueDepth;
+    }
+
+    /**
+     * @return The number of messages dropped because the queue was full.
+     */
+    public long getDroppedMessages() {
+        return this.droppedMessages;
+    }
+
+    private void drain(final ChannelHandlerContext ctx) {
+        boolean written = false;
+        while (!this.queue.isEmpty() && ctx.channel().isWritable()) {
+            PendingWrite pending = this.queue.pollFirst();
+            ctx.write(pending.message, pending.promise);
+            written = true;
+        }
+        this.queueDepth = this.queue.size();
+        if (written) {
+            ctx.flush();
+        }
+    }
+
+    private void applyPolicy(final ChannelHandlerContext ctx) {
+        switch (this.policy) {
+            case DROP_OLDEST:
+                this.drop(this.queue.pollFirst());
+                break;
+            case DROP_LOW_PRIORITY:
+                if (!this.dropOldestLowPriority()) {
+                    this.disconnect(ctx);
+                }
+                break;
+            case DISCONNECT:
+                this.disconnect(ctx);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + this.policy);
+        }
+    }
+
+    private boolean dropOldestLowPriority() {
+        Iterator<PendingWrite> iterator = this.queue.iterator();
+        while (iterator.hasNext()) {
+            PendingWrite pending = iterator.next();
+            if (pending.lowPriority) {
+                iterator.remove();
+                this.drop(pending);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void disconnect(final ChannelHandlerContext ctx) {
+        LOGGER.log(System.Logger.Level.WARNING, "Slow consumer disconnected, {0} messages queued: {1}",
+                this.queue.size(), ctx.channel());
+        while (!this.queue.isEmpty()) {
+            this.drop(this.queue.pollFirst());
+        }
+        ctx.close();
+    }
+
+    private void drop(final PendingWrite pending) {
+        this.droppedMessages++;
+        ReferenceCountUtil.release(pending.message);
+        pending.promise.tryFailure(new IllegalStateException("Message dropped, slow consumer."));
+    }
+
+    private void discardAll() {
+        while (!this.queue.isEmpty()) {
+            PendingWrite pending = this.queue.pollFirst();
+            ReferenceCountUtil.release(pending.message);
+            pending.promise.tryFailure(new ClosedChannelException());
+        }
+        this.queueDepth = 0;
+    }
+
+    /**
+     * Message waiting to be written.
+     */
+    private static final class PendingWrite {
+
+        private final Object message;
+
+        private final ChannelPromise promise;
+
+        private final boolean lowPriority;
+
+        private PendingWrite(final Object message, final ChannelPromise promise, final boolean lowPriority) {
+            this.message = message;
+            this.promise = promise;
+            this.lowPriority = lowPriority;
+        }
+    }
+}
@@ -0,0 +1,680 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import io.netty.channel.WriteBufferWaterMark;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Options for the handlers and channel configuration set by the NettyChannelInitializer, shared by servers and clients.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class PipelineConfiguration {
+
+    /**
+     * Deflate compression level used by default, balancing ratio and CPU cost.
+     */
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+    /**
+     * Number of flushes after which a pending consolidated flush is forced, 0 if flush consolidation is disabled.
+     */
+    private final int explicitFlushAfterFlushes;
+
+    /**
+     * Consolidate flushes issued outside of a read, they are then executed later on the event loop.
+     */
+    private final boolean consolidateWhenNoReadInProgress;
+
+    /**
+     * Maximum length of a STRING message, delimiters included, in bytes.
+     */
+    private final int maxFrameLength;
+
+    /**
+     * Use length prefixed binary frames instead of delimited text for the STRING codec.
+     */
+    private final boolean binary;
+
+    /**
+     * Buffer allocation for the channels, null to keep the bootstrap allocators.
+     */
+    private final BufferAllocation allocation;
+
+    /**
+     * Maximum number of messages waiting for the channel to be writable, 0 if the outbound queue is disabled.
+     */
+    private final int maxQueuedMessages;
+
+    /**
+     * Action to take when the outbound queue is full.
+     */
+    private final SlowConsumerPolicy slowConsumerPolicy;
+
+    /**
+     * Outbound buffer limits to switch the channel writability, null to keep the bootstrap value.
+     */
+    private final WriteBufferWaterMark writeBufferWaterMark;
+
+    /**
+     * Maximum size of a websocket message, all its fragments included, 0 to keep the netty frame limit without
+     * fragments aggregation.
+     */
+    private final int maxWebSocketMessageSize;
+
+    /**
+     * Maximum payload size of an outbound websocket frame, larger messages are fragmented.
+     */
+    private final int webSocketFragmentSize;
+
+    /**
+     * Websocket compression, null if disabled.
+     */
+    private final WebSocketCompression compression;
+
+    /**
+     * Name of the traffic metrics in JMX, null if the traffic is not recorded.
+     */
+    private final String trafficMetricsName;
+
+    /**
+     * Traffic metrics, by codec, created when the first channel is initialized.
+     */
+    private final Map<DecoderEncoder, TrafficMetrics> trafficMetrics = new ConcurrentHashMap<>();
+
+    /**
+     * Time without receiving anything after which a connection is closed, zero if disabled.
+     */
+    private final Duration readerIdleTime;
+
+    /**
+     * Time without sending anything after which a ping is sent, zero if disabled.
+     */
+    private final Duration writerIdleTime;
+
+    /**
+     * Interval between two pings, zero if disabled.
+     */
+    private final Duration heartbeatInterval;
+
+    /**
+     * Maximum received messages per second for each connection, 0 for no limit.
+     */
+    private final double maxMessagesPerSecond;
+
+    /**
+     * Maximum received bytes per second for each connection, 0 for no limit.
+     */
+    private final long maxBytesPerSecond;
+
+    /**
+     * Action to take over the rate limit.
+     */
+    private final RateLimitPolicy rateLimitPolicy;
+
+    /**
+     * Rate limiting statistics, null if the rate is not limited.
+     */
+    private final RateLimitMetrics rateLimitMetrics;
+
+    /**
+     * Maximum size of a received websocket message without fragmentation, in bytes.
+     */
+    private final int maxWebSocketFrameSize;
+
+    /**
+     * Maximum size of a received HTTP message content, in bytes.
+     */
+    private final int maxHttpContentLength;
+
+    /**
+     * Statistics of the oversized received messages.
+     */
+    private final InboundSizeMetrics inboundSizeMetrics = new InboundSizeMetrics();
+
+    private PipelineConfiguration(final Builder builder) {
+        super();
+        this.maxWebSocketFrameSize = builder.maxWebSocketFrameSize;
+        this.maxHttpContentLength = builder.maxHttpContentLength;
+        this.maxMessagesPerSecond = builder.maxMessagesPerSecond;
+        this.maxBytesPerSecond = builder.maxBytesPerSecond;
+        this.rateLimitPolicy = builder.rateLimitPolicy;
+        this.rateLimitMetrics = builder.rateLimitPolicy == null ? null : new RateLimitMetrics();
+        this.heartbeatInterval = builder.heartbeatInterval;
+        this.writerIdleTime = builder.writerIdleTime;
+        // Without reader idle time, a connection is considered dead after 3 missed pongs.
+        this.readerIdleTime = builder.readerIdleTime.isZero() ? builder.heartbeatInterval.multipliedBy(3)
+                : builder.readerIdleTime;
+        this.maxQueuedMessages = builder.maxQueuedMessages;
+        this.slowConsumerPolicy = builder.slowConsumerPolicy;
+        this.writeBufferWaterMark = builder.writeBufferWaterMark;
+        this.allocation = builder.allocation;
+        this.maxFrameLength = builder.maxFrameLength;
+        this.binary = builder.binary;
+        this.explicitFlushAfterFlushes = builder.explicitFlushAfterFlushes;
+        this.consolidateWhenNoReadInProgress = builder.consolidateWhenNoReadInProgress;
+        this.trafficMetricsName = builder.trafficMetricsName;
+        this.maxWebSocketMessageSize = builder.maxWebSocketMessageSize;
+        this.webSocketFragmentSize = builder.webSocketFragmentSize;
+        this.compression = builder.compressionThreshold < 0
+                ? null
+                : new WebSocketCompression(builder.compressionThreshold, builder.compressionLevel);
+    }
+
+    /**
+     * @return A new builder, initialized with the default values.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The default configuration.
+     */
+    public static PipelineConfiguration defaultConfiguration() {
+        return new Builder().build();
+    }
+
+    public int getMaxFrameLength() {
+        return this.maxFrameLength;
+    }
+
+    /**
+     * @param codec Codec to check.
+     * @return The maximum size of a received message with this codec, in bytes.
+     */
+    public int getMaxMessageSize(final DecoderEncoder codec) {
+        switch (codec) {
+            case STRING:
+                return this.maxFrameLength;
+            case HTTP:
+                return this.maxHttpContentLength;
+            case WEBSOCKET:
+                return this.isWebSocketFragmentation() ? this.maxWebSocketMessageSize : this.maxWebSocketFrameSize;
+            default:
+                throw new IllegalArgumentException("Unknown codec: " + codec);
+        }
+    }
+
+    /**
+     * @return The statistics of the received messages rejected because of their size.
+     */
+    public InboundSizeMetrics getInboundSizeMetrics() {
+        return this.inboundSizeMetrics;
+    }
+
+    public boolean isBinary() {
+        return this.binary;
+    }
+
+    public Optional<BufferAllocation> getAllocation() {
+        return Optional.ofNullable(this.allocation);
+    }
+
+    public boolean isOutboundQueue() {
+        return this.maxQueuedMessages > 0;
+    }
+
+    public int getMaxQueuedMessages() {
+        return this.maxQueuedMessages;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return this.slowConsumerPolicy;
+    }
+
+    public Optional<WriteBufferWaterMark> getWriteBufferWaterMark() {
+        return Optional.ofNullable(this.writeBufferWaterMark);
+    }
+
+    public boolean isFlushConsolidation() {
+        return this.explicitFlushAfterFlushes > 0;
+    }
+
+    public int getExplicitFlushAfterFlushes() {
+        return this.explicitFlushAfterFlushes;
+    }
+
+    public boolean isConsolidateWhenNoReadInProgress() {
+        return this.consolidateWhenNoReadInProgress;
+    }
+
+    public boolean isWebSocketFragmentation() {
+        return this.maxWebSocketMessageSize > 0;
+    }
+
+    public int getMaxWebSocketMessageSize() {
+        return this.maxWebSocketMessageSize;
+    }
+
+    public int getWebSocketFragmentSize() {
+        return this.webSocketFragmentSize;
+    }
+
+    /**
+     * @return true if an idle handler or the heartbeat is enabled.
+     */
+    public boolean isIdleDetection() {
+        return !this.readerIdleTime.isZero() || !this.writerIdleTime.isZero() || this.isHeartbeat();
+    }
+
+    public Duration getReaderIdleTime() {
+        return this.readerIdleTime;
+    }
+
+    public Duration getWriterIdleTime() {
+        return this.writerIdleTime;
+    }
+
+    public boolean isHeartbeat() {
+        return !this.heartbeatInterval.isZero();
+    }
+
+    public Duration getHeartbeatInterval() {
+        return this.heartbeatInterval;
+    }
+
+    /**
+     * @return true if the inbound rate of the server connections is limited.
+     */
+    public boolean isRateLimit() {
+        return this.rateLimitMetrics != null;
+    }
+
+    public double getMaxMessagesPerSecond() {
+        return this.maxMessagesPerSecond;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return this.maxBytesPerSecond;
+    }
+
+    /**
+     * @return The action to take over the rate limit, empty if the rate is not limited.
+     */
+    public Optional<RateLimitPolicy> getRateLimitPolicy() {
+        return Optional.ofNullable(this.rateLimitPolicy);
+    }
+
+    /**
+     * @return The rate limiting statistics of all the connections, empty if the rate is not limited.
+     */
+    public Optional<RateLimitMetrics> getRateLimitMetrics() {
+        return Optional.ofNullable(this.rateLimitMetrics);
+    }
+
+    /**
+     * @return A new rate limiter for a connection, must only be called if the rate is limited.
+     */
+    RateLimitHandler newRateLimitHandler() {
+        return new RateLimitHandler(this.maxMessagesPerSecond, this.maxBytesPerSecond, this.rateLimitPolicy,
+                this.rateLimitMetrics);
+    }
+
+    public boolean isCompression() {
+        return this.compression != null;
+    }
+
+    /**
+     * @return The metrics of the websocket compression, shared by every channel using this configuration, empty if
+     * the compression is disabled.
+     */
+    public Optional<CompressionMetrics> getCompressionMetrics() {
+        return Optional.ofNullable(this.compression).map(WebSocketCompression::getMetrics);
+    }
+
+    public boolean isTrafficMetrics() {
+        return this.trafficMetricsName != null;
+    }
+
+    /**
+     * Provide the traffic metrics of the channels using a codec, they are created and exported to JMX on first use.
+     *
+     * @param codec Codec of the channels.
+     * @return The traffic metrics of the channels using this configuration and the codec, empty if the traffic is not
+     * recorded.
+     */
+    public Optional<TrafficMetrics> getTrafficMetrics(final DecoderEncoder codec) {
+        if (this.trafficMetricsName == null) {
+            return Optional.empty();
+        }
+        return Optional.of(this.trafficMetrics.computeIfAbsent(codec,
+                c -> TrafficMetrics.register(this.trafficMetricsName, c)));
+    }
+
+    /**
+     * Remove the traffic metrics of the channels using a codec from JMX, called when the server using them is stopped.
+     * The metrics are created and exported again if the codec is used afterwards.
+     *
+     * @param codec Codec of the channels.
+     */
+    public void unregisterTrafficMetrics(final DecoderEncoder codec) {
+        TrafficMetrics metrics = this.trafficMetrics.remove(codec);
+        if (metrics != null) {
+            metrics.unregister();
+        }
+    }
+
+    Optional<WebSocketCompression> getCompression() {
+        return Optional.ofNullable(this.compression);
+    }
+
+    /**
+     * Build a pipeline configuration.
+     */
+    public static final class Builder {
+
+        private int maxFrameLength = 65536;
+
+        private boolean binary;
+
+        private BufferAllocation allocation;
+
+        private int maxQueuedMessages;
+
+        private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+
+        private WriteBufferWaterMark writeBufferWaterMark;
+
+        private int explicitFlushAfterFlushes;
+
+        private boolean consolidateWhenNoReadInProgress;
+
+        private int maxWebSocketMessageSize;
+
+        private int webSocketFragmentSize;
+
+        private int compressionThreshold = -1;
+
+        private String trafficMetricsName;
+
+        private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+
+        private Duration readerIdleTime = Duration.ZERO;
+
+        private Duration writerIdleTime = Duration.ZERO;
+
+        private Duration heartbeatInterval = Duration.ZERO;
+
+        private double maxMessagesPerSecond;
+
+        private int maxWebSocketFrameSize = 65536;
+
+        private int maxHttpContentLength = 65536;
+
+        private long maxBytesPerSecond;
+
+        private RateLimitPolicy rateLimitPolicy;
+
+        private Builder() {
+            super();
+        }
+
+        /**
+         * Set the maximum length of a STRING message, a longer message is discarded and its connection closed.
+         *
+         * @param maxFrameLength Maximum length, delimiters included, in bytes, default is 64 KiB.
+         * @return This builder.
+         */
+        public Builder maxFrameLength(final int maxFrameLength) {
+            if (maxFrameLength <= 0) {
+                throw new IllegalArgumentException("Max frame length must be greater than 0: " + maxFrameLength);
+            }
+            this.maxFrameLength = maxFrameLength;
+            return this;
+        }
+
+        /**
+         * Set the maximum size of a received message for a codec, a larger message is rejected as soon as its size is
+         * known, and its connection closed, default is 64 KiB for every codec.
+         * For the STRING codec, it is the max frame length. For the WEBSOCKET codec, it applies to a single frame,
+         * the fragmentation option sets the maximum size of the messages made of several frames. The HTTP size also
+         * applies to the websocket opening handshake.
+         *
+         * @param codec Codec to configure.
+         * @param maxMessageSize Maximum size, in bytes.
+         * @return This builder.
+         */
+        public Builder maxMessageSize(final DecoderEncoder codec, final int maxMessageSize) {
+            if (maxMessageSize <= 0) {
+                throw new IllegalArgumentException("Max message size must be greater than 0: " + maxMessageSize);
+            }
+            switch (codec) {
+                case STRING:
+                    return this.maxFrameLength(maxMessageSize);
+                case HTTP:
+                    this.maxHttpContentLength = maxMessageSize;
+                    return this;
+                case WEBSOCKET:
+                    this.maxWebSocketFrameSize = maxMessageSize;
+                    return this;
+                default:
+                    throw new IllegalArgumentException("Unknown codec: " + codec);
+            }
+        }
+
+        /**
+         * Replace the delimited text framing of the STRING codec by binary frames, prefixed by their length on 4 bytes.
+         * Both sides of the connection must use it, messages are then received as ByteBuf by the binary listeners,
+         * the max frame length applies to the frame content.
+         * With the WEBSOCKET codec, the binary frames payload is received as ByteBuf by the binary listeners, text
+         * frames are still processed as messages.
+         *
+         * @return This builder.
+         */
+        public Builder binary() {
+            this.binary = true;
+            return this;
+        }
+
+        /**
+         * @param allocation Buffer allocator and receive buffer bounds per codec for the channels.
+         * @return This builder.
+         */
+        public Builder allocation(final BufferAllocation allocation) {
+            this.allocation = allocation;
+            return this;
+        }
+
+        /**
+         * Queue the outbound messages while the channel is not writable, instead of buffering them without limit in
+         * the channel outbound buffer, disabled by default.
+         *
+         * @param maxQueuedMessages Maximum number of messages waiting for the channel to be writable.
+         * @param policy Action to take when the queue is full.
+         * @return This builder.
+         */
+        public Builder outboundQueue(final int maxQueuedMessages, final SlowConsumerPolicy policy) {
+            if (maxQueuedMessages <= 0) {
+                throw new IllegalArgumentException("Max queued messages must be greater than 0: " + maxQueuedMessages);
+            }
+            this.maxQueuedMessages = maxQueuedMessages;
+            this.slowConsumerPolicy = policy;
+            return this;
+        }
+
+        /**
+         * @param low Outbound buffered bytes under which the channel becomes writable again.
+         * @param high Outbound buffered bytes over which the channel becomes not writable.
+         * @return This builder.
+         */
+        public Builder writeBufferWaterMark(final int low, final int high) {
+            this.writeBufferWaterMark = new WriteBufferWaterMark(low, high);
+            return this;
+        }
+
+        /**
+         * Coalesce the flushes of several messages in a single syscall, disabled by default.
+         * Flushes issued while reading are merged until the read completes.
+         *
+         * @param explicitFlushAfterFlushes Number of flushes after which a flush is forced, netty default is 256.
+         * @param consolidateWhenNoReadInProgress True to also merge flushes issued outside of a read, for example at
+         *                                        the end of a game tick, at the cost of some latency.
+         * @return This builder.
+         */
+        public Builder flushConsolidation(final int explicitFlushAfterFlushes, final boolean consolidateWhenNoReadInProgress) {
+            if (explicitFlushAfterFlushes <= 0) {
+                throw new IllegalArgumentException("Explicit flush limit must be greater than 0: " + explicitFlushAfterFlushes);
+            }
+            this.explicitFlushAfterFlushes = explicitFlushAfterFlushes;
+            this.consolidateWhenNoReadInProgress = consolidateWhenNoReadInProgress;
+            return this;
+        }
+
+        /**
+         * Support websocket messages larger than a single frame, disabled by default, a frame is then limited to
+         * 64 KiB. The received fragments are assembled without copy, and the connection is closed as soon as a
+         * message exceeds the maximum size, the sent messages larger than the fragment size are split.
+         *
+         * @param maxMessageSize Maximum size of a received message, all its fragments included, in bytes.
+         * @param fragmentSize Maximum payload size of a sent frame, in bytes.
+         * @return This builder.
+         */
+        public Builder webSocketFragmentation(final int maxMessageSize, final int fragmentSize) {
+            if (maxMessageSize <= 0) {
+                throw new IllegalArgumentException("Max message size must be greater than 0: " + maxMessageSize);
+            }
+            if (fragmentSize <= 0) {
+                throw new IllegalArgumentException("Fragment size must be greater than 0: " + fragmentSize);
+            }
+            this.maxWebSocketMessageSize = maxMessageSize;
+            this.webSocketFragmentSize = fragmentSize;
+            return this;
+        }
+
+        /**
+         * Record the connections, bytes, messages, and the decode and handler latencies of the channels, disabled by
+         * default. The metrics are kept for each codec and exported as JMX MBeans.
+         *
+         * @param name Name of the metrics in JMX, for example the server name.
+         * @return This builder.
+         */
+        public Builder trafficMetrics(final String name) {
+            this.trafficMetricsName = name;
+            return this;
+        }
+
+        /**
+         * Negotiate the permessage-deflate extension for the WEBSOCKET codec, disabled by default.
+         * Messages are compressed only if the other side supports it too.
+         *
+         * @param threshold Minimum payload size to compress a message, in bytes, smaller messages are sent as is.
+         * @return This builder.
+         */
+        public Builder compression(final int threshold) {
+            return this.compression(threshold, DEFAULT_COMPRESSION_LEVEL);
+        }
+
+        /**
+         * Negotiate the permessage-deflate extension for the WEBSOCKET codec, disabled by default.
+         * Messages are compressed only if the other side supports it too.
+         *
+         * @param threshold Minimum payload size to compress a message, in bytes, smaller messages are sent as is.
+         * @param level Deflate compression level, from 0 to 9, default is 6.
+         * @return This builder.
+         */
+        public Builder compression(final int threshold, final int level) {
+            if (threshold < 0) {
+                throw new IllegalArgumentException("Compression threshold must be positive: " + threshold);
+            }
+            if (level < 0 || level > 9) {
+                throw new IllegalArgumentException("Compression level must be between 0 and 9: " + level);
+            }
+            this.compressionThreshold = threshold;
+            this.compressionLevel = level;
+            return this;
+        }
+
+        /**
+         * Close the connections receiving nothing for a while, typically half open connections of crashed peers,
+         * disabled by default.
+         *
+         * @param readerIdleTime Time without receiving anything after which the connection is closed, zero to disable.
+         * @param writerIdleTime Time without sending anything after which a ping is sent to keep the connection alive,
+         *                       zero to disable.
+         * @return This builder.
+         */
+        public Builder idleTimeout(final Duration readerIdleTime, final Duration writerIdleTime) {
+            if (readerIdleTime.isNegative() || writerIdleTime.isNegative()) {
+                throw new IllegalArgumentException("Idle times must be positive: " + readerIdleTime + ", " + writerIdleTime);
+            }
+            this.readerIdleTime = readerIdleTime;
+            this.writerIdleTime = writerIdleTime;
+            return this;
+        }
+
+        /**
+         * Send a ping at a fixed interval, to detect the dead connections and measure the round trip time of each
+         * connection, disabled by default. Without idle timeout, a connection is closed after 3 intervals without
+         * receiving anything. With the STRING codec, both sides of the connection must enable it, the binary framing
+         * does not support it.
+         *
+         * @param interval Interval between two pings.
+         * @return This builder.
+         */
+        public Builder heartbeat(final Duration interval) {
+            if (interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("Heartbeat interval must be greater than 0: " + interval);
+            }
+            this.heartbeatInterval = interval;
+            return this;
+        }
+
+        /**
+         * Limit the messages and bytes received by each server connection, disabled by default.
+         * A connection can send up to one second of traffic in a burst.
+         *
+         * @param messagesPerSecond Maximum received messages per second, 0 for no limit.
+         * @param bytesPerSecond Maximum received bytes per second, 0 for no limit.
+         * @param policy Action to take over the limit.
+         * @return This builder.
+         */
+        public Builder rateLimit(final double messagesPerSecond, final long bytesPerSecond, final RateLimitPolicy policy) {
+            if (messagesPerSecond < 0 || bytesPerSecond < 0) {
+                throw new IllegalArgumentException("Rate limits must be positive: " + messagesPerSecond + ", " + bytesPerSecond);
+            }
+            if (messagesPerSecond == 0 && bytesPerSecond == 0) {
+                throw new IllegalArgumentException("At least one rate limit must be set.");
+            }
+            this.maxMessagesPerSecond = messagesPerSecond;
+            this.maxBytesPerSecond = bytesPerSecond;
+            this.rateLimitPolicy = policy;
+            return this;
+        }
+
+        /**
+         * @return The built configuration.
+         */
+        public PipelineConfiguration build() {
+            return new PipelineConfiguration(this);
+        }
+    }
+}
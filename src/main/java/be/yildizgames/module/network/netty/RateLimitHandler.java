@@ -0,0 +1,292 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limit the inbound traffic of a connection with two token buckets, one for the bytes and one for the messages.
+ * Each bucket holds one second of traffic, and is refilled continuously at its rate.
+ * This handler is placed first in the pipeline to count the raw bytes, and its message limiter just before the message
+ * handler to count the decoded messages. A connection over its byte rate is throttled or closed as soon as the bytes
+ * are read, dropping is done per message, since bytes can not be dropped without breaking the framing. The continuation
+ * frames of a fragmented websocket message follow the decision made on its first frame.
+ * Both run on the channel event loop, so the buckets are not synchronized.
+ *
+ * @author Grégory Van den Borre
+ */
+final class RateLimitHandler extends ChannelInboundHandlerAdapter {
+
+    private static final System.Logger LOGGER = System.getLogger(RateLimitHandler.class.getName());
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final RateLimitPolicy policy;
+
+    private final RateLimitMetrics metrics;
+
+    private final Bucket messages;
+
+    private final Bucket bytes;
+
+    private final ChannelHandler messageLimiter = new MessageLimiter();
+
+    /**
+     * True while the reading is suspended.
+     */
+    private boolean paused;
+
+    /**
+     * Create a new handler.
+     *
+     * @param messagesPerSecond Maximum received messages per second, 0 for no limit.
+     * @param bytesPerSecond Maximum received bytes per second, 0 for no limit.
+     * @param policy Action to take over the limit.
+     * @param metrics Statistics to update.
+     */
+    RateLimitHandler(final double messagesPerSecond, final long bytesPerSecond, final RateLimitPolicy policy,
+                     final RateLimitMetrics metrics) {
+        super();
+        this.policy = policy;
+        this.metrics = metrics;
+        this.messages = messagesPerSecond > 0 ? new Bucket(messagesPerSecond) : null;
+        this.bytes = bytesPerSecond > 0 ? new Bucket(bytesPerSecond) : null;
+    }
+
+    /**
+     * @return The handler to place just before the message handler.
+     */
+    ChannelHandler getMessageLimiter() {
+        return this.messageLimiter;
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+        if (this.bytes == null || this.policy == RateLimitPolicy.DROP) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        long size = msg instanceof ByteBuf ? ((ByteBuf) msg).readableBytes()
+                : msg instanceof ByteBufHolder ? ((ByteBufHolder) msg).content().readableBytes() : 0;
+        long now = System.nanoTime();
+        this.bytes.refill(now);
+        this.bytes.take(size);
+        if (this.bytes.tokens >= 0) {
+            ctx.fireChannelRead(msg);
+        } else if (this.policy == RateLimitPolicy.DELAY) {
+            // The bytes already read are still decoded.
+            ctx.fireChannelRead(msg);
+            this.pause(ctx, this.bytes.nanosUntilAvailable(0));
+        } else {
+            ReferenceCountUtil.release(msg);
+            this.disconnect(ctx, "bytes");
+        }
+    }
+
+    /**
+     * Suspend the reading of the connection.
+     *
+     * @param ctx Channel context.
+     * @param nanos Time to wait before reading again.
+     */
+    private void pause(final ChannelHandlerContext ctx, final long nanos) {
+        if (this.paused) {
+            return;
+        }
+        this.paused = true;
+        this.metrics.paused(nanos);
+        // Shared with the message dispatcher, the reads stay paused until both resumed them.
+        ReadSuspension.suspend(ctx.channel());
+        ctx.executor().schedule(() -> {
+            this.paused = false;
+            ReadSuspension.resume(ctx.channel());
+        }, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void disconnect(final ChannelHandlerContext ctx, final String limit) {
+        if (ctx.channel().isActive()) {
+            LOGGER.log(System.Logger.Level.WARNING, "Rate limit of {0} exceeded, closing {1}", limit, ctx.channel());
+            this.metrics.disconnected();
+            ctx.close();
+        }
+    }
+
+    /**
+     * Token bucket, holding one second of traffic.
+     */
+    private static final class Bucket {
+
+        /**
+         * Tokens added per second, also the bucket capacity.
+         */
+        private final double rate;
+
+        /**
+         * Available tokens, negative when traffic was accepted over the limit.
+         */
+        private double tokens;
+
+        /**
+         * Last refill time, in nanoseconds.
+         */
+        private long lastRefill = System.nanoTime();
+
+        private Bucket(final double rate) {
+            super();
+            this.rate = rate;
+            this.tokens = rate;
+        }
+
+        private void refill(final long now) {
+            this.tokens = Math.min(this.rate, this.tokens + (now - this.lastRefill) * this.rate / NANOS_PER_SECOND);
+            this.lastRefill = now;
+        }
+
+        private void take(final double amount) {
+            this.tokens -= amount;
+        }
+
+        /**
+         * @param amount Number of tokens needed.
+         * @return The time until the bucket holds this amount, in nanoseconds.
+         */
+        private long nanosUntilAvailable(final double amount) {
+            return (long) Math.ceil((amount - this.tokens) * NANOS_PER_SECOND / this.rate);
+        }
+    }
+
+    /**
+     * Apply the message rate, and the byte rate for the drop policy.
+     */
+    private final class MessageLimiter extends ChannelInboundHandlerAdapter {
+
+        /**
+         * True while the continuation frames of a dropped fragmented message are discarded.
+         */
+        private boolean droppingFragments;
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+            RateLimitHandler limiter = RateLimitHandler.this;
+            long now = System.nanoTime();
+            if (limiter.policy == RateLimitPolicy.DROP) {
+                this.drop(ctx, msg, now);
+                return;
+            }
+            // A fragmented message is counted once, on its first frame.
+            if (limiter.messages != null && !(msg instanceof ContinuationWebSocketFrame)) {
+                limiter.messages.refill(now);
+                limiter.messages.take(1);
+                if (limiter.messages.tokens < 0) {
+                    if (limiter.policy == RateLimitPolicy.DELAY) {
+                        limiter.pause(ctx, limiter.messages.nanosUntilAvailable(0));
+                    } else {
+                        ReferenceCountUtil.release(msg);
+                        limiter.disconnect(ctx, "messages");
+                        return;
+                    }
+                }
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        /**
+         * Forward the message if both buckets allow it, discard it otherwise.
+         */
+        private void drop(final ChannelHandlerContext ctx, final Object msg, final long now) {
+            RateLimitHandler limiter = RateLimitHandler.this;
+            if (msg instanceof ContinuationWebSocketFrame) {
+                this.continuation(ctx, (ContinuationWebSocketFrame) msg);
+                return;
+            }
+            long size = limiter.bytes == null ? 0 : size(msg);
+            if (limiter.messages != null) {
+                limiter.messages.refill(now);
+            }
+            if (limiter.bytes != null) {
+                limiter.bytes.refill(now);
+            }
+            if ((limiter.messages != null && limiter.messages.tokens < 1)
+                    || (limiter.bytes != null && limiter.bytes.tokens < size)) {
+                this.droppingFragments = msg instanceof WebSocketFrame && !((WebSocketFrame) msg).isFinalFragment();
+                ReferenceCountUtil.release(msg);
+                limiter.metrics.dropped();
+                return;
+            }
+            this.droppingFragments = false;
+            if (limiter.messages != null) {
+                limiter.messages.take(1);
+            }
+            if (limiter.bytes != null) {
+                limiter.bytes.take(size);
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        /**
+         * Discard a fragment of a dropped message, or forward and count a fragment of an accepted one, so a message is
+         * never cut in the middle.
+         */
+        private void continuation(final ChannelHandlerContext ctx, final ContinuationWebSocketFrame frame) {
+            if (this.droppingFragments) {
+                this.droppingFragments = !frame.isFinalFragment();
+                frame.release();
+                return;
+            }
+            RateLimitHandler limiter = RateLimitHandler.this;
+            if (limiter.bytes != null) {
+                limiter.bytes.take(frame.content().readableBytes());
+            }
+            ctx.fireChannelRead(frame);
+        }
+
+        /**
+         * @param msg Decoded message.
+         * @return The size of the message, a text is counted by its UTF-8 encoded size.
+         */
+        private long size(final Object msg) {
+            if (msg instanceof ByteBuf) {
+                return ((ByteBuf) msg).readableBytes();
+            }
+            if (msg instanceof ByteBufHolder) {
+                return ((ByteBufHolder) msg).content().readableBytes();
+            }
+            if (msg instanceof CharSequence) {
+                return ByteBufUtil.utf8Bytes((CharSequence) msg);
+            }
+            return 0;
+        }
+    }
+}
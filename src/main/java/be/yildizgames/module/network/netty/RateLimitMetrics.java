@@ -0,0 +1,97 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the inbound rate limiting, for all the connections sharing a pipeline configuration.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class RateLimitMetrics {
+
+    /**
+     * Number of messages discarded over the limit.
+     */
+    private final LongAdder droppedMessages = new LongAdder();
+
+    /**
+     * Number of times the reading of a connection was suspended.
+     */
+    private final LongAdder pausedReads = new LongAdder();
+
+    /**
+     * Time the reading of the connections was suspended, in nanoseconds.
+     */
+    private final LongAdder pausedNanos = new LongAdder();
+
+    /**
+     * Number of connections closed over the limit.
+     */
+    private final LongAdder disconnections = new LongAdder();
+
+    RateLimitMetrics() {
+        super();
+    }
+
+    void dropped() {
+        this.droppedMessages.increment();
+    }
+
+    void paused(final long nanos) {
+        this.pausedReads.increment();
+        this.pausedNanos.add(nanos);
+    }
+
+    void disconnected() {
+        this.disconnections.increment();
+    }
+
+    public long getDroppedMessages() {
+        return this.droppedMessages.sum();
+    }
+
+    public long getPausedReads() {
+        return this.pausedReads.sum();
+    }
+
+    /**
+     * @return The total time the reading of the connections was suspended, in nanoseconds.
+     */
+    public long getPausedNanos() {
+        return this.pausedNanos.sum();
+    }
+
+    public long getDisconnections() {
+        return this.disconnections.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Rate limit: " + this.getDroppedMessages() + " dropped, " + this.getPausedReads() + " paused, "
+                + this.getDisconnections() + " disconnected";
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pause the reads of a channel on behalf of several independent owners, such as the rate limiter and the message
+ * dispatcher. Every suspension is counted as a channel attribute, the reads are only enabled again once every owner
+ * resumed them, so an owner never re-enables the reads another one paused.
+ * The counter can be updated from any thread, the auto read flag is always set on the channel event loop from the
+ * counter value at that time, so the last update wins.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ReadSuspension {
+
+    /**
+     * Number of owners currently pausing the reads of a channel.
+     */
+    private static final AttributeKey<AtomicInteger> SUSPENSIONS =
+            AttributeKey.valueOf(ReadSuspension.class, "suspensions");
+
+    private ReadSuspension() {
+        super();
+    }
+
+    /**
+     * Pause the reads of a channel, until a matching call to resume.
+     *
+     * @param channel Channel to pause.
+     */
+    //@Requires("channel != null")
+    public static void suspend(final Channel channel) {
+        if (counter(channel).getAndIncrement() == 0) {
+            update(channel);
+        }
+    }
+
+    /**
+     * Release a suspension made by suspend, the reads are enabled again once no other owner holds one.
+     *
+     * @param channel Channel to resume.
+     */
+    //@Requires("channel != null")
+    public static void resume(final Channel channel) {
+        if (counter(channel).decrementAndGet() == 0) {
+            update(channel);
+        }
+    }
+
+    /**
+     * @param channel Channel to check.
+     * @return True if at least one owner pauses the reads of the channel.
+     */
+    public static boolean isSuspended(final Channel channel) {
+        return counter(channel).get() > 0;
+    }
+
+    private static AtomicInteger counter(final Channel channel) {
+        AtomicInteger counter = channel.attr(SUSPENSIONS).get();
+        if (counter == null) {
+            AtomicInteger created = new AtomicInteger();
+            counter = channel.attr(SUSPENSIONS).setIfAbsent(created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Apply the counter on the event loop, a suspend and a resume from different threads can not be applied in the
+     * wrong order.
+     */
+    private static void update(final Channel channel) {
+        if (channel.eventLoop().inEventLoop()) {
+            channel.config().setAutoRead(!isSuspended(channel));
+        } else {
+            channel.eventLoop().execute(() -> channel.config().setAutoRead(!isSuspended(channel)));
+        }
+    }
+}
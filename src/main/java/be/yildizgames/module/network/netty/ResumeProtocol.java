@@ -0,0 +1,168 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.protocol.MessageSeparation;
+
+/**
+ * Control messages exchanged to resume a session after a brief disconnection.
+ * Control messages start with a control character, so they can not be mistaken for a game message, they are
+ * handled by this module and never reach the game logic.
+ * <ul>
+ *     <li>token: sent by the server when a session starts, carries the resume token of the session.</li>
+ *     <li>resume: sent by a reconnecting client, carries its previous token and the number of messages received.</li>
+ *     <li>resumed: sent by the server when the session is resumed, the missed messages follow.</li>
+ *     <li>rejected: sent by the server when the session can not be resumed, carries the token of the new session.</li>
+ * </ul>
+ * Messages are counted by their end delimiter, a message sent by the server is counted once received by the client.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ResumeProtocol {
+
+    /**
+     * First character of every control message content.
+     */
+    private static final char CONTROL = '\u0001';
+
+    private static final String TOKEN = CONTROL + "token:";
+
+    private static final String RESUME = CONTROL + "resume:";
+
+    private static final String RESUMED = CONTROL + "resumed:";
+
+    private static final String REJECTED = CONTROL + "rejected:";
+
+    private ResumeProtocol() {
+        super();
+    }
+
+    public static String token(final String token) {
+        return frame(TOKEN + token);
+    }
+
+    public static String resume(final String token, final long receivedMessages) {
+        return frame(RESUME + token + ":" + receivedMessages);
+    }
+
+    public static String resumed(final long receivedMessages) {
+        return frame(RESUMED + receivedMessages);
+    }
+
+    public static String rejected(final String newToken) {
+        return frame(REJECTED + newToken);
+    }
+
+    /**
+     * Remove the message delimiters, if any.
+     *
+     * @param message Message to check, with or without its delimiters.
+     * @return The control message content, or null if the message is not a control message.
+     */
+    public static String controlContent(final String message) {
+        int start = message.startsWith(MessageSeparation.MESSAGE_BEGIN) ? MessageSeparation.MESSAGE_BEGIN.length() : 0;
+        if (message.length() <= start || message.charAt(start) != CONTROL) {
+            return null;
+        }
+        int end = message.endsWith(MessageSeparation.MESSAGE_END)
+                ? message.length() - MessageSeparation.MESSAGE_END.length()
+                : message.length();
+        return message.substring(start, end);
+    }
+
+    public static boolean isToken(final String content) {
+        return content.startsWith(TOKEN);
+    }
+
+    public static boolean isResume(final String content) {
+        return content.startsWith(RESUME);
+    }
+
+    public static boolean isResumed(final String content) {
+        return content.startsWith(RESUMED);
+    }
+
+    public static boolean isRejected(final String content) {
+        return content.startsWith(REJECTED);
+    }
+
+    /**
+     * @param content Token, resume or rejected control content.
+     * @return The token carried by the message.
+     */
+    public static String getToken(final String content) {
+        int start = content.indexOf(':') + 1;
+        int end = content.indexOf(':', start);
+        return end < 0 ? content.substring(start) : content.substring(start, end);
+    }
+
+    /**
+     * @param content Resume or resumed control content.
+     * @return The number of messages received by the client.
+     * @throws NumberFormatException If the content is malformed.
+     */
+    public static long getReceivedMessages(final String content) {
+        return Long.parseLong(content.substring(content.lastIndexOf(':') + 1));
+    }
+
+    /**
+     * Count the messages in a text, by their end delimiter.
+     *
+     * @param text Text to check.
+     * @return The number of messages in the text.
+     */
+    public static int countMessages(final String text) {
+        int result = 0;
+        int index = text.indexOf(MessageSeparation.MESSAGE_END);
+        while (index >= 0) {
+            result++;
+            index = text.indexOf(MessageSeparation.MESSAGE_END, index + MessageSeparation.MESSAGE_END.length());
+        }
+        return result;
+    }
+
+    /**
+     * Remove the first messages of a text.
+     *
+     * @param text Text containing several messages.
+     * @param count Number of messages to remove.
+     * @return The remaining text.
+     */
+    public static String skipMessages(final String text, final long count) {
+        int start = 0;
+        for (long i = 0; i < count; i++) {
+            int index = text.indexOf(MessageSeparation.MESSAGE_END, start);
+            if (index < 0) {
+                return "";
+            }
+            start = index + MessageSeparation.MESSAGE_END.length();
+        }
+        return text.substring(start);
+    }
+
+    private static String frame(final String content) {
+        return MessageSeparation.MESSAGE_BEGIN + content + MessageSeparation.MESSAGE_END;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.channel.EventLoopGroup;
+
+/**
+ * Reference counted event loop group, shared by several channels owners, typically clients.
+ * The underlying group is created on first acquisition and shut down when the last owner releases it.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class SharedEventLoopGroup {
+
+    /**
+     * System property used to set the number of threads of the default client group, 0 to use the netty default.
+     */
+    public static final String CLIENT_THREADS_PROPERTY = "yildiz.network.client.threads";
+
+    private static final System.Logger LOGGER = System.getLogger(SharedEventLoopGroup.class.getName());
+
+    /**
+     * Transport used to create the group.
+     */
+    private final NettyTransport transport;
+
+    /**
+     * Number of threads in the group, 0 for the netty default.
+     */
+    private final int threads;
+
+    /**
+     * Current group, null when no owner holds it.
+     */
+    private EventLoopGroup group;
+
+    /**
+     * Number of owners currently holding the group.
+     */
+    private int references;
+
+    /**
+     * Create a new shared group, the underlying event loop group is only created when acquired.
+     *
+     * @param transport Transport to use, must be available.
+     * @param threads Number of threads, 0 to use the netty default.
+     */
+    //@Requires("transport != null")
+    //@Requires("threads >= 0")
+    public SharedEventLoopGroup(final NettyTransport transport, final int threads) {
+        super();
+        if (threads < 0) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        this.transport = transport;
+        this.threads = threads;
+    }
+
+    /**
+     * Provide the group shared by all clients created without an explicit group.
+     * Its transport and thread count are read from the system properties on first use.
+     *
+     * @return The default client group.
+     */
+    public static SharedEventLoopGroup client() {
+        return ClientHolder.INSTANCE;
+    }
+
+    /**
+     * Acquire the group, creating it if no owner currently holds it.
+     * Every call must be balanced by a call to release.
+     *
+     * @return The event loop group.
+     */
+    //@Ensures("result != null")
+    public synchronized EventLoopGroup acquire() {
+        if (this.group == null) {
+            this.group = this.transport.newEventLoopGroup(this.threads);
+            LOGGER.log(System.Logger.Level.DEBUG, "Shared {0} event loop group created.", this.transport);
+        }
+        this.references++;
+        return this.group;
+    }
+
+    /**
+     * Release the group, it is shut down when the last owner releases it.
+     */
+    public synchronized void release() {
+        if (this.references == 0) {
+            LOGGER.log(System.Logger.Level.WARNING, "Shared event loop group released more times than acquired.");
+            return;
+        }
+        this.references--;
+        if (this.references == 0) {
+            this.group.shutdownGracefully();
+            this.group = null;
+            LOGGER.log(System.Logger.Level.DEBUG, "Shared {0} event loop group shut down.", this.transport);
+        }
+    }
+
+    /**
+     * @return The number of owners currently holding the group.
+     */
+    public synchronized int getReferences() {
+        return this.references;
+    }
+
+    /**
+     * @return The transport used by this group.
+     */
+    public NettyTransport getTransport() {
+        return this.transport;
+    }
+
+    /**
+     * Lazy holder for the default client group.
+     */
+    private static final class ClientHolder {
+
+        private static final SharedEventLoopGroup INSTANCE =
+                new SharedEventLoopGroup(NettyTransport.fromConfiguration(), Integer.getInteger(CLIENT_THREADS_PROPERTY, 0));
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.DecoderEncoder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connections, bytes and messages counters, and decode and handler latencies of the channels sharing a pipeline
+ * configuration and a codec, exported as a JMX MBean.
+ * The decode time is the time spent in the pipeline for a read, minus the time spent in the message handler.
+ * With a dispatch executor, the handler time only covers the hand-off to the executor.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class TrafficMetrics implements TrafficMetricsMBean {
+
+    private static final System.Logger LOGGER = System.getLogger(TrafficMetrics.class.getName());
+
+    /**
+     * JMX domain of the metrics.
+     */
+    private static final String DOMAIN = "be.yildizgames.module.network.netty";
+
+    private final LongAdder openedConnections = new LongAdder();
+
+    private final LongAdder activeConnections = new LongAdder();
+
+    private final LongAdder bytesRead = new LongAdder();
+
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private final LongAdder messagesRead = new LongAdder();
+
+    private final LongAdder messagesWritten = new LongAdder();
+
+    private final LatencyHistogram decodeLatency = new LatencyHistogram();
+
+    private final LatencyHistogram handlerLatency = new LatencyHistogram();
+
+    /**
+     * Name of the exported MBean, null if the metrics are not exported.
+     */
+    private volatile ObjectName objectName;
+
+    private TrafficMetrics() {
+        super();
+    }
+
+    /**
+     * Create metrics and register them in the platform MBean server.
+     * If an MBean is already registered with the same name and codec, the metrics are not exported.
+     *
+     * @param name Name of the server or client using the metrics.
+     * @param codec Codec of the channels.
+     * @return The created metrics.
+     */
+    static TrafficMetrics register(final String name, final DecoderEncoder codec) {
+        TrafficMetrics result = new TrafficMetrics();
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=TrafficMetrics,name=" + ObjectName.quote(name)
+                    + ",codec=" + codec);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(result, objectName);
+            result.objectName = objectName;
+        } catch (JMException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Traffic metrics {0} not exported to JMX: {1}", name, e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Remove the metrics from the platform MBean server, if they were exported.
+     */
+    void unregister() {
+        ObjectName name = this.objectName;
+        if (name == null) {
+            return;
+        }
+        this.objectName = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Traffic metrics {0} not unregistered: {1}", name, e.getMessage());
+        }
+    }
+
+    void connectionOpened() {
+        this.openedConnections.increment();
+        this.activeConnections.increment();
+    }
+
+    void connectionClosed() {
+        this.activeConnections.decrement();
+    }
+
+    void bytesRead(final long bytes) {
+        this.bytesRead.add(bytes);
+    }
+
+    void bytesWritten(final long bytes) {
+        this.bytesWritten.add(bytes);
+    }
+
+    void messageRead() {
+        this.messagesRead.increment();
+    }
+
+    void messageWritten() {
+        this.messagesWritten.increment();
+    }
+
+    /**
+     * @return The distribution of the time spent decoding a read, in nanoseconds.
+     */
+    public LatencyHistogram getDecodeLatency() {
+        return this.decodeLatency;
+    }
+
+    /**
+     * @return The distribution of the time spent in the message handler, in nanoseconds.
+     */
+    public LatencyHistogram getHandlerLatency() {
+        return this.handlerLatency;
+    }
+
+    @Override
+    public long getOpenedConnections() {
+        return this.openedConnections.sum();
+    }
+
+    @Override
+    public long getActiveConnections() {
+        return this.activeConnections.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return this.bytesWritten.sum();
+    }
+
+    @Override
+    public long getMessagesRead() {
+        return this.messagesRead.sum();
+    }
+
+    @Override
+    public long getMessagesWritten() {
+        return this.messagesWritten.sum();
+    }
+
+    @Override
+    public long getDecodeNanosMean() {
+        return this.decodeLatency.getMean();
+    }
+
+    @Override
+    public long getDecodeNanosP50() {
+        return this.decodeLatency.getPercentile(50);
+    }
+
+    @Override
+    public long getDecodeNanosP99() {
+        return this.decodeLatency.getPercentile(99);
+    }
+
+    @Override
+    public long getDecodeNanosMax() {
+        return this.decodeLatency.getMax();
+    }
+
+    @Override
+    public long getHandlerNanosMean() {
+        return this.handlerLatency.getMean();
+    }
+
+    @Override
+    public long getHandlerNanosP50() {
+        return this.handlerLatency.getPercentile(50);
+    }
+
+    @Override
+    public long getHandlerNanosP99() {
+        return this.handlerLatency.getPercentile(99);
+    }
+
+    @Override
+    public long getHandlerNanosMax() {
+        return this.handlerLatency.getMax();
+    }
+
+    @Override
+    public void resetLatencies() {
+        this.decodeLatency.reset();
+        this.handlerLatency.reset();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+
+/**
+ * Record the traffic of a channel, this handler is placed first in the pipeline to see the raw bytes, and its message
+ * probe just before the message handler to see the decoded messages.
+ * Both run on the channel event loop, so the per channel state is not synchronized.
+ *
+ * @author Grégory Van den Borre
+ */
+final class TrafficMetricsHandler extends ChannelDuplexHandler {
+
+    private final TrafficMetrics metrics;
+
+    /**
+     * Time spent in the message handler during the current read, in nanoseconds.
+     */
+    private long handlerNanos;
+
+    private final ChannelHandler messageProbe = new MessageProbe();
+
+    TrafficMetricsHandler(final TrafficMetrics metrics) {
+        super();
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The handler to place just before the message handler.
+     */
+    ChannelHandler getMessageProbe() {
+        return this.messageProbe;
+    }
+
+    @Override
+    public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+        this.metrics.connectionOpened();
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        this.metrics.connectionClosed();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+        long bytes = size(msg);
+        if (bytes < 0) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        this.metrics.bytesRead(bytes);
+        this.handlerNanos = 0;
+        long start = System.nanoTime();
+        ctx.fireChannelRead(msg);
+        this.metrics.getDecodeLatency().record(System.nanoTime() - start - this.handlerNanos);
+    }
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
+        long bytes = size(msg);
+        if (bytes > 0) {
+            this.metrics.bytesWritten(bytes);
+        }
+        ctx.write(msg, promise);
+    }
+
+    /**
+     * @param msg Raw message.
+     * @return The number of bytes of the message, -1 if it is not a byte container.
+     */
+    private static long size(final Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        if (msg instanceof FileRegion) {
+            return ((FileRegion) msg).count();
+        }
+        return -1;
+    }
+
+    /**
+     * Count the decoded messages and the written messages, and measure the message handler time.
+     */
+    private final class MessageProbe extends ChannelDuplexHandler {
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+            TrafficMetricsHandler.this.metrics.messageRead();
+            long start = System.nanoTime();
+            ctx.fireChannelRead(msg);
+            long elapsed = System.nanoTime() - start;
+            TrafficMetricsHandler.this.handlerNanos += elapsed;
+            TrafficMetricsHandler.this.metrics.getHandlerLatency().record(elapsed);
+        }
+
+        @Override
+        public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
+            TrafficMetricsHandler.this.metrics.messageWritten();
+            ctx.write(msg, promise);
+        }
+    }
+}
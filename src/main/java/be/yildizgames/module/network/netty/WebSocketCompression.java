@@ -0,0 +1,196 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateClientExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+
+/**
+ * Negotiate the permessage-deflate websocket extension, messages smaller than the threshold are sent uncompressed.
+ * The extension handler replaces itself by the deflate encoder and decoder once the handshake is complete, two
+ * handlers around it measure the outbound frames before and after compression.
+ *
+ * @author Grégory Van den Borre
+ */
+final class WebSocketCompression {
+
+    /**
+     * Largest deflate window, in bits.
+     */
+    private static final int MAX_WINDOW_SIZE = 15;
+
+    /**
+     * Minimum payload size to compress a message, in bytes.
+     */
+    private final int threshold;
+
+    /**
+     * Deflate compression level, from 0 to 9.
+     */
+    private final int level;
+
+    private final CompressionMetrics metrics = new CompressionMetrics();
+
+    private final WebSocketExtensionFilterProvider filterProvider = new WebSocketExtensionFilterProvider() {
+
+        @Override
+        public WebSocketExtensionFilter encoderFilter() {
+            // Continuation frames must follow their first frame, they are never skipped.
+            return frame -> (frame instanceof TextWebSocketFrame || frame instanceof BinaryWebSocketFrame)
+                    && frame.content().readableBytes() < WebSocketCompression.this.threshold;
+        }
+
+        @Override
+        public WebSocketExtensionFilter decoderFilter() {
+            return WebSocketExtensionFilter.NEVER_SKIP;
+        }
+    };
+
+    WebSocketCompression(final int threshold, final int level) {
+        super();
+        this.threshold = threshold;
+        this.level = level;
+    }
+
+    /**
+     * Add the server extension handler and the metrics handlers at the end of the pipeline.
+     *
+     * @param pipeline Pipeline to update, the http codec must already be present.
+     */
+    void addServerHandlers(final ChannelPipeline pipeline) {
+        this.addHandlers(pipeline, new WebSocketServerExtensionHandler(new PerMessageDeflateServerExtensionHandshaker(
+                this.level, ZlibCodecFactory.isSupportingWindowSizeAndMemLevel(), MAX_WINDOW_SIZE,
+                false, false, this.filterProvider)));
+    }
+
+    /**
+     * Add the client extension handler and the metrics handlers at the end of the pipeline.
+     *
+     * @param pipeline Pipeline to update, the http codec must already be present.
+     */
+    void addClientHandlers(final ChannelPipeline pipeline) {
+        this.addHandlers(pipeline, new WebSocketClientExtensionHandler(new PerMessageDeflateClientExtensionHandshaker(
+                this.level, ZlibCodecFactory.isSupportingWindowSizeAndMemLevel(), MAX_WINDOW_SIZE,
+                false, false, this.filterProvider)));
+    }
+
+    private void addHandlers(final ChannelPipeline pipeline, final ChannelHandler extensionHandler) {
+        FrameSizeHandler uncompressed = new FrameSizeHandler();
+        pipeline.addLast(new CompressedFrameHandler(uncompressed, this.metrics));
+        pipeline.addLast(extensionHandler);
+        pipeline.addLast(uncompressed);
+    }
+
+    int getThreshold() {
+        return this.threshold;
+    }
+
+    CompressionMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @param msg Outbound message.
+     * @return true if the message is a data frame, that can be compressed.
+     */
+    private static boolean isDataFrame(final Object msg) {
+        return msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame
+                || msg instanceof ContinuationWebSocketFrame;
+    }
+
+    /**
+     * Record the size of the outbound frames before compression, and the time they enter the encoder.
+     * Every handler of a channel runs on its event loop, so no synchronization is needed.
+     */
+    private static final class FrameSizeHandler extends ChannelOutboundHandlerAdapter {
+
+        private int size;
+
+        private long start;
+
+        @Override
+        public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) throws Exception {
+            if (isDataFrame(msg)) {
+                this.size = ((WebSocketFrame) msg).content().readableBytes();
+                this.start = System.nanoTime();
+            }
+            super.write(ctx, msg, promise);
+        }
+    }
+
+    /**
+     * Compare the outbound frames after compression with their size before compression.
+     */
+    private static final class CompressedFrameHandler extends ChannelOutboundHandlerAdapter {
+
+        private final FrameSizeHandler uncompressed;
+
+        private final CompressionMetrics metrics;
+
+        /**
+         * True while the continuation frames of a compressed message are sent.
+         */
+        private boolean compressing;
+
+        private CompressedFrameHandler(final FrameSizeHandler uncompressed, final CompressionMetrics metrics) {
+            super();
+            this.uncompressed = uncompressed;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) throws Exception {
+            if (isDataFrame(msg) && this.uncompressed.start != 0) {
+                WebSocketFrame frame = (WebSocketFrame) msg;
+                boolean compressed = (frame.rsv() & WebSocketExtension.RSV1) != 0
+                        || (frame instanceof ContinuationWebSocketFrame && this.compressing);
+                if (compressed) {
+                    this.compressing = !frame.isFinalFragment();
+                    this.metrics.compressed(this.uncompressed.size, frame.content().readableBytes(),
+                            System.nanoTime() - this.uncompressed.start);
+                } else {
+                    this.metrics.skipped(this.uncompressed.size);
+                }
+                this.uncompressed.start = 0;
+            }
+            super.write(ctx, msg, promise);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.concurrent.PromiseCombiner;
+
+/**
+ * Split the outbound websocket messages larger than the fragment size in a first frame followed by continuation
+ * frames, the fragments are slices of the message content, nothing is copied.
+ *
+ * @author Grégory Van den Borre
+ */
+final class WebSocketFragmenter extends ChannelOutboundHandlerAdapter {
+
+    /**
+     * Maximum payload size of a fragment, in bytes.
+     */
+    private final int fragmentSize;
+
+    WebSocketFragmenter(final int fragmentSize) {
+        super();
+        this.fragmentSize = fragmentSize;
+    }
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
+        if (!(msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame)
+                || !((WebSocketFrame) msg).isFinalFragment()
+                || ((WebSocketFrame) msg).content().readableBytes() <= this.fragmentSize) {
+            ctx.write(msg, promise);
+            return;
+        }
+        WebSocketFrame frame = (WebSocketFrame) msg;
+        try {
+            ByteBuf content = frame.content();
+            PromiseCombiner combiner = new PromiseCombiner(ctx.executor());
+            int offset = content.readerIndex();
+            int end = content.writerIndex();
+            boolean first = true;
+            while (offset < end) {
+                int length = Math.min(this.fragmentSize, end - offset);
+                ByteBuf fragment = content.retainedSlice(offset, length);
+                offset += length;
+                boolean last = offset == end;
+                combiner.add(ctx.write(first
+                        ? firstFragment(frame, last, fragment)
+                        : new ContinuationWebSocketFrame(last, 0, fragment)));
+                first = false;
+            }
+            combiner.finish(promise);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private static WebSocketFrame firstFragment(final WebSocketFrame frame, final boolean last, final ByteBuf fragment) {
+        if (frame instanceof TextWebSocketFrame) {
+            return new TextWebSocketFrame(last, frame.rsv(), fragment);
+        }
+        return new BinaryWebSocketFrame(last, frame.rsv(), fragment);
+    }
+}
@@ -25,11 +25,14 @@
 package be.yildizgames.module.network.netty.client;
 
 import be.yildizgames.module.network.client.ClientCallBack;
+import be.yildizgames.module.network.netty.MessageSizeLimiter;
 import be.yildizgames.module.network.protocol.MessageSeparation;
 import be.yildizgames.module.network.protocol.MessageWrapper;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.TooLongFrameException;
 
+import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -41,21 +44,50 @@ public abstract class AbstractClientMessageHandler <T> extends SimpleChannelInbo
     private static final System.Logger LOGGER = System.getLogger(AbstractClientMessageHandler.class.getName());
 
     private static final int BUFFER_SIZE = 1024;
+
+    /**
+     * Maximum length of an incomplete message without size limiter in the pipeline, in bytes.
+     */
+    private static final int DEFAULT_MAX_MESSAGE_LENGTH = 65536;
+
     /**
      * Used to store an incomplete message waiting for its other parts.
      */
     private final List<String> cutMessage = new ArrayList<>();
 
+    /**
+     * Length of the incomplete message, in encoded bytes.
+     */
+    private int cutLength;
+
+    /**
+     * Size limiter of the pipeline, null if none.
+     */
+    private MessageSizeLimiter sizeLimiter;
+
     private final ClientCallBack callBack;
 
+    /**
+     * Resume state of the client, null if the callback is not a netty client.
+     */
+    private final ClientResumeState resumeState;
+
     AbstractClientMessageHandler(ClientCallBack cb) {
         super();
         this.callBack = cb;
+        this.resumeState = cb instanceof ClientNetty ? ((ClientNetty<?>) cb).getResumeState() : null;
+    }
+
+    @Override
+    public void channelRegistered(final ChannelHandlerContext ctx) throws Exception {
+        this.sizeLimiter = ctx.pipeline().get(MessageSizeLimiter.class);
+        super.channelRegistered(ctx);
     }
 
     @Override
     public final void channelInactive(final ChannelHandlerContext ctx) throws Exception {
         super.channelInactive(ctx);
+        this.channelClosed(new ClosedChannelException());
         this.callBack.connectionFailed();
         LOGGER.log(System.Logger.Level.INFO, "Netty channel closed: {}", ctx.channel());
     }
@@ -63,11 +95,49 @@ public abstract class AbstractClientMessageHandler <T> extends SimpleChannelInbo
     @Override
     public final void exceptionCaught(final ChannelHandlerContext ctx, final Throwable e) {
         LOGGER.log(System.Logger.Level.ERROR, "Exception", e);
+        this.channelClosed(e);
         ctx.channel().close();
         callBack.connectionLost();
     }
 
-    void handleMessage(String message) {
+    /**
+     * Called when the channel is closed or failed, before the callback is notified.
+     *
+     * @param cause Reason of the closing.
+     */
+    void channelClosed(Throwable cause) {
+        if (this.resumeState != null) {
+            this.resumeState.fail(cause);
+        }
+    }
+
+    /**
+     * Forward a single complete message, without delimiters, to the callback.
+     *
+     * @param frame Message content.
+     */
+    void handleFrame(String frame) {
+        this.deliver(frame);
+    }
+
+    /**
+     * Forward a message to the callback, unless it is a resume control message.
+     *
+     * @param message Message content.
+     */
+    private void deliver(final String message) {
+        if (this.resumeState == null || !this.resumeState.handle(message)) {
+            this.callBack.messageReceived(new MessageWrapper(message));
+        }
+    }
+
+    /**
+     * Forward the complete messages to the callback, an incomplete message is kept until its end is received.
+     *
+     * @param message Received content.
+     * @param bytes Encoded length of the received content, in bytes, the size limit applies to the encoded messages.
+     */
+    void handleMessage(String message, int bytes) {
         if (message.endsWith(MessageSeparation.MESSAGE_END)) {
             if (!this.cutMessage.isEmpty()) {
                 StringBuilder sb = new StringBuilder(BUFFER_SIZE);
@@ -76,10 +146,21 @@ public abstract class AbstractClientMessageHandler <T> extends SimpleChannelInbo
                 this.processMessage(sb.toString());
 
                 this.cutMessage.clear();
+                this.cutLength = 0;
             } else {
                 this.processMessage(message);
             }
         } else {
+            this.cutLength += bytes;
+            int max = this.sizeLimiter == null ? DEFAULT_MAX_MESSAGE_LENGTH : this.sizeLimiter.getMaxMessageSize();
+            if (this.cutLength > max) {
+                this.cutMessage.clear();
+                this.cutLength = 0;
+                if (this.sizeLimiter != null) {
+                    this.sizeLimiter.rejected();
+                }
+                throw new TooLongFrameException("Message length exceeds " + max);
+            }
             this.cutMessage.add(message);
         }
     }
@@ -93,8 +174,7 @@ public abstract class AbstractClientMessageHandler <T> extends SimpleChannelInbo
         String messageWithoutStartChar = message.replace(MessageSeparation.MESSAGE_BEGIN, "");
         final String[] messages = messageWithoutStartChar.split(MessageSeparation.MESSAGE_END);
         for (final String c : messages) {
-            MessageWrapper current = new MessageWrapper(c);
-            callBack.messageReceived(current);
+            this.deliver(c);
         }
     }
 }
@@ -26,14 +26,24 @@ package be.yildizgames.module.network.netty.client;
 
 import be.yildizgames.module.network.DecoderEncoder;
 import be.yildizgames.module.network.client.Client;
+import be.yildizgames.module.network.netty.HeartbeatHandler;
+import be.yildizgames.module.network.netty.ResumeProtocol;
+import be.yildizgames.module.network.netty.SharedEventLoopGroup;
 import be.yildizgames.module.network.protocol.NetworkMessage;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
+import io.netty.util.ReferenceCountUtil;
 
 import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Netty implementation for a client.
@@ -49,10 +59,45 @@ public abstract class ClientNetty<T> extends Client {
      */
     private final Bootstrap bootstrap;
 
+    /**
+     * Shared group the bootstrap runs on, null if the bootstrap owns its group.
+     */
+    private final SharedEventLoopGroup sharedGroup;
+
+    /**
+     * Flag to release the group only once.
+     */
+    private boolean groupReleased;
+
+    /**
+     * Listener for the binary messages, null to process them as text.
+     */
+    private volatile ClientBinaryListener binaryListener;
+
     /**
      * Connection to the server.
      */
-    private Channel channel;
+    private volatile Channel channel;
+
+    /**
+     * Resume token and received message count, updated by the server control messages.
+     */
+    private final ClientResumeState resumeState = new ClientResumeState();
+
+    /**
+     * Messages sent while connecting, written in one batch once the client is ready, also guards the connection state.
+     */
+    private final Queue<Object> pendingWrites = new ArrayDeque<>();
+
+    /**
+     * True from the connection request until the client is ready or the connection failed.
+     */
+    private boolean connecting;
+
+    /**
+     * True when the messages can be written directly on the channel.
+     */
+    private boolean ready;
 
     /**
      * Create a new instance of a client.
@@ -60,9 +105,20 @@ public abstract class ClientNetty<T> extends Client {
      * @param clientBootstrap Netty bootstrap object.
      */
     ClientNetty(final Bootstrap clientBootstrap) {
+        this(clientBootstrap, null);
+    }
+
+    /**
+     * Create a new instance of a client running on a shared event loop group.
+     *
+     * @param clientBootstrap Netty bootstrap object, its group must have been acquired from the shared group.
+     * @param sharedGroup Shared group to release when the client is closed, null if the bootstrap owns its group.
+     */
+    ClientNetty(final Bootstrap clientBootstrap, final SharedEventLoopGroup sharedGroup) {
         super();
         LOGGER.log(System.Logger.Level.INFO,"Initializing Netty network client engine...");
         this.bootstrap = clientBootstrap;
+        this.sharedGroup = sharedGroup;
         LOGGER.log(System.Logger.Level.INFO,"Netty network engine client initialized.");
 
     }
@@ -76,21 +132,224 @@ public abstract class ClientNetty<T> extends Client {
         this.bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeout);
     }
 
+    /**
+     * Connect to the server and wait for the connection.
+     * As for connectAsync, a failed connection keeps the event loop group until close is called.
+     *
+     * @param address Server address.
+     * @param port Server port.
+     */
     @Override
     public void connectImpl(final String address, final int port) {
         LOGGER.log(System.Logger.Level.INFO, "Connecting to server {}:{}", address, port);
+        this.connecting();
         ChannelFuture future = this.bootstrap.connect(new InetSocketAddress(address, port));
         if (!future.awaitUninterruptibly().isSuccess()) {
+            this.discardPendingWrites();
             this.connectionFailed();
-            this.bootstrap.config().group().shutdownGracefully();
         } else {
             this.channel = future.channel();
             this.connectionComplete();
+            this.whenReady(future.channel(), null);
         }
     }
 
+    /**
+     * Connect to the server without blocking the caller.
+     * The callbacks are invoked on the I/O thread, and the returned future completes once the client can send
+     * messages: when the TCP connection is established, or when the handshake is complete for a websocket.
+     * A failed connection keeps the event loop group, so the client can connect again or resume, close must be called
+     * to release it once the client is not used anymore.
+     *
+     * @param address Server address.
+     * @param port Server port.
+     * @return A future completed when the client is ready, or completed exceptionally if the connection failed.
+     */
+    public CompletableFuture<Void> connectAsync(final String address, final int port) {
+        return this.connectAsync(address, port, null);
+    }
+
+    /**
+     * Connect to the server without blocking the caller.
+     *
+     * @param address Server address.
+     * @param port Server port.
+     * @param firstMessage Message to send before the ones sent while connecting, null if none.
+     * @return A future completed when the client is ready, after the pending messages are written.
+     */
+    private CompletableFuture<Void> connectAsync(final String address, final int port, final String firstMessage) {
+        LOGGER.log(System.Logger.Level.INFO, "Connecting asynchronously to server {0}:{1}", address, port);
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        this.connecting();
+        this.bootstrap.connect(new InetSocketAddress(address, port)).addListener((ChannelFutureListener) connect -> {
+            if (!connect.isSuccess()) {
+                this.discardPendingWrites();
+                this.connectionFailed();
+                result.completeExceptionally(connect.cause());
+                return;
+            }
+            this.channel = connect.channel();
+            this.connectionComplete();
+            this.whenReady(connect.channel(), firstMessage).addListener((ChannelFutureListener) ready -> {
+                if (ready.isSuccess()) {
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(ready.cause());
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Reconnect and resume the previous session, so the messages sent by the server during the disconnection are
+     * received. The server must be configured with resumable sessions.
+     * If the session can not be resumed, the client continues with the new session created by the server.
+     * To call once the previous connection is lost, the client must not have been closed.
+     *
+     * @param address Server address.
+     * @param port Server port.
+     * @return A future completed with true if the session was resumed, false if a new session was started, or
+     * completed exceptionally if the connection failed.
+     */
+    public CompletableFuture<Boolean> resume(final String address, final int port) {
+        Optional<String> token = this.resumeState.getToken();
+        if (token.isEmpty()) {
+            return this.connectAsync(address, port).thenApply(v -> false);
+        }
+        long received = this.resumeState.getReceivedMessages();
+        CompletableFuture<Boolean> result = this.resumeState.startResume();
+        // The resume request must be processed before the messages sent while reconnecting.
+        this.connectAsync(address, port, ResumeProtocol.resume(token.get(), received)).whenComplete((v, e) -> {
+            if (e != null) {
+                this.resumeState.fail(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return The token to resume the current session, empty if the server does not support resuming.
+     */
+    public Optional<String> getResumeToken() {
+        return this.resumeState.getToken();
+    }
+
+    /**
+     * @return The number of messages received in the current session.
+     */
+    public long getReceivedMessages() {
+        return this.resumeState.getReceivedMessages();
+    }
+
+    /**
+     * @return The smoothed round trip time measured by the heartbeat, empty without heartbeat, connection, or until
+     * the first pong.
+     */
+    public Optional<Duration> getRoundTripTime() {
+        Channel current = this.channel;
+        HeartbeatHandler heartbeat = current == null ? null : current.pipeline().get(HeartbeatHandler.class);
+        return heartbeat == null ? Optional.empty() : heartbeat.getRoundTripTime();
+    }
+
+    ClientResumeState getResumeState() {
+        return this.resumeState;
+    }
+
     protected abstract void connectionComplete();
 
+    /**
+     * Messages sent from now on are kept until the client is ready.
+     */
+    private void connecting() {
+        synchronized (this.pendingWrites) {
+            this.connecting = true;
+            this.ready = false;
+        }
+    }
+
+    /**
+     * Write the pending messages once the connected channel is ready, or discard them if it fails.
+     *
+     * @param connected Connected channel.
+     * @param firstMessage Message to send before the pending ones, null if none.
+     * @return The future completed when the channel is ready.
+     */
+    private ChannelFuture whenReady(final Channel connected, final String firstMessage) {
+        connected.closeFuture().addListener(f -> this.disconnected(connected));
+        return this.readyFuture(connected).addListener((ChannelFutureListener) f -> {
+            if (f.isSuccess()) {
+                this.flushPendingWrites(connected, firstMessage);
+            } else {
+                this.discardPendingWrites();
+            }
+        });
+    }
+
+    private void flushPendingWrites(final Channel connected, final String firstMessage) {
+        synchronized (this.pendingWrites) {
+            if (firstMessage != null) {
+                connected.write(this.buildMessage(firstMessage));
+            }
+            Object message;
+            while ((message = this.pendingWrites.poll()) != null) {
+                connected.write(message);
+            }
+            this.connecting = false;
+            this.ready = true;
+        }
+        connected.flush();
+    }
+
+    private void discardPendingWrites() {
+        synchronized (this.pendingWrites) {
+            this.pendingWrites.forEach(ReferenceCountUtil::release);
+            this.pendingWrites.clear();
+            this.connecting = false;
+            this.ready = false;
+        }
+    }
+
+    private void disconnected(final Channel closed) {
+        synchronized (this.pendingWrites) {
+            if (this.ready && this.channel == closed) {
+                this.ready = false;
+            }
+        }
+    }
+
+    /**
+     * Write a message, or keep it until the client is ready if it is connecting.
+     * Without connection, the message is discarded.
+     *
+     * @param message Message to write.
+     */
+    private void write(final Object message) {
+        Channel c;
+        synchronized (this.pendingWrites) {
+            c = this.channel;
+            if (!this.ready || c == null) {
+                if (this.connecting) {
+                    this.pendingWrites.add(message);
+                } else {
+                    ReferenceCountUtil.release(message);
+                }
+                return;
+            }
+        }
+        c.writeAndFlush(message);
+    }
+
+    /**
+     * Provide the future completed when the connected channel is ready to send messages.
+     *
+     * @param connected Connected channel.
+     * @return The future completed when the channel is ready, by default, it is already complete.
+     */
+    protected ChannelFuture readyFuture(final Channel connected) {
+        return connected.newSucceededFuture();
+    }
+
     @Override
     public void close() {
         Optional.ofNullable(this.channel)
@@ -100,7 +359,24 @@ public abstract class ClientNetty<T> extends Client {
                     this.connectionLost();
                 });
         this.channel = null;
-        this.bootstrap.config().group().shutdownGracefully();
+        this.discardPendingWrites();
+        this.releaseGroup();
+    }
+
+    /**
+     * Shut down the owned group, or release the shared one, only the last client releasing it will shut it down.
+     * The group is released only once, even if the client is closed several times.
+     */
+    private synchronized void releaseGroup() {
+        if (this.groupReleased) {
+            return;
+        }
+        this.groupReleased = true;
+        if (this.sharedGroup == null) {
+            this.bootstrap.config().group().shutdownGracefully();
+        } else {
+            this.sharedGroup.release();
+        }
     }
 
     @Override
@@ -108,10 +384,39 @@ public abstract class ClientNetty<T> extends Client {
         this.sendMessage(message.buildMessage());
     }
 
+    /**
+     * Send a message, messages sent while connecting are kept and written in one batch once the client is ready, so
+     * a request can be sent without waiting for the connection, or for the websocket handshake.
+     *
+     * @param message Message to send.
+     */
     @Override
     public void sendMessage(final String message) {
-        Optional.ofNullable(this.channel)
-                .ifPresent(c -> c.writeAndFlush(this.buildMessage(message)));
+        this.write(this.buildMessage(message));
+    }
+
+    /**
+     * Send a binary message, the buffer is released once written, or immediately if the client is not connected.
+     * Messages sent while connecting are kept until the client is ready.
+     *
+     * @param message Message to send.
+     */
+    public void sendMessage(final ByteBuf message) {
+        this.write(this.buildBinaryMessage(message));
+    }
+
+    /**
+     * Set the listener receiving the messages when the pipeline uses binary frames.
+     * Without listener, binary messages are decoded as text and sent to the client callback.
+     *
+     * @param listener Listener for the binary messages.
+     */
+    public void setBinaryListener(final ClientBinaryListener listener) {
+        this.binaryListener = listener;
+    }
+
+    ClientBinaryListener getBinaryListener() {
+        return this.binaryListener;
     }
 
     @Override
@@ -122,5 +427,7 @@ public abstract class ClientNetty<T> extends Client {
 
     protected abstract T buildMessage(String message);
 
+    protected abstract Object buildBinaryMessage(ByteBuf message);
+
     public abstract  DecoderEncoder getCodec();
 }
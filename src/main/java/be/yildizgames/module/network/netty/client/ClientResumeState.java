@@ -0,0 +1,136 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.client;
+
+import be.yildizgames.module.network.netty.ResumeProtocol;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resume token and received message count of a client, updated by the control messages of the server.
+ *
+ * @author Grégory Van den Borre
+ */
+final class ClientResumeState {
+
+    private static final System.Logger LOGGER = System.getLogger(ClientResumeState.class.getName());
+
+    /**
+     * Number of messages received since the session started.
+     */
+    private final AtomicLong receivedMessages = new AtomicLong();
+
+    /**
+     * Token of the current session, null if the server did not send any.
+     */
+    private volatile String token;
+
+    /**
+     * Resume waiting for the server answer, null if none.
+     */
+    private CompletableFuture<Boolean> pending;
+
+    ClientResumeState() {
+        super();
+    }
+
+    /**
+     * Handle a received message, a control message is consumed, any other message is counted.
+     *
+     * @param message Received message, with or without its delimiters.
+     * @return true if the message is a control message, and must not be forwarded.
+     */
+    boolean handle(final String message) {
+        String content = ResumeProtocol.controlContent(message);
+        if (content == null) {
+            this.receivedMessages.incrementAndGet();
+            return false;
+        }
+        if (ResumeProtocol.isToken(content)) {
+            this.sessionStarted(content);
+        } else if (ResumeProtocol.isResumed(content)) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Session resumed.");
+            this.complete(true);
+        } else if (ResumeProtocol.isRejected(content)) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Session resume rejected.");
+            this.token = ResumeProtocol.getToken(content);
+            this.receivedMessages.set(0);
+            this.complete(false);
+        }
+        return true;
+    }
+
+    /**
+     * A new session token is ignored while resuming, the server will answer with the token to keep.
+     */
+    private synchronized void sessionStarted(final String content) {
+        if (this.pending == null) {
+            this.token = ResumeProtocol.getToken(content);
+            this.receivedMessages.set(0);
+        }
+    }
+
+    /**
+     * Start a resume.
+     *
+     * @return The future completed with the server answer.
+     */
+    synchronized CompletableFuture<Boolean> startResume() {
+        if (this.pending != null) {
+            this.pending.complete(false);
+        }
+        this.pending = new CompletableFuture<>();
+        return this.pending;
+    }
+
+    /**
+     * Fail the pending resume, if any.
+     *
+     * @param cause Failure reason.
+     */
+    synchronized void fail(final Throwable cause) {
+        if (this.pending != null) {
+            this.pending.completeExceptionally(cause);
+            this.pending = null;
+        }
+    }
+
+    private synchronized void complete(final boolean resumed) {
+        if (this.pending != null) {
+            this.pending.complete(resumed);
+            this.pending = null;
+        }
+    }
+
+    Optional<String> getToken() {
+        return Optional.ofNullable(this.token);
+    }
+
+    long getReceivedMessages() {
+        return this.receivedMessages.get();
+    }
+}
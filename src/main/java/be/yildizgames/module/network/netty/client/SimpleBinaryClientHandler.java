@@ -0,0 +1,55 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.CharsetUtil;
+
+/**
+ * Receive the length prefixed binary messages, and forward them to the client binary listener.
+ * Without listener, messages are decoded as text and processed like any other message.
+ *
+ * @author Grégory Van den Borre
+ */
+final class SimpleBinaryClientHandler extends AbstractClientMessageHandler<ByteBuf> {
+
+    private final ClientNetty<?> client;
+
+    SimpleBinaryClientHandler(ClientNetty<?> client) {
+        super(client);
+        this.client = client;
+    }
+
+    @Override
+    public void channelRead0(ChannelHandlerContext ctx, ByteBuf message) {
+        ClientBinaryListener listener = this.client.getBinaryListener();
+        if (listener == null) {
+            this.handleMessage(message.toString(CharsetUtil.UTF_8), message.readableBytes());
+        } else {
+            listener.messageReceived(message);
+        }
+    }
+}
@@ -39,8 +39,11 @@ final class SimpleClientHandler extends AbstractClientMessageHandler<String> {
     }
 
 
+    /**
+     * Receive a complete message, already split and stripped from its delimiters by the MessageFrameDecoder.
+     */
     @Override
     public void channelRead0(ChannelHandlerContext ctx, String message) {
-        this.handleMessage(message);
+        this.handleFrame(message);
     }
 }
@@ -38,16 +38,50 @@ public class SimpleClientHandlerFactory implements HandlerFactory {
 
     private final DecoderEncoder codec;
 
+    /**
+     * Client receiving the binary messages, null if the STRING codec uses delimited text, or if the WEBSOCKET codec
+     * processes the binary frames as text.
+     */
+    private final ClientNetty<?> binaryClient;
+
     public SimpleClientHandlerFactory(final ClientCallBack cb, DecoderEncoder codec) {
         super();
         this.callBack = cb;
         this.codec = codec;
+        this.binaryClient = null;
+    }
+
+    /**
+     * Create a factory for a client whose STRING codec uses length prefixed binary frames.
+     *
+     * @param client Client receiving the messages.
+     */
+    public SimpleClientHandlerFactory(final ClientNetty<?> client) {
+        this(client, DecoderEncoder.STRING, true);
+    }
+
+    /**
+     * Create a factory for a client that can receive binary messages, length prefixed frames with the STRING codec, binary
+     * frames with the WEBSOCKET codec.
+     *
+     * @param client Client receiving the messages.
+     * @param codec Codec used by the client.
+     * @param binary True to receive binary messages, false to process them as text.
+     */
+    public SimpleClientHandlerFactory(final ClientNetty<?> client, final DecoderEncoder codec, final boolean binary) {
+        super();
+        this.callBack = client;
+        this.codec = codec;
+        this.binaryClient = binary ? client : null;
     }
 
     @Override
     public ChannelHandler create() {
         if(codec == DecoderEncoder.WEBSOCKET) {
-            return new SimpleWebSocketClientHandler(this.callBack);
+            return new SimpleWebSocketClientHandler(this.callBack, this.binaryClient);
+        }
+        if(this.binaryClient != null) {
+            return new SimpleBinaryClientHandler(this.binaryClient);
         }
 
         return new SimpleClientHandler(this.callBack);
@@ -25,7 +25,9 @@
 package be.yildizgames.module.network.netty.client;
 
 import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.netty.SharedEventLoopGroup;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
 
 /**
  * @author Grégory Van den Borre
@@ -41,6 +43,16 @@ public class SimpleClientNetty extends ClientNetty<String> {
         super(clientBootstrap);
     }
 
+    /**
+     * Create a new instance of a client running on a shared event loop group.
+     *
+     * @param clientBootstrap Netty bootstrap object, its group must have been acquired from the shared group.
+     * @param sharedGroup Shared group to release when the client is closed.
+     */
+    public SimpleClientNetty(Bootstrap clientBootstrap, SharedEventLoopGroup sharedGroup) {
+        super(clientBootstrap, sharedGroup);
+    }
+
     @Override
     protected void connectionComplete() {
         this.connectionSuccessful();
@@ -51,6 +63,11 @@ public class SimpleClientNetty extends ClientNetty<String> {
         return message;
     }
 
+    @Override
+    protected ByteBuf buildBinaryMessage(ByteBuf message) {
+        return message;
+    }
+
     @Override
     public DecoderEncoder getCodec() {
         return DecoderEncoder.STRING;
@@ -25,17 +25,27 @@
 package be.yildizgames.module.network.netty.client;
 
 import be.yildizgames.module.network.client.ClientCallBack;
+import be.yildizgames.module.network.netty.MessageSizeLimiter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketClientHandshaker;
 import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
 import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import io.netty.util.CharsetUtil;
 
 import java.net.InetSocketAddress;
 import java.net.URI;
@@ -48,15 +58,35 @@ class SimpleWebSocketClientHandler extends AbstractClientMessageHandler<Object>
 
     private static final System.Logger LOGGER = System.getLogger(SimpleWebSocketClientHandler.class.getName());
 
+    /**
+     * Maximum frame payload without size limiter in the pipeline, in bytes, netty default.
+     */
+    private static final int DEFAULT_MAX_FRAME_PAYLOAD = 65536;
+
     private final ClientCallBack callBack;
 
     private WebSocketClientHandshaker handshaker;
 
     private ChannelPromise handshakeFuture;
 
+    /**
+     * Client receiving the binary frames, null to process them as text.
+     */
+    private final ClientNetty<?> binaryClient;
+
+    /**
+     * Fragments of the binary message being assembled, null if none.
+     */
+    private CompositeByteBuf fragments;
+
     SimpleWebSocketClientHandler(ClientCallBack cb) {
+        this(cb, null);
+    }
+
+    SimpleWebSocketClientHandler(ClientCallBack cb, ClientNetty<?> binaryClient) {
         super(cb);
         this.callBack = cb;
+        this.binaryClient = binaryClient;
     }
 
     public ChannelFuture handshakeFuture() {
@@ -68,13 +98,24 @@ class SimpleWebSocketClientHandler extends AbstractClientMessageHandler<Object>
         handshakeFuture = ctx.newPromise();
     }
 
+    @Override
+    void channelClosed(Throwable cause) {
+        this.releaseFragments();
+        if (this.handshakeFuture != null) {
+            this.handshakeFuture.tryFailure(cause);
+        }
+        super.channelClosed(cause);
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws URISyntaxException {
         String host = ((InetSocketAddress)ctx.channel().remoteAddress()).getAddress().getHostAddress();
         int port = ((InetSocketAddress)ctx.channel().remoteAddress()).getPort();
         String uri = "ws://" + host + ":" + port + "/websocket";
+        MessageSizeLimiter limiter = ctx.pipeline().get(MessageSizeLimiter.class);
+        int maxFramePayloadLength = limiter == null ? DEFAULT_MAX_FRAME_PAYLOAD : limiter.getMaxMessageSize();
         this.handshaker = WebSocketClientHandshakerFactory.newHandshaker(
-                new URI(uri), WebSocketVersion.V13, null, false, new DefaultHttpHeaders());
+                new URI(uri), WebSocketVersion.V13, null, true, new DefaultHttpHeaders(), maxFramePayloadLength);
         this.handshaker.handshake(ctx.channel());
     }
 
@@ -90,18 +131,81 @@ class SimpleWebSocketClientHandler extends AbstractClientMessageHandler<Object>
             LOGGER.log(System.Logger.Level.DEBUG,"Handshake received: {}", handshake);
             handshaker.finishHandshake(ch, handshake);
             LOGGER.log(System.Logger.Level.DEBUG,"Handshake complete.");
-            handshakeFuture.setSuccess();
+            handshakeFuture.trySuccess();
+            // From the head, so the heartbeat handler can start.
+            ch.pipeline().fireUserEventTriggered(WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_COMPLETE);
             this.callBack.handShakeComplete();
             return;
         }
 
         if (received instanceof TextWebSocketFrame) {
-            String message = TextWebSocketFrame.class.cast(received).text();
+            TextWebSocketFrame frame = TextWebSocketFrame.class.cast(received);
+            int bytes = frame.content().readableBytes();
+            String message = frame.text();
             LOGGER.log(System.Logger.Level.DEBUG,"Textframe received: {}", message);
-            this.handleMessage(message);
+            this.handleMessage(message, bytes);
+        } else if (received instanceof BinaryWebSocketFrame) {
+            BinaryWebSocketFrame frame = BinaryWebSocketFrame.class.cast(received);
+            if (frame.isFinalFragment()) {
+                this.binaryReceived(frame.content());
+            } else {
+                this.fragmentReceived(ctx, frame.content(), false);
+            }
+        } else if (received instanceof ContinuationWebSocketFrame && this.fragments != null) {
+            ContinuationWebSocketFrame frame = ContinuationWebSocketFrame.class.cast(received);
+            this.fragmentReceived(ctx, frame.content(), frame.isFinalFragment());
+        } else if (received instanceof PingWebSocketFrame) {
+            // Released by this handler once this method returns.
+            ch.writeAndFlush(new PongWebSocketFrame(PingWebSocketFrame.class.cast(received).content().retain()));
         } else if (received instanceof CloseWebSocketFrame) {
             ch.close();
         }
     }
 
+    /**
+     * Add a binary message fragment to the message being assembled, the binary fragments are not aggregated by the
+     * pipeline.
+     *
+     * @param ctx Channel context.
+     * @param fragment Fragment payload, released by the caller.
+     * @param last True if this fragment is the last one of the message.
+     */
+    private void fragmentReceived(ChannelHandlerContext ctx, ByteBuf fragment, boolean last) {
+        if (this.fragments == null) {
+            this.fragments = ctx.alloc().compositeBuffer();
+        }
+        this.fragments.addComponent(true, fragment.retain());
+        MessageSizeLimiter limiter = ctx.pipeline().get(MessageSizeLimiter.class);
+        if (limiter != null && this.fragments.readableBytes() > limiter.getMaxMessageSize()) {
+            int length = this.fragments.readableBytes();
+            this.releaseFragments();
+            limiter.rejected();
+            throw new TooLongFrameException("Message length exceeds " + limiter.getMaxMessageSize() + ": " + length);
+        }
+        if (last) {
+            CompositeByteBuf message = this.fragments;
+            this.fragments = null;
+            try {
+                this.binaryReceived(message);
+            } finally {
+                message.release();
+            }
+        }
+    }
+
+    private void binaryReceived(ByteBuf content) {
+        ClientBinaryListener listener = this.binaryClient == null ? null : this.binaryClient.getBinaryListener();
+        if (listener == null) {
+            this.handleMessage(content.toString(CharsetUtil.UTF_8), content.readableBytes());
+        } else {
+            listener.messageReceived(content);
+        }
+    }
+
+    private void releaseFragments() {
+        if (this.fragments != null) {
+            this.fragments.release();
+            this.fragments = null;
+        }
+    }
 }
@@ -25,7 +25,12 @@
 package be.yildizgames.module.network.netty.client;
 
 import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.netty.SharedEventLoopGroup;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 
 /**
@@ -44,16 +49,39 @@ public class WebSocketClientNetty extends ClientNetty<TextWebSocketFrame> {
         super(clientBootstrap);
     }
 
+    /**
+     * Create a new instance of a client running on a shared event loop group.
+     *
+     * @param clientBootstrap Netty bootstrap object, its group must have been acquired from the shared group.
+     * @param sharedGroup Shared group to release when the client is closed.
+     */
+    public WebSocketClientNetty(Bootstrap clientBootstrap, SharedEventLoopGroup sharedGroup) {
+        super(clientBootstrap, sharedGroup);
+    }
+
     @Override
     protected void connectionComplete() {
         // For a web socket, an addition step is necessary, handshake.
     }
 
+    /**
+     * The websocket is ready once the handshake is complete.
+     */
+    @Override
+    protected ChannelFuture readyFuture(Channel connected) {
+        return connected.pipeline().get(SimpleWebSocketClientHandler.class).handshakeFuture();
+    }
+
     @Override
     protected TextWebSocketFrame buildMessage(String message) {
         return new TextWebSocketFrame(message);
     }
 
+    @Override
+    protected BinaryWebSocketFrame buildBinaryMessage(ByteBuf message) {
+        return new BinaryWebSocketFrame(message);
+    }
+
     @Override
     public DecoderEncoder getCodec() {
         return DecoderEncoder.WEBSOCKET;
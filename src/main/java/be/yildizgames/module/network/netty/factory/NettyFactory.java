@@ -27,16 +27,18 @@ package be.yildizgames.module.network.netty.factory;
 import be.yildizgames.module.network.DecoderEncoder;
 import be.yildizgames.module.network.client.Client;
 import be.yildizgames.module.network.netty.NettyChannelInitializer;
+import be.yildizgames.module.network.netty.NettyTransport;
+import be.yildizgames.module.network.netty.PipelineConfiguration;
+import be.yildizgames.module.network.netty.SharedEventLoopGroup;
 import be.yildizgames.module.network.netty.client.ClientNetty;
 import be.yildizgames.module.network.netty.client.SimpleClientHandlerFactory;
 import be.yildizgames.module.network.netty.client.SimpleClientNetty;
 import be.yildizgames.module.network.netty.client.WebSocketClientNetty;
 import be.yildizgames.module.network.netty.server.ServerNetty;
+import be.yildizgames.module.network.netty.server.ServerNettyConfiguration;
 import be.yildizgames.module.network.server.Server;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 
 /**
  * Create server or client Netty implementations.
@@ -46,28 +48,94 @@ import io.netty.channel.socket.nio.NioSocketChannel;
 public interface NettyFactory {
 
     /**
-     * Create a new client for Netty.
+     * Create a new client for Netty, running on the default shared client event loop group.
      *
      * @return A client implementation.
      */
     static Client createClientNetty() {
-        EventLoopGroup group = new NioEventLoopGroup();
-        Bootstrap bootstrap = new Bootstrap().group(group).channel(NioSocketChannel.class);
-        ClientNetty client = new WebSocketClientNetty(bootstrap);
-        bootstrap.handler(new NettyChannelInitializer(new SimpleClientHandlerFactory(client, DecoderEncoder.WEBSOCKET)));
+        return createClientNetty(SharedEventLoopGroup.client());
+    }
+
+    /**
+     * Create a new client for Netty, running on its own event loop group.
+     *
+     * @param transport Requested I/O transport, NIO is used if it is not available.
+     * @return A client implementation.
+     */
+    static Client createClientNetty(NettyTransport transport) {
+        return createClientNetty(new SharedEventLoopGroup(NettyTransport.select(transport), 0));
+    }
+
+    /**
+     * Create a new client for Netty, running on a shared event loop group, released when the client is closed.
+     *
+     * @param sharedGroup Event loop group to share.
+     * @return A client implementation.
+     */
+    static Client createClientNetty(SharedEventLoopGroup sharedGroup) {
+        return createClientNetty(sharedGroup, PipelineConfiguration.defaultConfiguration());
+    }
+
+    /**
+     * Create a new client for Netty, running on a shared event loop group, released when the client is closed.
+     *
+     * @param sharedGroup Event loop group to share.
+     * @param pipeline Options for the client channel pipeline.
+     * @return A client implementation.
+     */
+    static Client createClientNetty(SharedEventLoopGroup sharedGroup, PipelineConfiguration pipeline) {
+        EventLoopGroup group = sharedGroup.acquire();
+        Bootstrap bootstrap = new Bootstrap().group(group).channel(sharedGroup.getTransport().getChannelClass());
+        ClientNetty client = new WebSocketClientNetty(bootstrap, sharedGroup);
+        bootstrap.handler(new NettyChannelInitializer(
+                new SimpleClientHandlerFactory(client, DecoderEncoder.WEBSOCKET, pipeline.isBinary()), pipeline));
         return client;
     }
 
     /**
-     * Create a new client for Netty.
+     * Create a new client for Netty, running on the default shared client event loop group.
      *
      * @return A client implementation.
      */
     static Client createSimpleClientNetty() {
-        EventLoopGroup group = new NioEventLoopGroup();
-        Bootstrap bootstrap = new Bootstrap().group(group).channel(NioSocketChannel.class);
-        ClientNetty client = new SimpleClientNetty(bootstrap);
-        bootstrap.handler(new NettyChannelInitializer(new SimpleClientHandlerFactory(client, DecoderEncoder.STRING)));
+        return createSimpleClientNetty(SharedEventLoopGroup.client());
+    }
+
+    /**
+     * Create a new client for Netty, running on its own event loop group.
+     *
+     * @param transport Requested I/O transport, NIO is used if it is not available.
+     * @return A client implementation.
+     */
+    static Client createSimpleClientNetty(NettyTransport transport) {
+        return createSimpleClientNetty(new SharedEventLoopGroup(NettyTransport.select(transport), 0));
+    }
+
+    /**
+     * Create a new client for Netty, running on a shared event loop group, released when the client is closed.
+     *
+     * @param sharedGroup Event loop group to share.
+     * @return A client implementation.
+     */
+    static Client createSimpleClientNetty(SharedEventLoopGroup sharedGroup) {
+        return createSimpleClientNetty(sharedGroup, PipelineConfiguration.defaultConfiguration());
+    }
+
+    /**
+     * Create a new client for Netty, running on a shared event loop group, released when the client is closed.
+     *
+     * @param sharedGroup Event loop group to share.
+     * @param pipeline Options for the client channel pipeline.
+     * @return A client implementation.
+     */
+    static Client createSimpleClientNetty(SharedEventLoopGroup sharedGroup, PipelineConfiguration pipeline) {
+        EventLoopGroup group = sharedGroup.acquire();
+        Bootstrap bootstrap = new Bootstrap().group(group).channel(sharedGroup.getTransport().getChannelClass());
+        ClientNetty client = new SimpleClientNetty(bootstrap, sharedGroup);
+        SimpleClientHandlerFactory handlerFactory = pipeline.isBinary()
+                ? new SimpleClientHandlerFactory(client)
+                : new SimpleClientHandlerFactory(client, DecoderEncoder.STRING);
+        bootstrap.handler(new NettyChannelInitializer(handlerFactory, pipeline));
         return client;
     }
 
@@ -79,4 +147,24 @@ public interface NettyFactory {
     static Server createServerNetty() {
         return ServerNetty.create();
     }
+
+    /**
+     * Create a new server for Netty.
+     *
+     * @param transport Requested I/O transport, NIO is used if it is not available.
+     * @return A server implementation.
+     */
+    static Server createServerNetty(NettyTransport transport) {
+        return ServerNetty.create(transport);
+    }
+
+    /**
+     * Create a new server for Netty.
+     *
+     * @param configuration Threading model and socket options.
+     * @return A server implementation.
+     */
+    static Server createServerNetty(ServerNettyConfiguration configuration) {
+        return ServerNetty.create(configuration);
+    }
 }
@@ -0,0 +1,302 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.load;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.netty.NettyTransport;
+import be.yildizgames.module.network.netty.PipelineConfiguration;
+import be.yildizgames.module.network.netty.SharedEventLoopGroup;
+import be.yildizgames.module.network.netty.client.ClientNetty;
+import be.yildizgames.module.network.netty.factory.NettyFactory;
+import be.yildizgames.module.network.netty.server.AcceptorMetrics;
+import be.yildizgames.module.network.netty.server.NettySession;
+import be.yildizgames.module.network.netty.server.ServerNetty;
+import be.yildizgames.module.network.netty.server.ServerNettyConfiguration;
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import be.yildizgames.module.network.server.Session;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.EventLoopGroup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test connecting thousands of clients to a server, then sending messages at a fixed rate from each of them.
+ * The messages are sent back by the server, so the round trip is measured by the clients. Binary messages carry their
+ * sending time, text messages are delimited strings matched with their echo in sending order. By default an embedded
+ * server is started on loopback.
+ * <p>
+ * From the command line, options are given as name=value: clients, codec (STRING or WEBSOCKET), transport, rate
+ * (messages per second per client), size (bytes), messages (binary or text), duration (seconds), pending (connections
+ * in progress), threads (client threads), acceptors (embedded server listeners), target (host:port of a running
+ * server).
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ConnectionStorm {
+
+    private static final System.Logger LOGGER = System.getLogger(ConnectionStorm.class.getName());
+
+    private static final String LOOPBACK = "127.0.0.1";
+
+    /**
+     * Time left to the last messages to come back once the clients stop sending.
+     */
+    private static final Duration DRAIN = Duration.ofSeconds(1);
+
+    private ConnectionStorm() {
+        super();
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        LoadTestConfiguration.Builder builder = LoadTestConfiguration.builder();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Options must be given as name=value: " + arg);
+            }
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(0, separator)) {
+                case "clients":
+                    builder.clients(Integer.parseInt(value));
+                    break;
+                case "codec":
+                    builder.codec(DecoderEncoder.valueOf(value.toUpperCase()));
+                    break;
+                case "transport":
+                    builder.transport(NettyTransport.valueOf(value.toUpperCase()));
+                    break;
+                case "rate":
+                    builder.messagesPerSecond(Double.parseDouble(value));
+                    break;
+                case "size":
+                    builder.messageSize(Integer.parseInt(value));
+                    break;
+                case "messages":
+                    if ("text".equalsIgnoreCase(value)) {
+                        builder.text();
+                    } else if (!"binary".equalsIgnoreCase(value)) {
+                        throw new IllegalArgumentException("Messages must be binary or text: " + value);
+                    }
+                    break;
+                case "duration":
+                    builder.duration(Duration.ofSeconds(Long.parseLong(value)));
+                    break;
+                case "pending":
+                    builder.maxPendingConnections(Integer.parseInt(value));
+                    break;
+                case "threads":
+                    builder.clientThreads(Integer.parseInt(value));
+                    break;
+                case "acceptors":
+                    builder.acceptors(Integer.parseInt(value));
+                    break;
+                case "target":
+                    int port = value.lastIndexOf(':');
+                    builder.target(value.substring(0, port), Integer.parseInt(value.substring(port + 1)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        System.out.println(run(builder.build()));
+    }
+
+    /**
+     * Run a load test, and wait for its completion.
+     *
+     * @param configuration Load test parameters.
+     * @return The load test results.
+     * @throws InterruptedException If the calling thread is interrupted.
+     */
+    public static LoadTestReport run(final LoadTestConfiguration configuration) throws InterruptedException {
+        NettyTransport transport = configuration.getTransport()
+                .map(NettyTransport::select)
+                .orElseGet(NettyTransport::fromConfiguration);
+        LoadTestReport report = new LoadTestReport(configuration, transport);
+        PipelineConfiguration pipeline = configuration.isText()
+                ? PipelineConfiguration.defaultConfiguration()
+                : PipelineConfiguration.builder().binary().build();
+        ServerNetty server = null;
+        TextEchoServer textServer = null;
+        String host = configuration.getHost().orElse(LOOPBACK);
+        int port = configuration.getPort();
+        if (configuration.getHost().isEmpty() && configuration.isText()) {
+            port = freePort();
+            textServer = new TextEchoServer(transport, configuration.getCodec(), pipeline,
+                    new InetSocketAddress(LOOPBACK, port));
+        } else if (configuration.getHost().isEmpty()) {
+            port = freePort();
+            server = ServerNetty.create(ServerNettyConfiguration.builder()
+                    .transport(transport)
+                    .acceptors(configuration.getAcceptors())
+                    .pipeline(pipeline)
+                    .build());
+            server.setBinaryListener(ConnectionStorm::echo);
+            // Every message is binary, the session manager is never used.
+            server.startServer(LOOPBACK, port, null, configuration.getCodec());
+        }
+        SharedEventLoopGroup group = new SharedEventLoopGroup(transport, configuration.getClientThreads());
+        // Kept until the end of the test, to schedule the messages.
+        EventLoopGroup scheduler = group.acquire();
+        List<ClientNetty<?>> clients = new ArrayList<>(configuration.getClients());
+        // Message sending of every connected client.
+        Queue<Runnable> connected = new ConcurrentLinkedQueue<>();
+        String text = MessageSeparation.MESSAGE_BEGIN + "a".repeat(configuration.getMessageSize())
+                + MessageSeparation.MESSAGE_END;
+        try {
+            LOGGER.log(System.Logger.Level.INFO, "Connecting {0} clients to {1}:{2}", configuration.getClients(),
+                    host, String.valueOf(port));
+            Semaphore pending = new Semaphore(configuration.getMaxPendingConnections());
+            CountDownLatch completed = new CountDownLatch(configuration.getClients());
+            long stormStart = System.nanoTime();
+            for (int i = 0; i < configuration.getClients(); i++) {
+                pending.acquire();
+                ClientNetty<?> client = (ClientNetty<?>) (configuration.getCodec() == DecoderEncoder.WEBSOCKET
+                        ? NettyFactory.createClientNetty(group, pipeline)
+                        : NettyFactory.createSimpleClientNetty(group, pipeline));
+                Runnable sender;
+                if (configuration.isText()) {
+                    sender = textSender(client, text, report);
+                } else {
+                    client.setBinaryListener(m -> report.received(System.nanoTime() - m.getLong(m.readerIndex())));
+                    sender = () -> send(client, configuration.getMessageSize(), report);
+                }
+                clients.add(client);
+                long start = System.nanoTime();
+                try {
+                    client.connectAsync(host, port).whenComplete((v, e) -> {
+                        if (e == null) {
+                            report.connected(System.nanoTime() - start);
+                            connected.add(sender);
+                        } else {
+                            report.connectionFailed();
+                        }
+                        pending.release();
+                        completed.countDown();
+                    });
+                } catch (RuntimeException e) {
+                    // Failed before the connection attempt, the completion is never called.
+                    LOGGER.log(System.Logger.Level.WARNING, "Connection failed.", e);
+                    report.connectionFailed();
+                    pending.release();
+                    completed.countDown();
+                }
+            }
+            completed.await();
+            report.setStormNanos(System.nanoTime() - stormStart);
+            LOGGER.log(System.Logger.Level.INFO, "{0} clients connected, sending messages.", connected.size());
+            List<Future<?>> senders = new ArrayList<>(connected.size());
+            if (configuration.getMessagesPerSecond() > 0) {
+                long period = (long) (TimeUnit.SECONDS.toNanos(1) / configuration.getMessagesPerSecond());
+                for (Runnable sender : connected) {
+                    // Spread the clients over the period, so they do not send at the same time.
+                    senders.add(scheduler.next().scheduleAtFixedRate(sender,
+                            ThreadLocalRandom.current().nextLong(period), period, TimeUnit.NANOSECONDS));
+                }
+            }
+            long sendingStart = System.nanoTime();
+            Thread.sleep(configuration.getDuration().toMillis());
+            senders.forEach(f -> f.cancel(false));
+            report.setSendingNanos(System.nanoTime() - sendingStart);
+            Thread.sleep(DRAIN.toMillis());
+        } finally {
+            clients.forEach(ClientNetty::close);
+            group.release();
+            if (server != null) {
+                server.getAcceptorMetrics().stream()
+                        .mapToLong(AcceptorMetrics::getAcceptedConnections)
+                        .forEach(report::addAcceptedConnections);
+                server.stop();
+            }
+            if (textServer != null) {
+                textServer.stop();
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Send back a message received by the embedded server.
+     */
+    private static void echo(final Session session, final ByteBuf message) {
+        // Released by the caller once this method returns, and by the session once written.
+        ((NettySession) session).sendMessage(message.retain());
+    }
+
+    /**
+     * Prepare a client to send text messages.
+     * A connection sends back the messages in their sending order, so an echo is matched with the oldest sending time
+     * and the message content is not parsed.
+     *
+     * @return The sending of a message.
+     */
+    private static Runnable textSender(final ClientNetty<?> client, final String message, final LoadTestReport report) {
+        Queue<Long> sendingTimes = new ConcurrentLinkedQueue<>();
+        client.addNetworkListener(m -> {
+            Long sent = sendingTimes.poll();
+            if (sent != null) {
+                report.received(System.nanoTime() - sent);
+            }
+        });
+        return () -> {
+            sendingTimes.add(System.nanoTime());
+            client.sendMessage(message);
+            report.sent();
+        };
+    }
+
+    private static void send(final ClientNetty<?> client, final int size, final LoadTestReport report) {
+        ByteBuf message = ByteBufAllocator.DEFAULT.buffer(size);
+        message.writeLong(System.nanoTime());
+        message.writeZero(size - Long.BYTES);
+        client.sendMessage(message);
+        report.sent();
+    }
+
+    /**
+     * Find a free port, every listener of the embedded server must bind the same one.
+     */
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.load;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.netty.NettyTransport;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Parameters of a connection storm load test.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class LoadTestConfiguration {
+
+    /**
+     * Number of simulated clients.
+     */
+    private final int clients;
+
+    /**
+     * Codec used by the clients and the embedded server, STRING or WEBSOCKET.
+     */
+    private final DecoderEncoder codec;
+
+    /**
+     * Transport used by the clients and the embedded server, null to select it from the system property.
+     */
+    private final NettyTransport transport;
+
+    /**
+     * Messages sent by each client every second.
+     */
+    private final double messagesPerSecond;
+
+    /**
+     * Size of a message payload, in bytes.
+     */
+    private final int messageSize;
+
+    /**
+     * True to send delimited text messages, false to send binary messages.
+     */
+    private final boolean text;
+
+    /**
+     * Time the clients send messages, once all connected.
+     */
+    private final Duration duration;
+
+    /**
+     * Maximum number of connections in progress at the same time.
+     */
+    private final int maxPendingConnections;
+
+    /**
+     * Number of client I/O threads, 0 for the netty default.
+     */
+    private final int clientThreads;
+
+    /**
+     * Number of listening channels of the embedded server.
+     */
+    private final int acceptors;
+
+    /**
+     * Host of the server to test, null to start an embedded server.
+     */
+    private final String host;
+
+    /**
+     * Port of the server to test.
+     */
+    private final int port;
+
+    private LoadTestConfiguration(final Builder builder) {
+        super();
+        this.clients = builder.clients;
+        this.codec = builder.codec;
+        this.transport = builder.transport;
+        this.messagesPerSecond = builder.messagesPerSecond;
+        this.messageSize = builder.messageSize;
+        this.text = builder.text;
+        this.duration = builder.duration;
+        this.maxPendingConnections = builder.maxPendingConnections;
+        this.clientThreads = builder.clientThreads;
+        this.acceptors = builder.acceptors;
+        this.host = builder.host;
+        this.port = builder.port;
+    }
+
+    /**
+     * @return A new builder, initialized with the default values.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getClients() {
+        return this.clients;
+    }
+
+    public DecoderEncoder getCodec() {
+        return this.codec;
+    }
+
+    public Optional<NettyTransport> getTransport() {
+        return Optional.ofNullable(this.transport);
+    }
+
+    public double getMessagesPerSecond() {
+        return this.messagesPerSecond;
+    }
+
+    public int getMessageSize() {
+        return this.messageSize;
+    }
+
+    /**
+     * @return true if the clients send delimited text messages, false if they send binary messages.
+     */
+    public boolean isText() {
+        return this.text;
+    }
+
+    public Duration getDuration() {
+        return this.duration;
+    }
+
+    public int getMaxPendingConnections() {
+        return this.maxPendingConnections;
+    }
+
+    public int getClientThreads() {
+        return this.clientThreads;
+    }
+
+    public int getAcceptors() {
+        return this.acceptors;
+    }
+
+    /**
+     * @return The host of the server to test, empty to start an embedded server.
+     */
+    public Optional<String> getHost() {
+        return Optional.ofNullable(this.host);
+    }
+
+    public int getPort() {
+        return this.port;
+    }
+
+    @Override
+    public String toString() {
+        return this.clients + " clients, " + this.codec + ", " + this.messagesPerSecond + " msg/s per client, "
+                + this.messageSize + (this.text ? " bytes text, " : " bytes, ") + this.duration.toSeconds() + "s"
+                + this.getTransport().map(t -> ", " + t).orElse("")
+                + this.getHost().map(h -> ", target " + h + ":" + this.port).orElse(", " + this.acceptors + " acceptor(s)");
+    }
+
+    /**
+     * Build a load test configuration.
+     */
+    public static final class Builder {
+
+        private int clients = 1000;
+
+        private DecoderEncoder codec = DecoderEncoder.STRING;
+
+        private NettyTransport transport;
+
+        private double messagesPerSecond = 10;
+
+        private int messageSize = 64;
+
+        private boolean text;
+
+        private Duration duration = Duration.ofSeconds(30);
+
+        private int maxPendingConnections = 256;
+
+        private int clientThreads;
+
+        private int acceptors = 1;
+
+        private String host;
+
+        private int port;
+
+        private Builder() {
+            super();
+        }
+
+        /**
+         * @param clients Number of simulated clients, default is 1000.
+         * @return This builder.
+         */
+        public Builder clients(final int clients) {
+            this.clients = requireStrictlyPositive(clients, "Clients");
+            return this;
+        }
+
+        /**
+         * @param codec Codec used by the clients, STRING or WEBSOCKET, default is STRING.
+         * @return This builder.
+         */
+        public Builder codec(final DecoderEncoder codec) {
+            if (codec == DecoderEncoder.HTTP) {
+                throw new IllegalArgumentException("HTTP codec not supported by the load test.");
+            }
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * @param transport Transport used by the clients and the embedded server.
+         * @return This builder.
+         */
+        public Builder transport(final NettyTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * @param messagesPerSecond Messages sent by each client every second, default is 10, 0 to only connect.
+         * @return This builder.
+         */
+        public Builder messagesPerSecond(final double messagesPerSecond) {
+            if (messagesPerSecond < 0) {
+                throw new IllegalArgumentException("Message rate must be positive: " + messagesPerSecond);
+            }
+            this.messagesPerSecond = messagesPerSecond;
+            return this;
+        }
+
+        /**
+         * @param messageSize Size of a message payload, in bytes, at least 8, default is 64.
+         * @return This builder.
+         */
+        public Builder messageSize(final int messageSize) {
+            if (messageSize < Long.BYTES) {
+                throw new IllegalArgumentException("Message size must be at least " + Long.BYTES + ": " + messageSize);
+            }
+            this.messageSize = messageSize;
+            return this;
+        }
+
+        /**
+         * Send delimited text messages with ClientNetty.sendMessage(String), through the text framing and the text
+         * callbacks of the clients, instead of binary messages.
+         * The echoes of a client come back in their sending order, the round trip is measured from the sending time
+         * of the oldest message waiting for its echo.
+         * The embedded server sends back the text messages from the end of the server pipeline, without session
+         * manager, it has a single listener.
+         *
+         * @return This builder.
+         */
+        public Builder text() {
+            this.text = true;
+            return this;
+        }
+
+        /**
+         * @param duration Time the clients send messages, once all connected, default is 30 seconds.
+         * @return This builder.
+         */
+        public Builder duration(final Duration duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        /**
+         * @param maxPendingConnections Maximum number of connections in progress at the same time, default is 256.
+         * @return This builder.
+         */
+        public Builder maxPendingConnections(final int maxPendingConnections) {
+            this.maxPendingConnections = requireStrictlyPositive(maxPendingConnections, "Max pending connections");
+            return this;
+        }
+
+        /**
+         * @param clientThreads Number of client I/O threads, default is 0 for the netty default.
+         * @return This builder.
+         */
+        public Builder clientThreads(final int clientThreads) {
+            if (clientThreads < 0) {
+                throw new IllegalArgumentException("Client threads must be positive: " + clientThreads);
+            }
+            this.clientThreads = clientThreads;
+            return this;
+        }
+
+        /**
+         * @param acceptors Number of SO_REUSEPORT listening channels of the embedded server, default is 1.
+         * @return This builder.
+         */
+        public Builder acceptors(final int acceptors) {
+            this.acceptors = requireStrictlyPositive(acceptors, "Acceptors");
+            return this;
+        }
+
+        /**
+         * Test a running server instead of an embedded one, it must send back every message it receives.
+         *
+         * @param host Server host.
+         * @param port Server port.
+         * @return This builder.
+         */
+        public Builder target(final String host, final int port) {
+            this.host = host;
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @return The built configuration.
+         */
+        public LoadTestConfiguration build() {
+            return new LoadTestConfiguration(this);
+        }
+
+        private static int requireStrictlyPositive(final int value, final String name) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(name + " must be greater than 0: " + value);
+            }
+            return value;
+        }
+    }
+}
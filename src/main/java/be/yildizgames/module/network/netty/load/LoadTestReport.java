@@ -0,0 +1,182 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.load;
+
+import be.yildizgames.module.network.netty.LatencyHistogram;
+import be.yildizgames.module.network.netty.NettyTransport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of a connection storm load test, durations are in nanoseconds.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class LoadTestReport {
+
+    private final LoadTestConfiguration configuration;
+
+    private final NettyTransport transport;
+
+    /**
+     * Time from the connection request until the client is ready, handshake included.
+     */
+    private final LatencyHistogram connectTime = new LatencyHistogram();
+
+    private final LongAdder failedConnections = new LongAdder();
+
+    private final LatencyHistogram roundTrip = new LatencyHistogram();
+
+    private final LongAdder sentMessages = new LongAdder();
+
+    /**
+     * Connections accepted by every listener of the embedded server.
+     */
+    private final List<Long> acceptedConnections = new ArrayList<>();
+
+    /**
+     * Time to connect every client.
+     */
+    private long stormNanos;
+
+    /**
+     * Time the clients were sending messages.
+     */
+    private long sendingNanos;
+
+    LoadTestReport(final LoadTestConfiguration configuration, final NettyTransport transport) {
+        super();
+        this.configuration = configuration;
+        this.transport = transport;
+    }
+
+    void connected(final long nanos) {
+        this.connectTime.record(nanos);
+    }
+
+    void connectionFailed() {
+        this.failedConnections.increment();
+    }
+
+    void sent() {
+        this.sentMessages.increment();
+    }
+
+    void received(final long roundTripNanos) {
+        this.roundTrip.record(roundTripNanos);
+    }
+
+    void setStormNanos(final long nanos) {
+        this.stormNanos = nanos;
+    }
+
+    void setSendingNanos(final long nanos) {
+        this.sendingNanos = nanos;
+    }
+
+    void addAcceptedConnections(final long accepted) {
+        this.acceptedConnections.add(accepted);
+    }
+
+    public LoadTestConfiguration getConfiguration() {
+        return this.configuration;
+    }
+
+    public NettyTransport getTransport() {
+        return this.transport;
+    }
+
+    public LatencyHistogram getConnectTime() {
+        return this.connectTime;
+    }
+
+    public long getConnectedClients() {
+        return this.connectTime.getCount();
+    }
+
+    public long getFailedConnections() {
+        return this.failedConnections.sum();
+    }
+
+    /**
+     * @return The number of connections established per second during the storm.
+     */
+    public double getConnectionRate() {
+        return this.stormNanos == 0 ? 0 : this.getConnectedClients() * 1e9 / this.stormNanos;
+    }
+
+    public LatencyHistogram getRoundTrip() {
+        return this.roundTrip;
+    }
+
+    public long getSentMessages() {
+        return this.sentMessages.sum();
+    }
+
+    public long getReceivedMessages() {
+        return this.roundTrip.getCount();
+    }
+
+    /**
+     * @return The number of messages echoed per second while the clients were sending.
+     */
+    public double getThroughput() {
+        return this.sendingNanos == 0 ? 0 : this.getReceivedMessages() * 1e9 / this.sendingNanos;
+    }
+
+    /**
+     * @return The connections accepted by every listener of the embedded server, empty for a remote server.
+     */
+    public List<Long> getAcceptedConnections() {
+        return Collections.unmodifiableList(this.acceptedConnections);
+    }
+
+    @Override
+    public String toString() {
+        return "Load test: " + this.configuration + ", " + this.transport + System.lineSeparator()
+                + String.format("Connections: %d connected, %d failed, %.0f/s, accepted per listener %s%n",
+                this.getConnectedClients(), this.getFailedConnections(), this.getConnectionRate(),
+                this.acceptedConnections)
+                + "Connect time (us): " + format(this.connectTime) + System.lineSeparator()
+                + String.format("Messages: %d sent, %d received, %.0f/s%n",
+                this.getSentMessages(), this.getReceivedMessages(), this.getThroughput())
+                + "Round trip (us): " + format(this.roundTrip);
+    }
+
+    private static String format(final LatencyHistogram histogram) {
+        return "p50=" + micros(histogram.getPercentile(50))
+                + " p99=" + micros(histogram.getPercentile(99))
+                + " p99.9=" + micros(histogram.getPercentile(99.9))
+                + " max=" + micros(histogram.getMax());
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
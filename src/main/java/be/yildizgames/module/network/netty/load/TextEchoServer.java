@@ -0,0 +1,128 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.load;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.netty.HandlerFactory;
+import be.yildizgames.module.network.netty.NettyChannelInitializer;
+import be.yildizgames.module.network.netty.NettyTransport;
+import be.yildizgames.module.network.netty.PipelineConfiguration;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Embedded server sending back every text message, for the text mode of the load test.
+ * The text messages of a ServerNetty go to the session manager of the game, so this server builds the same pipeline
+ * with the NettyChannelInitializer, framing and codecs included, and only replaces the session handler with an echo.
+ *
+ * @author Grégory Van den Borre
+ */
+final class TextEchoServer {
+
+    private final EventLoopGroup group;
+
+    private final Channel channel;
+
+    /**
+     * Start the server.
+     *
+     * @param transport Transport used by the server.
+     * @param codec Codec of the server, STRING or WEBSOCKET.
+     * @param pipeline Options for the accepted channels pipeline.
+     * @param address Address to listen to.
+     * @throws InterruptedException If the calling thread is interrupted while binding.
+     */
+    TextEchoServer(final NettyTransport transport, final DecoderEncoder codec, final PipelineConfiguration pipeline,
+                   final InetSocketAddress address) throws InterruptedException {
+        super();
+        this.group = transport.newEventLoopGroup(0);
+        this.channel = new ServerBootstrap()
+                .group(this.group)
+                .channel(transport.getServerChannelClass())
+                .childHandler(new NettyChannelInitializer(new EchoFactory(codec), pipeline))
+                .bind(address)
+                .sync()
+                .channel();
+    }
+
+    /**
+     * Stop listening, close the connections, and release the server threads.
+     */
+    void stop() {
+        this.channel.close().syncUninterruptibly();
+        this.group.shutdownGracefully();
+    }
+
+    /**
+     * Create the echo handler of every accepted channel.
+     */
+    private static final class EchoFactory implements HandlerFactory {
+
+        private final DecoderEncoder codec;
+
+        private EchoFactory(final DecoderEncoder codec) {
+            super();
+            this.codec = codec;
+        }
+
+        @Override
+        public ChannelHandler create() {
+            return new EchoHandler();
+        }
+
+        @Override
+        public DecoderEncoder getCodec() {
+            return this.codec;
+        }
+
+        @Override
+        public boolean isServer() {
+            return true;
+        }
+    }
+
+    /**
+     * Send back every text message, the messages keep their delimiters and the frames are forwarded without copy.
+     */
+    private static final class EchoHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+            if (msg instanceof String || msg instanceof TextWebSocketFrame) {
+                ctx.writeAndFlush(msg);
+            } else {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+    }
+}
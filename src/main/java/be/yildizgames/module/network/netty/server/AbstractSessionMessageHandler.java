@@ -25,9 +25,12 @@
 package be.yildizgames.module.network.netty.server;
 
 import be.yildizgames.module.network.AbstractHandler;
+import be.yildizgames.module.network.netty.ResumeProtocol;
 import be.yildizgames.module.network.server.Session;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.CharsetUtil;
 
 import java.util.Optional;
 
@@ -40,6 +43,26 @@ public abstract class AbstractSessionMessageHandler<T> extends SimpleChannelInbo
 
     private Session session;
 
+    /**
+     * Listener notified when the session writability changes, null if none.
+     */
+    private SessionWritabilityListener writabilityListener;
+
+    /**
+     * Dispatcher running the messages out of the I/O thread, null to run them on the I/O thread.
+     */
+    private SessionDispatcher dispatcher;
+
+    /**
+     * Store keeping the resumable sessions, null if sessions are not resumable.
+     */
+    private SessionResumeStore resumeStore;
+
+    /**
+     * Registry indexing the connected sessions, null if none.
+     */
+    private SessionRegistry registry;
+
     private static final System.Logger LOGGER = System.getLogger(AbstractSessionMessageHandler.class.getName());
 
     protected AbstractSessionMessageHandler(final AbstractHandler handler) {
@@ -47,10 +70,43 @@ public abstract class AbstractSessionMessageHandler<T> extends SimpleChannelInbo
         this.handler = handler;
     }
 
+    @Override
+    public void handlerAdded(final ChannelHandlerContext ctx) throws Exception {
+        if (this.dispatcher != null) {
+            this.dispatcher.setChannel(ctx.channel());
+        }
+        super.handlerAdded(ctx);
+    }
+
     @Override
     public final void exceptionCaught(ChannelHandlerContext ctx, Throwable e) {
         LOGGER.log(System.Logger.Level.ERROR, e);
-        this.getSession().ifPresent(Session::disconnect);
+        if (this.resumeStore != null && this.session instanceof NettySession) {
+            // Only close the connection, the session is kept for the resume window.
+            ctx.close();
+        } else {
+            this.getSession().ifPresent(Session::disconnect);
+        }
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        if (this.registry != null && this.session instanceof NettySession) {
+            this.registry.unregister((NettySession) this.session, ctx.channel());
+        }
+        if (this.resumeStore != null && this.session instanceof NettySession) {
+            this.resumeStore.disconnected((NettySession) this.session, ctx.channel());
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(final ChannelHandlerContext ctx) throws Exception {
+        if (this.writabilityListener != null) {
+            boolean writable = ctx.channel().isWritable();
+            this.getSession().ifPresent(s -> this.writabilityListener.writabilityChanged(s, writable));
+        }
+        super.channelWritabilityChanged(ctx);
     }
 
     /**
@@ -63,4 +119,161 @@ public abstract class AbstractSessionMessageHandler<T> extends SimpleChannelInbo
     protected final void setSession(Session session) {
         this.session = session;
     }
+
+    final void setWritabilityListener(SessionWritabilityListener listener) {
+        this.writabilityListener = listener;
+    }
+
+    final void setDispatcher(SessionDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    final void setResumeStore(SessionResumeStore store) {
+        this.resumeStore = store;
+    }
+
+    final void setRegistry(SessionRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Called once the session can send messages, register it, make it resumable if enabled, and send its resume token.
+     */
+    protected final void sessionReady() {
+        if (this.registry != null && this.session instanceof NettySession) {
+            this.registry.register((NettySession) this.session);
+        }
+        if (this.resumeStore != null && this.session instanceof NettySession) {
+            NettySession nettySession = (NettySession) this.session;
+            String token = this.resumeStore.register(nettySession);
+            nettySession.getChannel().writeAndFlush(nettySession.buildMessage(ResumeProtocol.token(token)));
+        }
+    }
+
+    /**
+     * Handle a resume request on the I/O thread, the anonymous session of the new connection is replaced by the
+     * resumed one, and the messages missed by the client are sent.
+     *
+     * @param current Session of the new connection.
+     * @param content Resume control message content.
+     */
+    private void resume(final NettySession current, final String content) {
+        long received;
+        try {
+            received = ResumeProtocol.getReceivedMessages(content);
+        } catch (NumberFormatException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Invalid resume request: {0}", content);
+            return;
+        }
+        Optional<NettySession> resumed = this.resumeStore.resume(ResumeProtocol.getToken(content), received)
+                .filter(s -> s != current);
+        if (resumed.isPresent()) {
+            NettySession previous = resumed.get();
+            current.getChannel().writeAndFlush(current.buildMessage(ResumeProtocol.resumed(received)));
+            this.resumeStore.discard(current);
+            previous.resume(current.getChannel(), received);
+            this.session = previous;
+            if (this.registry != null) {
+                this.registry.register(previous);
+            }
+        } else {
+            current.getChannel().writeAndFlush(current.buildMessage(
+                    ResumeProtocol.rejected(current.getResumeToken().orElse(""))));
+        }
+    }
+
+    /**
+     * Process the received message, on the dispatch executor if any, or directly on the I/O thread.
+     *
+     * @param session Session receiving the message.
+     * @param message Received message.
+     */
+    protected final void processMessages(final Session session, final String message) {
+        if (this.resumeStore != null && session instanceof NettySession) {
+            String control = ResumeProtocol.controlContent(message);
+            if (control != null) {
+                if (ResumeProtocol.isResume(control)) {
+                    this.resume((NettySession) session, control);
+                }
+                return;
+            }
+        }
+        if (this.dispatcher == null) {
+            this.handler.processMessages(session, message);
+        } else {
+            this.dispatcher.dispatch(() -> this.handler.processMessages(session, message));
+        }
+    }
+
+    /**
+     * Forward a binary message to a listener, on the dispatch executor if any.
+     * Without listener, the message is decoded as text and processed like any other message.
+     *
+     * @param session Session receiving the message.
+     * @param message Message content, released by the caller once this method returns.
+     * @param listener Listener receiving the message, null to process it as text.
+     */
+    protected final void processBinaryMessage(final Session session, final ByteBuf message,
+                                              final SessionBinaryListener listener) {
+        if (listener == null) {
+            this.processMessages(session, message.toString(CharsetUtil.UTF_8));
+        } else if (this.isDispatched()) {
+            // Retained until processed.
+            ByteBuf retained = message.retain();
+            this.dispatch(() -> {
+                try {
+                    listener.messageReceived(session, retained);
+                } finally {
+                    retained.release();
+                }
+            });
+        } else {
+            listener.messageReceived(session, message);
+        }
+    }
+
+    /**
+     * Forward a fragment of a binary message to a stream listener, on the dispatch executor if any.
+     *
+     * @param session Session receiving the fragment.
+     * @param fragment Fragment payload, released by the caller once this method returns.
+     * @param last True if this fragment is the last one of the message.
+     * @param listener Listener receiving the fragment.
+     */
+    protected final void processFragment(final Session session, final ByteBuf fragment, final boolean last,
+                                         final SessionStreamListener listener) {
+        if (this.isDispatched()) {
+            // Retained until processed.
+            ByteBuf retained = fragment.retain();
+            this.dispatch(() -> {
+                try {
+                    listener.fragmentReceived(session, retained, last);
+                } finally {
+                    retained.release();
+                }
+            });
+        } else {
+            listener.fragmentReceived(session, fragment, last);
+        }
+    }
+
+    /**
+     * @return true if the messages are processed on the dispatch executor.
+     */
+    protected final boolean isDispatched() {
+        return this.dispatcher != null;
+    }
+
+    /**
+     * Run a task on the dispatch executor, after the previously received messages.
+     *
+     * @param task Task to run.
+     */
+    protected final void dispatch(final Runnable task) {
+        if (this.dispatcher == null) {
+            task.run();
+        } else {
+            this.dispatcher.dispatch(task);
+        }
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accept statistics for one listening channel of a server.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class AcceptorMetrics {
+
+    /**
+     * Index of the listener, when several are bound on the same port.
+     */
+    private final int index;
+
+    /**
+     * Number of connections accepted by this listener.
+     */
+    private final AtomicLong accepted = new AtomicLong();
+
+    /**
+     * Bound address, null until the listener is bound.
+     */
+    private volatile SocketAddress address;
+
+    AcceptorMetrics(final int index) {
+        super();
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * @return The number of connections accepted by this listener since it was bound.
+     */
+    public long getAcceptedConnections() {
+        return this.accepted.get();
+    }
+
+    /**
+     * @return The bound address, null if not yet bound.
+     */
+    public SocketAddress getAddress() {
+        return this.address;
+    }
+
+    /**
+     * @return A handler to add on the listening channel, counting the accepted channels.
+     */
+    ChannelInboundHandlerAdapter newHandler() {
+        return new ChannelInboundHandlerAdapter() {
+
+            @Override
+            public void channelActive(final ChannelHandlerContext ctx) {
+                address = ctx.channel().localAddress();
+                ctx.fireChannelActive();
+            }
+
+            @Override
+            public void channelRead(final ChannelHandlerContext ctx, final Object child) {
+                accepted.incrementAndGet();
+                ctx.fireChannelRead(child);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "Acceptor " + this.index + " " + this.address + ": " + this.getAcceptedConnections() + " accepted";
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the messages dispatched from the I/O threads to the dispatch executor, for all the sessions of a server.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class DispatchMetrics {
+
+    /**
+     * Number of messages waiting to be processed.
+     */
+    private final LongAdder queued = new LongAdder();
+
+    /**
+     * Number of messages processed.
+     */
+    private final LongAdder dispatched = new LongAdder();
+
+    /**
+     * Total time spent by the processed messages in the queue, in nanoseconds.
+     */
+    private final LongAdder totalLag = new LongAdder();
+
+    /**
+     * Highest time spent by a message in the queue, in nanoseconds.
+     */
+    private final AtomicLong maxLag = new AtomicLong();
+
+    /**
+     * Number of times the reads of a channel were paused because its queue was full.
+     */
+    private final LongAdder pausedReads = new LongAdder();
+
+    DispatchMetrics() {
+        super();
+    }
+
+    void messageQueued() {
+        this.queued.increment();
+    }
+
+    void messageDispatched(final long lagNanos) {
+        this.queued.decrement();
+        this.dispatched.increment();
+        this.totalLag.add(lagNanos);
+        this.maxLag.accumulateAndGet(lagNanos, Math::max);
+    }
+
+    void readPaused() {
+        this.pausedReads.increment();
+    }
+
+    /**
+     * @return The number of messages waiting to be processed, for all sessions.
+     */
+    public long getQueueDepth() {
+        return this.queued.sum();
+    }
+
+    /**
+     * @return The number of processed messages.
+     */
+    public long getDispatchedMessages() {
+        return this.dispatched.sum();
+    }
+
+    /**
+     * @return The average time between the reception of a message and the start of its processing, in nanoseconds.
+     */
+    public long getAverageLagNanos() {
+        long count = this.dispatched.sum();
+        return count == 0 ? 0 : this.totalLag.sum() / count;
+    }
+
+    /**
+     * @return The highest time between the reception of a message and the start of its processing, in nanoseconds.
+     */
+    public long getMaxLagNanos() {
+        return this.maxLag.get();
+    }
+
+    /**
+     * @return The number of times the reads of a channel were paused because its queue was full.
+     */
+    public long getPausedReads() {
+        return this.pausedReads.sum();
+    }
+
+    /**
+     * Reset the highest lag, to measure it on a new period.
+     */
+    public void resetMaxLag() {
+        this.maxLag.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "Dispatch: queued=" + this.getQueueDepth()
+                + " dispatched=" + this.getDispatchedMessages()
+                + " averageLag=" + this.getAverageLagNanos() + "ns"
+                + " maxLag=" + this.getMaxLagNanos() + "ns"
+                + " pausedReads=" + this.getPausedReads();
+    }
+}
@@ -25,20 +25,71 @@
 package be.yildizgames.module.network.netty.server;
 
 import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.netty.HeartbeatHandler;
+import be.yildizgames.module.network.netty.LowPriorityMessage;
+import be.yildizgames.module.network.netty.OutboundQueueHandler;
 import be.yildizgames.module.network.server.Session;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
 /**
- * Netty implementation for a session.
+ * Netty implementation for a session, the sessions received by the listeners of a netty server can be cast to this
+ * type to use the binary messages, priorities and outbound queue metrics.
  *
  * @author Grégory Van den Borre
  */
-abstract class NettySession extends Session {
+public abstract class NettySession extends Session {
+
+    /**
+     * Channel used for data transmission, replaced when the session is resumed on a new connection.
+     */
+    private volatile Channel channel;
+
+    /**
+     * Outbound queue of the channel, null if the pipeline does not use it, replaced with the channel.
+     */
+    private volatile OutboundQueueHandler outboundQueue;
+
+    /**
+     * Token to resume this session, null if the session is not resumable.
+     */
+    private volatile String resumeToken;
+
+    /**
+     * Journal of the sent messages, null if the session is not resumable.
+     */
+    private volatile ReplayJournal journal;
+
+    /**
+     * Store keeping this session while it can be resumed, null if the session is not resumable.
+     */
+    private SessionResumeStore resumeStore;
+
+    /**
+     * Discarding of this session after a disconnection, null if connected.
+     */
+    private ScheduledFuture<?> expiration;
+
+    /**
+     * Registry indexing this session, null if not registered.
+     */
+    private volatile SessionRegistry registry;
+
+    /**
+     * Player associated to this session in the registry, null if none.
+     */
+    private volatile PlayerId boundPlayer;
 
     /**
-     * Channel used for data transmission.
+     * Groups holding this session while it is resumable.
      */
-    private final Channel channel;
+    private final Set<SessionGroup> groups = ConcurrentHashMap.newKeySet();
 
     /**
      * Full constructor.
@@ -46,28 +97,200 @@ abstract class NettySession extends Session {
      * @param player  Id of the logged player.
      * @param channel Associated Netty channel.
      */
-    protected NettySession(final PlayerId player, final Channel channel) {
+    NettySession(final PlayerId player, final Channel channel) {
         super(player);
         this.channel = channel;
+        this.outboundQueue = channel.pipeline().get(OutboundQueueHandler.class);
     }
 
     @Override
     public  final void sendMessage(String message) {
-        this.write(this.channel, message);
+        this.send(message, this.buildMessage(message));
+    }
+
+    /**
+     * Send a message that can be dropped first if the client does not read fast enough.
+     * Without outbound queue in the pipeline, it is sent as a normal message.
+     *
+     * @param message Message to send.
+     */
+    public final void sendLowPriorityMessage(String message) {
+        if (this.outboundQueue == null) {
+            this.sendMessage(message);
+        } else {
+            this.send(message, new LowPriorityMessage(this.buildMessage(message)));
+        }
+    }
+
+    /**
+     * Send a binary message, the buffer is released once written.
+     *
+     * @param message Message to send.
+     */
+    public final void sendMessage(ByteBuf message) {
+        this.channel.writeAndFlush(this.buildBinaryMessage(message));
+    }
+
+    /**
+     * Journal the message if the session is resumable, and write it.
+     * Journaling and writing are done atomically, so a resume can not interleave replayed and new messages.
+     *
+     * @param message Message to journal.
+     * @param toWrite Object to write on the channel.
+     */
+    private void send(final String message, final Object toWrite) {
+        ReplayJournal currentJournal = this.journal;
+        if (currentJournal == null) {
+            this.channel.writeAndFlush(toWrite);
+        } else {
+            synchronized (currentJournal) {
+                currentJournal.append(message);
+                this.channel.writeAndFlush(toWrite);
+            }
+        }
     }
 
     /**
-     * Write directly on the socket.
-     * @param ch Channel to write on.
-     * @param message Message to write.
+     * Wrap a message in the object expected by the channel pipeline.
+     *
+     * @param message Message to wrap.
+     * @return The object to write on the channel.
+     */
+    protected abstract Object buildMessage(final String message);
+
+    /**
+     * Wrap a binary message in the object expected by the channel pipeline.
+     *
+     * @param message Binary message to wrap, released once written.
+     * @return The object to write on the channel.
      */
-    protected abstract void write(final Channel ch, final String message);
+    protected abstract Object buildBinaryMessage(final ByteBuf message);
+
+    /**
+     * @return true if the channel can accept writes without queuing them.
+     */
+    public final boolean isWritable() {
+        return this.channel.isWritable();
+    }
+
+    /**
+     * @return The number of messages waiting for the channel to be writable, 0 without outbound queue.
+     */
+    public final int getOutboundQueueDepth() {
+        OutboundQueueHandler queue = this.outboundQueue;
+        return queue == null ? 0 : queue.getQueueDepth();
+    }
+
+    /**
+     * @return The number of messages dropped because the client did not read fast enough, 0 without outbound queue.
+     */
+    public final long getDroppedMessages() {
+        OutboundQueueHandler queue = this.outboundQueue;
+        return queue == null ? 0 : queue.getDroppedMessages();
+    }
+
+    /**
+     * @return The smoothed round trip time measured by the heartbeat, empty without heartbeat or until the first pong.
+     */
+    public final Optional<Duration> getRoundTripTime() {
+        HeartbeatHandler heartbeat = this.channel.pipeline().get(HeartbeatHandler.class);
+        return heartbeat == null ? Optional.empty() : heartbeat.getRoundTripTime();
+    }
 
     @Override
     protected void closeSession() {
+        if (this.resumeStore != null) {
+            this.resumeStore.discard(this);
+        }
         this.channel.close();
     }
 
+    /**
+     * Make this session resumable.
+     *
+     * @param token Token to resume this session.
+     * @param journal Journal of the sent messages.
+     * @param store Store keeping this session while it can be resumed.
+     */
+    final void setResumable(final String token, final ReplayJournal journal, final SessionResumeStore store) {
+        this.resumeToken = token;
+        this.journal = journal;
+        this.resumeStore = store;
+    }
+
+    /**
+     * @return The token to resume this session, empty if the session is not resumable.
+     */
+    public final Optional<String> getResumeToken() {
+        return Optional.ofNullable(this.resumeToken);
+    }
+
+    final ReplayJournal getJournal() {
+        return this.journal;
+    }
+
+    final synchronized void setExpiration(final ScheduledFuture<?> expiration) {
+        this.expiration = expiration;
+    }
+
+    final synchronized void cancelExpiration() {
+        if (this.expiration != null) {
+            this.expiration.cancel(false);
+            this.expiration = null;
+        }
+    }
+
+    /**
+     * Resume this session on a new connection, and send the messages missed by the client.
+     *
+     * @param newChannel Channel of the new connection.
+     * @param receivedMessages Number of messages received by the client before the disconnection.
+     */
+    final void resume(final Channel newChannel, final long receivedMessages) {
+        Channel previous;
+        synchronized (this.journal) {
+            previous = this.channel;
+            this.channel = newChannel;
+            this.outboundQueue = newChannel.pipeline().get(OutboundQueueHandler.class);
+            this.journal.replay(receivedMessages, m -> newChannel.write(this.buildMessage(m)));
+            newChannel.flush();
+        }
+        previous.close();
+    }
+
+    final void setRegistry(final SessionRegistry registry) {
+        this.registry = registry;
+    }
+
+    final PlayerId getBoundPlayer() {
+        return this.boundPlayer;
+    }
+
+    final void setBoundPlayer(final PlayerId player) {
+        this.boundPlayer = player;
+    }
+
+    final void joined(final SessionGroup group) {
+        this.groups.add(group);
+    }
+
+    final void left(final SessionGroup group) {
+        this.groups.remove(group);
+    }
+
+    /**
+     * Remove this session from its groups, and its player association from the registry, once it can not be
+     * resumed anymore.
+     */
+    final void discarded() {
+        SessionRegistry current = this.registry;
+        if (current != null) {
+            current.unbind(this);
+        }
+        this.groups.forEach(g -> g.discarded(this));
+        this.groups.clear();
+    }
+
     public Channel getChannel() {
         return channel;
     }
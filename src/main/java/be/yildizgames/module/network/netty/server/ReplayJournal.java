@@ -0,0 +1,228 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import be.yildizgames.module.network.netty.ResumeProtocol;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Bounded journal of the messages sent to a session, stored in a memory mapped file used as a ring buffer.
+ * When the journal is full, the oldest messages are discarded, a client missing them can not resume its session.
+ * The file is only created when the first message is journaled, and deleted when the journal is closed.
+ *
+ * @author Grégory Van den Borre
+ */
+final class ReplayJournal {
+
+    /**
+     * Directory where the journal file is created.
+     */
+    private final Path directory;
+
+    /**
+     * Size of the journal file, in bytes.
+     */
+    private final int capacity;
+
+    /**
+     * Position, size and message numbers of the journaled messages, oldest first.
+     */
+    private final Deque<Entry> entries = new ArrayDeque<>();
+
+    /**
+     * Journal file, null until the first message is journaled.
+     */
+    private FileChannel file;
+
+    /**
+     * Mapped journal file, null until the first message is journaled.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * Position where the next message will be written.
+     */
+    private int tail;
+
+    /**
+     * Number of messages sent since the session started.
+     */
+    private long sentMessages;
+
+    /**
+     * Number of the first message that can be replayed, starting at 1.
+     */
+    private long firstAvailable = 1;
+
+    private boolean closed;
+
+    ReplayJournal(final Path directory, final int capacity) {
+        super();
+        this.directory = directory;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Journal a sent message.
+     *
+     * @param message Message sent, containing one or several delimited messages.
+     */
+    synchronized void append(final String message) {
+        int count = ResumeProtocol.countMessages(message);
+        if (this.closed || count == 0) {
+            return;
+        }
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > this.capacity) {
+            this.entries.clear();
+            this.sentMessages += count;
+            this.firstAvailable = this.sentMessages + 1;
+            return;
+        }
+        this.map();
+        int position = this.tail;
+        if (position + bytes.length > this.capacity) {
+            // Not enough room before the end, the entries between the tail and the end are the oldest ones.
+            while (!this.entries.isEmpty() && this.entries.peekFirst().position >= this.tail) {
+                this.entries.pollFirst();
+            }
+            position = 0;
+        }
+        while (!this.entries.isEmpty() && this.entries.peekFirst().overlaps(position, bytes.length)) {
+            this.entries.pollFirst();
+        }
+        this.buffer.put(position, bytes);
+        this.entries.addLast(new Entry(this.sentMessages + 1, count, position, bytes.length));
+        this.sentMessages += count;
+        this.tail = position + bytes.length;
+        this.firstAvailable = this.entries.peekFirst().first;
+    }
+
+    /**
+     * Check if the messages missed by a client are still in the journal.
+     *
+     * @param receivedMessages Number of messages received by the client.
+     * @return true if all the messages after the received ones can be replayed.
+     */
+    synchronized boolean canReplay(final long receivedMessages) {
+        return !this.closed && receivedMessages >= this.firstAvailable - 1 && receivedMessages <= this.sentMessages;
+    }
+
+    /**
+     * Provide the messages missed by a client, in the order they were sent.
+     *
+     * @param receivedMessages Number of messages received by the client.
+     * @param consumer Receive the missed messages.
+     */
+    synchronized void replay(final long receivedMessages, final Consumer<String> consumer) {
+        for (Entry entry : this.entries) {
+            if (entry.last() > receivedMessages) {
+                byte[] bytes = new byte[entry.length];
+                this.buffer.get(entry.position, bytes);
+                String message = new String(bytes, StandardCharsets.UTF_8);
+                if (entry.first <= receivedMessages) {
+                    message = ResumeProtocol.skipMessages(message, receivedMessages - entry.first + 1);
+                }
+                consumer.accept(message);
+            }
+        }
+    }
+
+    /**
+     * Release the mapped memory and delete the journal file.
+     */
+    synchronized void close() {
+        this.closed = true;
+        this.entries.clear();
+        if (this.file != null) {
+            PlatformDependent.freeDirectBuffer(this.buffer);
+            this.buffer = null;
+            try {
+                this.file.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.file = null;
+        }
+    }
+
+    private void map() {
+        if (this.file != null) {
+            return;
+        }
+        try {
+            Path path = Files.createTempFile(this.directory, "session-", ".journal");
+            this.file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            this.buffer = this.file.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create session journal in " + this.directory, e);
+        }
+    }
+
+    /**
+     * A journaled send.
+     */
+    private static final class Entry {
+
+        /**
+         * Number of the first message of this entry.
+         */
+        private final long first;
+
+        private final int count;
+
+        private final int position;
+
+        private final int length;
+
+        private Entry(final long first, final int count, final int position, final int length) {
+            this.first = first;
+            this.count = count;
+            this.position = position;
+            this.length = length;
+        }
+
+        private long last() {
+            return this.first + this.count - 1;
+        }
+
+        private boolean overlaps(final int start, final int size) {
+            return this.position < start + size && start < this.position + this.length;
+        }
+    }
+}
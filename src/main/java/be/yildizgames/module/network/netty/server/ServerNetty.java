@@ -25,19 +25,37 @@
 package be.yildizgames.module.network.netty.server;
 
 import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.netty.BufferAllocation;
+import be.yildizgames.module.network.netty.BufferPoolMetrics;
+import be.yildizgames.module.network.netty.CompressionMetrics;
+import be.yildizgames.module.network.netty.InboundSizeMetrics;
 import be.yildizgames.module.network.netty.NettyChannelInitializer;
+import be.yildizgames.module.network.netty.NettyTransport;
+import be.yildizgames.module.network.netty.PipelineConfiguration;
+import be.yildizgames.module.network.netty.RateLimitMetrics;
+import be.yildizgames.module.network.netty.TrafficMetrics;
 import be.yildizgames.module.network.server.Server;
 import be.yildizgames.module.network.server.SessionManager;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.unix.UnixChannelOption;
+import io.netty.util.concurrent.Future;
 
 import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Server side part of the Netty network system, wrap the netty bootstrap and offer possibility to add handlers.
@@ -53,20 +71,149 @@ public final class ServerNetty extends Server {
      */
     private final ServerBootstrap bootstrap;
 
+    /**
+     * Number of listening channels to bind.
+     */
+    private final int acceptors;
+
+    /**
+     * Options for the accepted channels pipeline.
+     */
+    private final PipelineConfiguration pipeline;
+
+    /**
+     * Metrics of the allocator used by the accepted channels.
+     */
+    private final BufferPoolMetrics bufferPoolMetrics;
+
+    /**
+     * Executor processing the received messages, null to process them on the I/O threads.
+     */
+    private final Executor dispatchExecutor;
+
+    /**
+     * Dispatch executor created by this server and shut down when it is stopped, null if none.
+     */
+    private final ExecutorService ownedDispatchExecutor;
+
+    /**
+     * Number of queued messages of a session pausing its channel reads.
+     */
+    private final int maxQueuedMessages;
+
+    /**
+     * Number of queued messages of a session resuming its channel reads.
+     */
+    private final int resumeQueuedMessages;
+
+    /**
+     * Metrics of the dispatched messages, null until the server is started.
+     */
+    private volatile DispatchMetrics dispatchMetrics;
+
+    /**
+     * Codec of the server, null until the server is started.
+     */
+    private volatile DecoderEncoder codec;
+
+    /**
+     * Store keeping the resumable sessions, null if sessions are not resumable.
+     */
+    private final SessionResumeStore resumeStore;
+
+    /**
+     * Index of the connected sessions.
+     */
+    private final SessionRegistry registry = new SessionRegistry();
+
+    /**
+     * Listener for the binary messages, null to process them as text.
+     */
+    private SessionBinaryListener binaryListener;
+
+    /**
+     * Listener for the binary websocket message fragments, null to assemble them for the binary listener.
+     */
+    private SessionStreamListener streamListener;
+
+    /**
+     * Listener notified when a session writability changes, null if none.
+     */
+    private SessionWritabilityListener writabilityListener;
+
+    /**
+     * Statistics for every bound listening channel.
+     */
+    private final List<AcceptorMetrics> acceptorMetrics = new CopyOnWriteArrayList<>();
+
+    /**
+     * Bound listening channels.
+     */
+    private final List<Channel> acceptorChannels = new CopyOnWriteArrayList<>();
+
     /**
      * Create a new Netty server.
+     *
+     * @param configuration Threading model and socket options.
      */
-    private ServerNetty() {
+    private ServerNetty(final ServerNettyConfiguration configuration) {
         super();
-        EventLoopGroup bossGroup = new NioEventLoopGroup();
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        NettyTransport transport = configuration.getTransport()
+                .map(NettyTransport::select)
+                .orElseGet(NettyTransport::fromConfiguration);
+        if (configuration.getAcceptors() > 1 && !transport.isReusePortSupported()) {
+            LOGGER.log(System.Logger.Level.WARNING,
+                    "SO_REUSEPORT not supported by {0} transport, binding a single acceptor.", transport);
+            this.acceptors = 1;
+        } else {
+            this.acceptors = configuration.getAcceptors();
+        }
+        this.pipeline = configuration.getPipeline();
+        if (configuration.isVirtualThreadDispatch()) {
+            this.ownedDispatchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            this.dispatchExecutor = this.ownedDispatchExecutor;
+        } else {
+            this.ownedDispatchExecutor = null;
+            this.dispatchExecutor = configuration.getDispatchExecutor().orElse(null);
+        }
+        this.maxQueuedMessages = configuration.getMaxQueuedMessages();
+        this.resumeQueuedMessages = configuration.getResumeQueuedMessages();
+        this.resumeStore = configuration.getResumeDirectory()
+                .map(d -> new SessionResumeStore(d, configuration.getJournalCapacity(), configuration.getResumeWindow()))
+                .orElse(null);
+        this.bufferPoolMetrics = this.pipeline.getAllocation()
+                .map(BufferAllocation::getMetrics)
+                .orElseGet(() -> new BufferPoolMetrics(configuration.getAllocator().orElse(ByteBufAllocator.DEFAULT)));
+        EventLoopGroup bossGroup = transport.newEventLoopGroup(Math.max(configuration.getBossThreads(), this.acceptors));
+        EventLoopGroup workerGroup = transport.newEventLoopGroup(configuration.getWorkerThreads());
         this.bootstrap = new ServerBootstrap()
                 .group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class);
+                .channel(transport.getServerChannelClass())
+                .childOption(ChannelOption.TCP_NODELAY, configuration.isTcpNoDelay());
+        if (this.acceptors > 1) {
+            this.bootstrap.option(UnixChannelOption.SO_REUSEPORT, true);
+        }
+        if (configuration.getBacklog() > 0) {
+            this.bootstrap.option(ChannelOption.SO_BACKLOG, configuration.getBacklog());
+        }
+        if (configuration.getSendBufferSize() > 0) {
+            this.bootstrap.childOption(ChannelOption.SO_SNDBUF, configuration.getSendBufferSize());
+        }
+        if (configuration.getReceiveBufferSize() > 0) {
+            // Set on the listening socket as well, so the TCP window is negotiated with the right size.
+            this.bootstrap.option(ChannelOption.SO_RCVBUF, configuration.getReceiveBufferSize());
+            this.bootstrap.childOption(ChannelOption.SO_RCVBUF, configuration.getReceiveBufferSize());
+        }
+        configuration.getWriteBufferWaterMark()
+                .ifPresent(w -> this.bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, w));
+        configuration.getAllocator().ifPresent(a -> {
+            this.bootstrap.option(ChannelOption.ALLOCATOR, a);
+            this.bootstrap.childOption(ChannelOption.ALLOCATOR, a);
+        });
     }
 
     /**
-     * Create a new Netty server.
+     * Create a new Netty server, using the default configuration and the transport selected by the system property.
      *
      * @return The created server.
      */
@@ -74,9 +221,30 @@ public final class ServerNetty extends Server {
     //@requires address != null.
     //@requires port > 0 < 65535.
     public static ServerNetty create() {
-        return new ServerNetty();
+        return new ServerNetty(ServerNettyConfiguration.defaultConfiguration());
     }
 
+    /**
+     * Create a new Netty server, using the requested transport, or NIO if it is not available.
+     *
+     * @param transport Requested I/O transport.
+     * @return The created server.
+     */
+    //@requires transport != null.
+    public static ServerNetty create(final NettyTransport transport) {
+        return new ServerNetty(ServerNettyConfiguration.builder().transport(transport).build());
+    }
+
+    /**
+     * Create a new Netty server.
+     *
+     * @param configuration Threading model and socket options.
+     * @return The created server.
+     */
+    //@requires configuration != null.
+    public static ServerNetty create(final ServerNettyConfiguration configuration) {
+        return new ServerNetty(configuration);
+    }
 
     /**
      * Start the server to listen to clients.
@@ -95,7 +263,13 @@ public final class ServerNetty extends Server {
     @Override
     public void startServer(String address, int port, SessionManager sessionManager, DecoderEncoder codec) {
         try {
-            ChannelInitializer<SocketChannel> initializer = new NettyChannelInitializer(new SessionServerHandlerFactory(sessionManager, codec));
+            SessionServerHandlerFactory factory = new SessionServerHandlerFactory(sessionManager, codec,
+                    this.pipeline.isBinary(), this.binaryListener, this.streamListener, this.writabilityListener,
+                    this.dispatchExecutor, this.maxQueuedMessages, this.resumeQueuedMessages, this.resumeStore,
+                    this.registry);
+            this.dispatchMetrics = factory.getDispatchMetrics();
+            this.codec = codec;
+            ChannelInitializer<SocketChannel> initializer = new NettyChannelInitializer(factory, this.pipeline);
 
             this.bootstrap.childHandler(initializer);
             InetSocketAddress socketAddress;
@@ -104,11 +278,17 @@ public final class ServerNetty extends Server {
             } else {
                 socketAddress = new InetSocketAddress(address, port);
             }
-            ChannelFuture acceptor = this.bootstrap.bind(socketAddress).sync();
-            if (acceptor.isSuccess()) {
-                LOGGER.log(System.Logger.Level.INFO,"Network server bound to " + port);
-            } else {
-                LOGGER.log(System.Logger.Level.WARNING,"Network server binding to {} failure.", port);
+            for (int i = 0; i < this.acceptors; i++) {
+                AcceptorMetrics metrics = new AcceptorMetrics(i);
+                // Every bind registers the listening channel on the next boss event loop.
+                ChannelFuture acceptor = this.bootstrap.clone().handler(metrics.newHandler()).bind(socketAddress).sync();
+                if (acceptor.isSuccess()) {
+                    this.acceptorMetrics.add(metrics);
+                    this.acceptorChannels.add(acceptor.channel());
+                    LOGGER.log(System.Logger.Level.INFO,"Network server bound to " + port);
+                } else {
+                    LOGGER.log(System.Logger.Level.WARNING,"Network server binding to {0} failure.", port);
+                }
             }
         } catch (ChannelException e) {
             this.throwError("Port " + port + " already in use.", e);
@@ -117,4 +297,124 @@ public final class ServerNetty extends Server {
             this.throwError("Error starting network engine.", e);
         }
     }
+
+    /**
+     * Stop listening, close the connections, and release the server threads.
+     * A dispatch executor provided by the caller is not shut down, its lifecycle is managed by the caller, the
+     * virtual thread executor created by the server is shut down once the connections are closed.
+     * The traffic metrics of the server are removed from JMX, and the resumable sessions are discarded with their
+     * replay journal.
+     */
+    public void stop() {
+        this.acceptorChannels.forEach(c -> c.close().syncUninterruptibly());
+        this.acceptorChannels.clear();
+        if (this.resumeStore != null) {
+            this.resumeStore.close();
+        }
+        this.bootstrap.config().group().shutdownGracefully();
+        Future<?> workers = this.bootstrap.config().childGroup().shutdownGracefully();
+        DecoderEncoder started = this.codec;
+        if (started != null) {
+            this.pipeline.unregisterTrafficMetrics(started);
+        }
+        if (this.ownedDispatchExecutor != null) {
+            // Once the I/O threads are stopped, no message can be submitted anymore.
+            workers.addListener(f -> this.ownedDispatchExecutor.shutdown());
+        }
+    }
+
+    /**
+     * Set the listener receiving the messages when the pipeline uses binary frames, must be set before starting.
+     * Without listener, binary messages are decoded as text and sent to the session manager.
+     *
+     * @param listener Listener for the binary messages.
+     */
+    public void setBinaryListener(final SessionBinaryListener listener) {
+        this.binaryListener = listener;
+    }
+
+    /**
+     * Set the listener receiving the fragments of the binary websocket messages as they arrive, must be set before
+     * starting. Without stream listener, the fragments are assembled, up to the maximum message size, and the
+     * message is sent to the binary listener.
+     *
+     * @param listener Listener for the binary message fragments.
+     */
+    public void setStreamListener(final SessionStreamListener listener) {
+        this.streamListener = listener;
+    }
+
+    /**
+     * Set the listener notified when a session writability changes, must be set before starting.
+     * The writability follows the write buffer water mark of the pipeline or server configuration.
+     *
+     * @param listener Listener to notify.
+     */
+    public void setWritabilityListener(final SessionWritabilityListener listener) {
+        this.writabilityListener = listener;
+    }
+
+    /**
+     * @return The metrics of the messages processed on the dispatch executor, empty if the server is not started.
+     */
+    public Optional<DispatchMetrics> getDispatchMetrics() {
+        return Optional.ofNullable(this.dispatchMetrics);
+    }
+
+    /**
+     * @return The index of the connected sessions, by channel and by player.
+     */
+    public SessionRegistry getSessionRegistry() {
+        return this.registry;
+    }
+
+    /**
+     * @return The number of resumable sessions, connected or waiting to be resumed, 0 if sessions are not resumable.
+     */
+    public int getResumableSessions() {
+        return this.resumeStore == null ? 0 : this.resumeStore.size();
+    }
+
+    /**
+     * @return The traffic metrics of the server channels, empty if the traffic is not recorded or the server not started.
+     */
+    public Optional<TrafficMetrics> getTrafficMetrics() {
+        DecoderEncoder started = this.codec;
+        return started == null ? Optional.empty() : this.pipeline.getTrafficMetrics(started);
+    }
+
+    /**
+     * @return The statistics of the received messages rejected because of their size.
+     */
+    public InboundSizeMetrics getInboundSizeMetrics() {
+        return this.pipeline.getInboundSizeMetrics();
+    }
+
+    /**
+     * @return The rate limiting statistics of the connections, empty if the rate is not limited.
+     */
+    public Optional<RateLimitMetrics> getRateLimitMetrics() {
+        return this.pipeline.getRateLimitMetrics();
+    }
+
+    /**
+     * @return The compression metrics of the outbound websocket messages, empty if the compression is disabled.
+     */
+    public Optional<CompressionMetrics> getCompressionMetrics() {
+        return this.pipeline.getCompressionMetrics();
+    }
+
+    /**
+     * @return The memory and pool metrics of the allocator used by the accepted channels.
+     */
+    public BufferPoolMetrics getBufferPoolMetrics() {
+        return this.bufferPoolMetrics;
+    }
+
+    /**
+     * @return The accept statistics of every bound listening channel.
+     */
+    public List<AcceptorMetrics> getAcceptorMetrics() {
+        return Collections.unmodifiableList(this.acceptorMetrics);
+    }
 }
@@ -0,0 +1,517 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import be.yildizgames.module.network.netty.NettyTransport;
+import be.yildizgames.module.network.netty.PipelineConfiguration;
+import be.yildizgames.module.network.netty.SlowConsumerPolicy;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+/**
+ * Threading model and socket options used to build a netty server.
+ * Numeric values set to 0 keep the netty or operating system default.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class ServerNettyConfiguration {
+
+    /**
+     * Requested transport, if empty, the transport is selected from the system property.
+     */
+    private final NettyTransport transport;
+
+    /**
+     * Number of threads accepting connections.
+     */
+    private final int bossThreads;
+
+    /**
+     * Number of listening channels bound on the same port with SO_REUSEPORT.
+     */
+    private final int acceptors;
+
+    /**
+     * Number of threads handling the accepted connections I/O.
+     */
+    private final int workerThreads;
+
+    /**
+     * Disable the Nagle algorithm on accepted connections.
+     */
+    private final boolean tcpNoDelay;
+
+    /**
+     * Maximum pending connections queue length.
+     */
+    private final int backlog;
+
+    /**
+     * Socket send buffer size, in bytes.
+     */
+    private final int sendBufferSize;
+
+    /**
+     * Socket receive buffer size, in bytes.
+     */
+    private final int receiveBufferSize;
+
+    /**
+     * Outbound buffer limits to switch the channel writability.
+     */
+    private final WriteBufferWaterMark writeBufferWaterMark;
+
+    /**
+     * Buffer allocator used by the channels.
+     */
+    private final ByteBufAllocator allocator;
+
+    /**
+     * Options for the accepted channels pipeline.
+     */
+    private final PipelineConfiguration pipeline;
+
+    /**
+     * Executor processing the received messages, null to process them on the I/O threads.
+     */
+    private final Executor dispatchExecutor;
+
+    /**
+     * True to process the received messages on virtual threads, the executor is created and shut down by the server.
+     */
+    private final boolean virtualThreadDispatch;
+
+    /**
+     * Number of queued messages of a session pausing its channel reads.
+     */
+    private final int maxQueuedMessages;
+
+    /**
+     * Number of queued messages of a session resuming its channel reads.
+     */
+    private final int resumeQueuedMessages;
+
+    /**
+     * Directory where the session replay journals are created, null if the sessions are not resumable.
+     */
+    private final Path resumeDirectory;
+
+    /**
+     * Size of each session replay journal, in bytes.
+     */
+    private final int journalCapacity;
+
+    /**
+     * Time a disconnected session can be resumed.
+     */
+    private final Duration resumeWindow;
+
+    private ServerNettyConfiguration(final Builder builder) {
+        super();
+        this.transport = builder.transport;
+        this.bossThreads = builder.bossThreads;
+        this.acceptors = builder.acceptors;
+        this.workerThreads = builder.workerThreads;
+        this.tcpNoDelay = builder.tcpNoDelay;
+        this.backlog = builder.backlog;
+        this.sendBufferSize = builder.sendBufferSize;
+        this.receiveBufferSize = builder.receiveBufferSize;
+        this.writeBufferWaterMark = builder.writeBufferWaterMark;
+        this.allocator = builder.allocator;
+        this.pipeline = builder.pipeline;
+        this.dispatchExecutor = builder.dispatchExecutor;
+        this.virtualThreadDispatch = builder.virtualThreadDispatch;
+        this.maxQueuedMessages = builder.maxQueuedMessages;
+        this.resumeQueuedMessages = builder.resumeQueuedMessages;
+        this.resumeDirectory = builder.resumeDirectory;
+        this.journalCapacity = builder.journalCapacity;
+        this.resumeWindow = builder.resumeWindow;
+    }
+
+    /**
+     * @return A new builder, initialized with the default values.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The default configuration.
+     */
+    public static ServerNettyConfiguration defaultConfiguration() {
+        return new Builder().build();
+    }
+
+    /**
+     * @return The requested transport, empty to use the one selected from the system property.
+     */
+    public Optional<NettyTransport> getTransport() {
+        return Optional.ofNullable(this.transport);
+    }
+
+    public int getBossThreads() {
+        return this.bossThreads;
+    }
+
+    public int getAcceptors() {
+        return this.acceptors;
+    }
+
+    public int getWorkerThreads() {
+        return this.workerThreads;
+    }
+
+    public boolean isTcpNoDelay() {
+        return this.tcpNoDelay;
+    }
+
+    public int getBacklog() {
+        return this.backlog;
+    }
+
+    public int getSendBufferSize() {
+        return this.sendBufferSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return this.receiveBufferSize;
+    }
+
+    public Optional<WriteBufferWaterMark> getWriteBufferWaterMark() {
+        return Optional.ofNullable(this.writeBufferWaterMark);
+    }
+
+    public Optional<ByteBufAllocator> getAllocator() {
+        return Optional.ofNullable(this.allocator);
+    }
+
+    public PipelineConfiguration getPipeline() {
+        return this.pipeline;
+    }
+
+    /**
+     * @return The executor provided to process the received messages, empty if none was provided.
+     */
+    public Optional<Executor> getDispatchExecutor() {
+        return Optional.ofNullable(this.dispatchExecutor);
+    }
+
+    /**
+     * @return true if the received messages are processed on virtual threads of an executor owned by the server.
+     */
+    public boolean isVirtualThreadDispatch() {
+        return this.virtualThreadDispatch;
+    }
+
+    public int getMaxQueuedMessages() {
+        return this.maxQueuedMessages;
+    }
+
+    public int getResumeQueuedMessages() {
+        return this.resumeQueuedMessages;
+    }
+
+    /**
+     * @return The directory where the session replay journals are created, empty if the sessions are not resumable.
+     */
+    public Optional<Path> getResumeDirectory() {
+        return Optional.ofNullable(this.resumeDirectory);
+    }
+
+    public int getJournalCapacity() {
+        return this.journalCapacity;
+    }
+
+    public Duration getResumeWindow() {
+        return this.resumeWindow;
+    }
+
+    /**
+     * Build a server configuration.
+     */
+    public static final class Builder {
+
+        private NettyTransport transport;
+
+        private int bossThreads = 1;
+
+        private int acceptors = 1;
+
+        private int workerThreads;
+
+        private boolean tcpNoDelay = true;
+
+        private int backlog;
+
+        private int sendBufferSize;
+
+        private int receiveBufferSize;
+
+        private WriteBufferWaterMark writeBufferWaterMark;
+
+        private ByteBufAllocator allocator;
+
+        private PipelineConfiguration pipeline = PipelineConfiguration.defaultConfiguration();
+
+        private Executor dispatchExecutor;
+
+        private boolean virtualThreadDispatch;
+
+        private int maxQueuedMessages = SessionDispatcher.DEFAULT_MAX_QUEUED_MESSAGES;
+
+        private int resumeQueuedMessages = SessionDispatcher.DEFAULT_RESUME_QUEUED_MESSAGES;
+
+        private Path resumeDirectory;
+
+        private int journalCapacity;
+
+        private Duration resumeWindow = Duration.ZERO;
+
+        private Builder() {
+            super();
+        }
+
+        /**
+         * @param transport Requested transport, NIO is used if it is not available.
+         * @return This builder.
+         */
+        public Builder transport(final NettyTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * @param threads Number of threads accepting connections, default is 1, raised to the number of acceptors if
+         * lower, so every listening channel has its own boss thread.
+         * @return This builder.
+         */
+        public Builder bossThreads(final int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("Boss threads must be at least 1: " + threads);
+            }
+            this.bossThreads = threads;
+            return this;
+        }
+
+        /**
+         * Bind several listening channels on the same port with SO_REUSEPORT, so the kernel balances the accepts
+         * between them, each listener runs on its own boss thread.
+         * Only supported by native transports, a single listener is bound with NIO.
+         *
+         * @param acceptors Number of listening channels, default is 1.
+         * @return This builder.
+         */
+        public Builder acceptors(final int acceptors) {
+            if (acceptors < 1) {
+                throw new IllegalArgumentException("Acceptors must be at least 1: " + acceptors);
+            }
+            this.acceptors = acceptors;
+            return this;
+        }
+
+        /**
+         * @param threads Number of I/O threads, default is 0 for the netty default, 2 * available cores.
+         * @return This builder.
+         */
+        public Builder workerThreads(final int threads) {
+            this.workerThreads = requirePositive(threads, "Worker threads");
+            return this;
+        }
+
+        /**
+         * @param noDelay True to disable the Nagle algorithm, default is true.
+         * @return This builder.
+         */
+        public Builder tcpNoDelay(final boolean noDelay) {
+            this.tcpNoDelay = noDelay;
+            return this;
+        }
+
+        /**
+         * @param backlog Maximum pending connections queue length.
+         * @return This builder.
+         */
+        public Builder backlog(final int backlog) {
+            this.backlog = requirePositive(backlog, "Backlog");
+            return this;
+        }
+
+        /**
+         * @param size Socket send buffer size, in bytes.
+         * @return This builder.
+         */
+        public Builder sendBufferSize(final int size) {
+            this.sendBufferSize = requirePositive(size, "Send buffer size");
+            return this;
+        }
+
+        /**
+         * @param size Socket receive buffer size, in bytes.
+         * @return This builder.
+         */
+        public Builder receiveBufferSize(final int size) {
+            this.receiveBufferSize = requirePositive(size, "Receive buffer size");
+            return this;
+        }
+
+        /**
+         * Can not be combined with a pipeline write buffer water mark, which would override it for the accepted
+         * channels.
+         *
+         * @param low Outbound buffered bytes under which the channel becomes writable again.
+         * @param high Outbound buffered bytes over which the channel becomes not writable.
+         * @return This builder.
+         */
+        public Builder writeBufferWaterMark(final int low, final int high) {
+            this.writeBufferWaterMark = new WriteBufferWaterMark(low, high);
+            return this;
+        }
+
+        /**
+         * Can not be combined with a pipeline buffer allocation, which would override it for the accepted channels.
+         *
+         * @param allocator Buffer allocator used by the server and accepted channels.
+         * @return This builder.
+         */
+        public Builder allocator(final ByteBufAllocator allocator) {
+            this.allocator = allocator;
+            return this;
+        }
+
+        /**
+         * @param pipeline Options for the accepted channels pipeline.
+         * @return This builder.
+         */
+        public Builder pipeline(final PipelineConfiguration pipeline) {
+            this.pipeline = pipeline;
+            return this;
+        }
+
+        /**
+         * Process the received messages on an executor instead of the I/O threads, so a blocking game logic does not
+         * stall the other connections, the messages of a same session are still processed one at a time, in order.
+         *
+         * @param executor Executor processing the messages, its lifecycle is managed by the caller.
+         * @return This builder.
+         */
+        public Builder dispatchExecutor(final Executor executor) {
+            this.dispatchExecutor = executor;
+            this.virtualThreadDispatch = false;
+            return this;
+        }
+
+        /**
+         * Process the received messages on virtual threads instead of the I/O threads, in order for each session.
+         * The executor is created when the server is built, and shut down when it is stopped.
+         *
+         * @return This builder.
+         */
+        public Builder virtualThreadDispatch() {
+            this.dispatchExecutor = null;
+            this.virtualThreadDispatch = true;
+            return this;
+        }
+
+        /**
+         * Bound the messages of a session waiting for the dispatch executor, by default 1024 messages pause the
+         * channel reads, and they are resumed once 512 are left.
+         *
+         * @param maxQueuedMessages Number of queued messages pausing the channel reads.
+         * @param resumeQueuedMessages Number of queued messages resuming the channel reads, lower than the maximum.
+         * @return This builder.
+         */
+        //@Requires("maxQueuedMessages > 0")
+        //@Requires("resumeQueuedMessages >= 0 && resumeQueuedMessages < maxQueuedMessages")
+        public Builder dispatchQueue(final int maxQueuedMessages, final int resumeQueuedMessages) {
+            if (maxQueuedMessages < 1) {
+                throw new IllegalArgumentException("Maximum queued messages must be at least 1: " + maxQueuedMessages);
+            }
+            if (resumeQueuedMessages < 0 || resumeQueuedMessages >= maxQueuedMessages) {
+                throw new IllegalArgumentException("Resume queued messages must be positive and lower than "
+                        + maxQueuedMessages + ": " + resumeQueuedMessages);
+            }
+            this.maxQueuedMessages = maxQueuedMessages;
+            this.resumeQueuedMessages = resumeQueuedMessages;
+            return this;
+        }
+
+        /**
+         * Keep the text sessions after a disconnection, so a client reconnecting within the window with its resume
+         * token gets its session back, and the messages it missed.
+         * The sent messages are journaled in a memory mapped file per session, the oldest ones being overwritten
+         * when it is full, a client that missed overwritten messages can not resume.
+         * An outbound queue dropping messages can not be used, a dropped message would be journaled without being
+         * received, and the client would resume from a wrong position.
+         *
+         * @param directory Directory where the journal files are created.
+         * @param journalCapacity Size of each journal file, in bytes.
+         * @param window Time a disconnected session can be resumed.
+         * @return This builder.
+         */
+        public Builder resumable(final Path directory, final int journalCapacity, final Duration window) {
+            if (journalCapacity < 1) {
+                throw new IllegalArgumentException("Journal capacity must be at least 1: " + journalCapacity);
+            }
+            if (window.isNegative()) {
+                throw new IllegalArgumentException("Resume window must be positive: " + window);
+            }
+            this.resumeDirectory = directory;
+            this.journalCapacity = journalCapacity;
+            this.resumeWindow = window;
+            return this;
+        }
+
+        /**
+         * @return The built configuration.
+         */
+        public ServerNettyConfiguration build() {
+            if (this.resumeDirectory != null && this.pipeline.isOutboundQueue()
+                    && this.pipeline.getSlowConsumerPolicy() != SlowConsumerPolicy.DISCONNECT) {
+                throw new IllegalStateException("Resumable sessions require the DISCONNECT slow consumer policy: "
+                        + this.pipeline.getSlowConsumerPolicy());
+            }
+            if (this.allocator != null && this.pipeline.getAllocation().isPresent()) {
+                throw new IllegalStateException("The allocator is set both in the server and pipeline configurations.");
+            }
+            if (this.writeBufferWaterMark != null && this.pipeline.getWriteBufferWaterMark().isPresent()) {
+                throw new IllegalStateException(
+                        "The write buffer water mark is set both in the server and pipeline configurations.");
+            }
+            return new ServerNettyConfiguration(this);
+        }
+
+        private static int requirePositive(final int value, final String name) {
+            if (value < 0) {
+                throw new IllegalArgumentException(name + " must be positive: " + value);
+            }
+            return value;
+        }
+    }
+}
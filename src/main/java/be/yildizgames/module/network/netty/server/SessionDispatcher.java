@@ -0,0 +1,215 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import be.yildizgames.module.network.netty.ReadSuspension;
+import io.netty.channel.Channel;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run the messages of a session on a shared executor, one at a time and in their reception order.
+ * At most one task per session is submitted to the executor, it processes a limited batch of messages before being
+ * submitted again, so a busy session does not hold an executor thread for too long.
+ * The queue of a session is bounded, once full the reads of its channel are paused until enough queued messages are
+ * processed, so a client sending faster than the game logic processes is slowed down by TCP. The pause is shared
+ * with the rate limiter through ReadSuspension, so neither resumes the reads while the other still pauses them.
+ *
+ * @author Grégory Van den Borre
+ */
+final class SessionDispatcher implements Runnable {
+
+    private static final System.Logger LOGGER = System.getLogger(SessionDispatcher.class.getName());
+
+    /**
+     * Maximum number of messages processed before giving back the executor thread.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * Default number of queued messages pausing the channel reads.
+     */
+    static final int DEFAULT_MAX_QUEUED_MESSAGES = 1024;
+
+    /**
+     * Default number of queued messages resuming the channel reads.
+     */
+    static final int DEFAULT_RESUME_QUEUED_MESSAGES = DEFAULT_MAX_QUEUED_MESSAGES / 2;
+
+    /**
+     * Shared executor running the messages.
+     */
+    private final Executor executor;
+
+    /**
+     * Server wide dispatch metrics.
+     */
+    private final DispatchMetrics metrics;
+
+    /**
+     * Number of queued messages pausing the channel reads.
+     */
+    private final int maxQueuedMessages;
+
+    /**
+     * Number of queued messages resuming the channel reads.
+     */
+    private final int resumeQueuedMessages;
+
+    /**
+     * Messages waiting to be processed.
+     */
+    private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * True if this dispatcher is submitted to the executor.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Number of messages waiting to be processed, the queue size is not computed in constant time.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * True if the channel reads are paused because the queue is full.
+     */
+    private final AtomicBoolean paused = new AtomicBoolean();
+
+    /**
+     * Channel receiving the messages, its reads are paused when the queue is full.
+     */
+    private volatile Channel channel;
+
+    SessionDispatcher(final Executor executor, final DispatchMetrics metrics) {
+        this(executor, metrics, DEFAULT_MAX_QUEUED_MESSAGES, DEFAULT_RESUME_QUEUED_MESSAGES);
+    }
+
+    /**
+     * @param executor Shared executor running the messages.
+     * @param metrics Server wide dispatch metrics.
+     * @param maxQueuedMessages Number of queued messages pausing the channel reads.
+     * @param resumeQueuedMessages Number of queued messages resuming the channel reads, lower than the maximum.
+     */
+    SessionDispatcher(final Executor executor, final DispatchMetrics metrics, final int maxQueuedMessages,
+                      final int resumeQueuedMessages) {
+        super();
+        this.executor = executor;
+        this.metrics = metrics;
+        this.maxQueuedMessages = maxQueuedMessages;
+        this.resumeQueuedMessages = resumeQueuedMessages;
+    }
+
+    /**
+     * Set the channel receiving the messages, called once the handler is added to its pipeline.
+     *
+     * @param channel Channel to pause when the queue is full.
+     */
+    void setChannel(final Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Queue a message processing, and pause the channel reads if the queue is full.
+     *
+     * @param task Processing to run after the previously queued ones.
+     */
+    void dispatch(final Runnable task) {
+        int queued = this.pending.incrementAndGet();
+        this.tasks.add(new Task(task, System.nanoTime()));
+        this.metrics.messageQueued();
+        Channel ch = this.channel;
+        if (queued >= this.maxQueuedMessages && ch != null && this.paused.compareAndSet(false, true)) {
+            ReadSuspension.suspend(ch);
+            this.metrics.readPaused();
+        }
+        // Scheduled after pausing, so a run always follows the pause and resumes the reads once the queue is drained.
+        this.schedule();
+    }
+
+    @Override
+    public void run() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Task task = this.tasks.poll();
+            if (task == null) {
+                break;
+            }
+            this.metrics.messageDispatched(System.nanoTime() - task.queuedTime);
+            try {
+                task.runnable.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Error while processing a message.", e);
+            }
+            this.pending.decrementAndGet();
+        }
+        if (this.pending.get() <= this.resumeQueuedMessages) {
+            this.resumeReads();
+        }
+        this.scheduled.set(false);
+        if (!this.tasks.isEmpty()) {
+            this.schedule();
+        }
+    }
+
+    private void schedule() {
+        if (this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // The messages stay queued until the next dispatch submits this dispatcher again, the channel must
+                // not stay paused meanwhile since no run would resume it.
+                LOGGER.log(System.Logger.Level.WARNING, "Message dispatch rejected by the executor.", e);
+                this.scheduled.set(false);
+                this.resumeReads();
+            }
+        }
+    }
+
+    private void resumeReads() {
+        if (this.paused.compareAndSet(true, false)) {
+            ReadSuspension.resume(this.channel);
+        }
+    }
+
+    /**
+     * Queued message processing.
+     */
+    private static final class Task {
+
+        private final Runnable runnable;
+
+        private final long queuedTime;
+
+        private Task(final Runnable runnable, final long queuedTime) {
+            this.runnable = runnable;
+            this.queuedTime = queuedTime;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import be.yildizgames.module.network.protocol.NetworkMessage;
+import be.yildizgames.module.network.server.Session;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Group of sessions receiving the same messages.
+ * A broadcast message is encoded once in a pooled direct buffer, every session then receives a retained duplicate of
+ * this buffer, instead of encoding the message for each of them.
+ * Closed sessions are automatically removed from the group.
+ * Resumable sessions are kept by session rather than by channel, so they stay in the group when resumed on a new
+ * channel, and they receive the broadcast messages one by one, so the messages are recorded in their replay journal.
+ * They are removed from the group once they can not be resumed anymore.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class SessionGroup {
+
+    /**
+     * Channels of the sessions using the raw text codec.
+     */
+    private final ChannelGroup textChannels;
+
+    /**
+     * Channels of the sessions using the websocket codec.
+     */
+    private final ChannelGroup webSocketChannels;
+
+    /**
+     * Resumable sessions, whatever their codec.
+     */
+    private final Set<NettySession> resumableSessions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Allocator for the encoded messages.
+     */
+    private final ByteBufAllocator allocator;
+
+    /**
+     * Create a new empty group.
+     *
+     * @param name Group name, for logging purpose.
+     */
+    public SessionGroup(final String name) {
+        this(name, ByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * Create a new empty group.
+     *
+     * @param name Group name, for logging purpose.
+     * @param allocator Allocator for the encoded messages.
+     */
+    public SessionGroup(final String name, final ByteBufAllocator allocator) {
+        super();
+        this.textChannels = new DefaultChannelGroup(name + "-text", GlobalEventExecutor.INSTANCE);
+        this.webSocketChannels = new DefaultChannelGroup(name + "-websocket", GlobalEventExecutor.INSTANCE);
+        this.allocator = allocator;
+    }
+
+    /**
+     * Add a session to the group.
+     *
+     * @param session Session to add, must be a netty session.
+     * @return true if the session was added, false if it was already in the group.
+     * @throws IllegalArgumentException If the session is not a netty session.
+     */
+    public boolean add(final Session session) {
+        NettySession nettySession = toNettySession(session);
+        if (nettySession.getResumeToken().isPresent()) {
+            nettySession.joined(this);
+            return this.resumableSessions.add(nettySession);
+        }
+        return this.groupFor(nettySession).add(nettySession.getChannel());
+    }
+
+    /**
+     * Remove a session from the group.
+     *
+     * @param session Session to remove.
+     * @return true if the session was removed, false if it was not in the group.
+     */
+    public boolean remove(final Session session) {
+        if (session instanceof NettySession) {
+            NettySession nettySession = (NettySession) session;
+            if (this.resumableSessions.remove(nettySession)) {
+                nettySession.left(this);
+                return true;
+            }
+            return this.groupFor(nettySession).remove(nettySession.getChannel());
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of sessions in the group.
+     */
+    public int size() {
+        return this.textChannels.size() + this.webSocketChannels.size() + this.resumableSessions.size();
+    }
+
+    /**
+     * Send a message to every session in the group.
+     *
+     * @param message Message to send.
+     */
+    public void broadcast(final NetworkMessage message) {
+        this.broadcast(message.buildMessage());
+    }
+
+    /**
+     * Send a message to every session in the group, the message is encoded only once per codec.
+     *
+     * @param message Message to send.
+     */
+    public void broadcast(final String message) {
+        // The channel group writes a retained duplicate to every channel and releases the original buffer.
+        if (!this.textChannels.isEmpty()) {
+            this.textChannels.writeAndFlush(this.encode(message));
+        }
+        if (!this.webSocketChannels.isEmpty()) {
+            this.webSocketChannels.writeAndFlush(new TextWebSocketFrame(this.encode(message)));
+        }
+        // Journaled, so the client receives the same messages when it resumes.
+        this.resumableSessions.forEach(s -> s.sendMessage(message));
+    }
+
+    /**
+     * Close all the sessions in the group.
+     */
+    public void close() {
+        this.textChannels.close();
+        this.webSocketChannels.close();
+        this.resumableSessions.forEach(Session::disconnect);
+        this.resumableSessions.clear();
+    }
+
+    /**
+     * Remove a session that can not be resumed anymore.
+     *
+     * @param session Discarded session.
+     */
+    void discarded(final NettySession session) {
+        this.resumableSessions.remove(session);
+    }
+
+    private ByteBuf encode(final String message) {
+        ByteBuf buffer = this.allocator.directBuffer(ByteBufUtil.utf8Bytes(message));
+        ByteBufUtil.writeUtf8(buffer, message);
+        return buffer;
+    }
+
+    private ChannelGroup groupFor(final NettySession session) {
+        return session instanceof WebSocketNettySession ? this.webSocketChannels : this.textChannels;
+    }
+
+    private static NettySession toNettySession(final Session session) {
+        if (session instanceof NettySession) {
+            return (NettySession) session;
+        }
+        throw new IllegalArgumentException("Not a netty session: " + session);
+    }
+}
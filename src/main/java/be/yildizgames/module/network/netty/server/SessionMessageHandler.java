@@ -39,10 +39,14 @@ public final class SessionMessageHandler extends AbstractSessionMessageHandler<S
     @Override
     public void channelActive(final ChannelHandlerContext ctx) {
         this.setSession(NettySessionFactory.createAnonymousText(ctx.channel()));
+        this.sessionReady();
     }
 
+    /**
+     * Receive a single complete message, delimiters included, framed by the MessageFrameDecoder.
+     */
     @Override
     public void channelRead0(final ChannelHandlerContext ctx, final String message) {
-        this.getSession().ifPresent(s -> this.handler.processMessages(s, message));
+        this.getSession().ifPresent(s -> this.processMessages(s, message));
     }
 }
@@ -0,0 +1,218 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import be.yildizgames.common.model.PlayerId;
+import be.yildizgames.module.network.server.Session;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Index of the connected sessions of a server, by channel and by player.
+ * The sessions are sharded per event loop: a shard is only modified by the I/O thread of its channels, so
+ * registrations never contend between event loops, and reads from any thread are lock free.
+ * The session of a channel is kept as a channel attribute, the session of a player in a concurrent map, both lookups
+ * are O(1).
+ * A player is associated to its session by the application once authenticated, a resumable session keeps its player
+ * while it can be resumed.
+ *
+ * @author Grégory Van den Borre
+ */
+public final class SessionRegistry {
+
+    /**
+     * Session of a registered channel.
+     */
+    private static final AttributeKey<NettySession> SESSION = AttributeKey.valueOf(SessionRegistry.class, "session");
+
+    /**
+     * Connected sessions, by channel, for each event loop.
+     */
+    private final Map<EventExecutor, Map<Channel, NettySession>> shards = new ConcurrentHashMap<>();
+
+    /**
+     * Sessions associated to a player.
+     */
+    private final Map<PlayerId, NettySession> players = new ConcurrentHashMap<>();
+
+    SessionRegistry() {
+        super();
+    }
+
+    /**
+     * Register a session once its channel is ready, called on the channel I/O thread.
+     *
+     * @param session Session to register.
+     */
+    void register(final NettySession session) {
+        Channel channel = session.getChannel();
+        session.setRegistry(this);
+        channel.attr(SESSION).set(session);
+        this.shards.computeIfAbsent(channel.eventLoop(), e -> new ConcurrentHashMap<>()).put(channel, session);
+    }
+
+    /**
+     * Remove a closed channel, called on the channel I/O thread.
+     * The player association is kept if the session can still be resumed on another channel.
+     *
+     * @param session Session of the channel.
+     * @param channel Closed channel.
+     */
+    void unregister(final NettySession session, final Channel channel) {
+        Map<Channel, NettySession> shard = this.shards.get(channel.eventLoop());
+        if (shard != null) {
+            shard.remove(channel, session);
+        }
+        channel.attr(SESSION).set(null);
+        if (session.getResumeToken().isEmpty()) {
+            this.unbind(session);
+        }
+    }
+
+    /**
+     * Associate a player to a session, replacing the session previously associated to this player.
+     *
+     * @param player Authenticated player.
+     * @param session Session of the player, must be a netty session of this server.
+     * @throws IllegalArgumentException If the session is not a netty session.
+     */
+    public void bind(final PlayerId player, final Session session) {
+        if (!(session instanceof NettySession)) {
+            throw new IllegalArgumentException("Not a netty session: " + session);
+        }
+        NettySession nettySession = (NettySession) session;
+        this.unbind(nettySession);
+        nettySession.setBoundPlayer(player);
+        this.players.put(player, nettySession);
+    }
+
+    /**
+     * Remove the player association of a session, if any.
+     *
+     * @param session Session to remove.
+     */
+    void unbind(final NettySession session) {
+        PlayerId player = session.getBoundPlayer();
+        if (player != null) {
+            this.players.remove(player, session);
+            session.setBoundPlayer(null);
+        }
+    }
+
+    /**
+     * @param player Player to find.
+     * @return The session associated to the player, empty if none.
+     */
+    public Optional<NettySession> get(final PlayerId player) {
+        return Optional.ofNullable(this.players.get(player));
+    }
+
+    /**
+     * @param channel Channel to find.
+     * @return The session using the channel, empty if the channel is not registered.
+     */
+    public Optional<NettySession> get(final Channel channel) {
+        return Optional.ofNullable(channel.attr(SESSION).get());
+    }
+
+    /**
+     * Send a message to a player.
+     *
+     * @param player Player receiving the message.
+     * @param message Message to send.
+     * @return true if the player has a session, false if the message is dropped.
+     */
+    public boolean sendMessage(final PlayerId player, final String message) {
+        NettySession session = this.players.get(player);
+        if (session == null) {
+            return false;
+        }
+        session.sendMessage(message);
+        return true;
+    }
+
+    /**
+     * Send a binary message to a player, the buffer is released once written, or immediately if the player has no
+     * session.
+     *
+     * @param player Player receiving the message.
+     * @param message Message to send.
+     * @return true if the player has a session, false if the message is dropped.
+     */
+    public boolean sendMessage(final PlayerId player, final ByteBuf message) {
+        NettySession session = this.players.get(player);
+        if (session == null) {
+            message.release();
+            return false;
+        }
+        session.sendMessage(message);
+        return true;
+    }
+
+    /**
+     * Run an action on every connected session, shard by shard.
+     * Sessions registered or removed meanwhile may or may not be visited.
+     *
+     * @param action Action to run.
+     */
+    public void forEach(final Consumer<NettySession> action) {
+        this.shards.values().forEach(s -> s.values().forEach(action));
+    }
+
+    /**
+     * Run an action on every connected session, on the I/O thread of each session, so the action does not contend
+     * with the channel writes.
+     *
+     * @param action Action to run.
+     */
+    public void forEachOnEventLoop(final Consumer<NettySession> action) {
+        this.shards.forEach((loop, shard) -> loop.execute(() -> shard.values().forEach(action)));
+    }
+
+    /**
+     * @return The number of connected sessions.
+     */
+    public int size() {
+        int result = 0;
+        for (Map<Channel, NettySession> shard : this.shards.values()) {
+            result += shard.size();
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of sessions associated to a player, connected or waiting to be resumed.
+     */
+    public int getPlayerCount() {
+        return this.players.size();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import io.netty.channel.Channel;
+
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep the resumable sessions and their replay journal, a disconnected session is kept for the resume window and
+ * then discarded.
+ *
+ * @author Grégory Van den Borre
+ */
+final class SessionResumeStore {
+
+    private static final System.Logger LOGGER = System.getLogger(SessionResumeStore.class.getName());
+
+    /**
+     * Size of a resume token, in bytes.
+     */
+    private static final int TOKEN_SIZE = 16;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Resumable sessions, by token.
+     */
+    private final Map<String, NettySession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Directory where the journal files are created.
+     */
+    private final Path directory;
+
+    /**
+     * Size of each journal file, in bytes.
+     */
+    private final int journalCapacity;
+
+    /**
+     * Time a disconnected session is kept.
+     */
+    private final Duration window;
+
+    /**
+     * True once the server is stopped, a disconnected session is then not kept anymore.
+     */
+    private volatile boolean stopped;
+
+    SessionResumeStore(final Path directory, final int journalCapacity, final Duration window) {
+        super();
+        this.directory = directory;
+        this.journalCapacity = journalCapacity;
+        this.window = window;
+    }
+
+    /**
+     * Make a session resumable.
+     *
+     * @param session Session to register.
+     * @return The session resume token.
+     */
+    String register(final NettySession session) {
+        byte[] bytes = new byte[TOKEN_SIZE];
+        this.random.nextBytes(bytes);
+        String token = HexFormat.of().formatHex(bytes);
+        session.setResumable(token, new ReplayJournal(this.directory, this.journalCapacity), this);
+        this.sessions.put(token, session);
+        return token;
+    }
+
+    /**
+     * Find a session to resume, and cancel its discarding.
+     *
+     * @param token Session resume token.
+     * @param receivedMessages Number of messages received by the client.
+     * @return The session to resume, empty if it does not exist anymore or if the missed messages are not available.
+     */
+    Optional<NettySession> resume(final String token, final long receivedMessages) {
+        NettySession session = this.sessions.get(token);
+        if (session == null || !session.getJournal().canReplay(receivedMessages)) {
+            return Optional.empty();
+        }
+        session.cancelExpiration();
+        return Optional.of(session);
+    }
+
+    /**
+     * Schedule the discarding of a session whose channel is closed, unless it is resumed before.
+     *
+     * @param session Disconnected session.
+     * @param closed Closed channel.
+     */
+    void disconnected(final NettySession session, final Channel closed) {
+        if (this.stopped || session.getChannel() != closed) {
+            // Already discarded, or already resumed on another channel.
+            return;
+        }
+        ScheduledFuture<?> expiration = closed.eventLoop().schedule(() -> {
+            if (session.getChannel() == closed) {
+                LOGGER.log(System.Logger.Level.DEBUG, "Resumable session expired: {0}", closed);
+                this.discard(session);
+            }
+        }, this.window.toMillis(), TimeUnit.MILLISECONDS);
+        session.setExpiration(expiration);
+    }
+
+    /**
+     * Discard a session, it can not be resumed anymore.
+     *
+     * @param session Session to discard.
+     */
+    void discard(final NettySession session) {
+        session.getResumeToken().ifPresent(t -> this.sessions.remove(t, session));
+        session.cancelExpiration();
+        session.discarded();
+        session.getJournal().close();
+    }
+
+    /**
+     * Discard every session and close their journal, called when the server stops, before the event loops are shut
+     * down and the pending expirations are cancelled.
+     */
+    void close() {
+        this.stopped = true;
+        this.sessions.values().forEach(this::discard);
+    }
+
+    /**
+     * @return The number of resumable sessions, connected or not.
+     */
+    int size() {
+        return this.sessions.size();
+    }
+}
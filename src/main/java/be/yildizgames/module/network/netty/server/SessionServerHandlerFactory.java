@@ -29,6 +29,8 @@ import be.yildizgames.module.network.netty.HandlerFactory;
 import be.yildizgames.module.network.server.SessionManager;
 import io.netty.channel.ChannelHandler;
 
+import java.util.concurrent.Executor;
+
 /**
  * @author Grégory Van den Borre
  */
@@ -38,18 +40,147 @@ public final class SessionServerHandlerFactory implements HandlerFactory {
 
     private final DecoderEncoder codec;
 
+    /**
+     * True if the STRING codec uses length prefixed binary frames, or if the WEBSOCKET codec forwards the binary
+     * frames to the listener.
+     */
+    private final boolean binary;
+
+    /**
+     * Listener for the binary messages, null to process them as text.
+     */
+    private final SessionBinaryListener binaryListener;
+
+    /**
+     * Listener receiving the binary websocket message fragments, null to assemble them for the binary listener.
+     */
+    private final SessionStreamListener streamListener;
+
+    /**
+     * Listener notified when a session writability changes, null if none.
+     */
+    private final SessionWritabilityListener writabilityListener;
+
+    /**
+     * Executor processing the messages out of the I/O threads, null to process them on the I/O threads.
+     */
+    private final Executor dispatchExecutor;
+
+    /**
+     * Metrics of the dispatched messages.
+     */
+    private final DispatchMetrics dispatchMetrics = new DispatchMetrics();
+
+    /**
+     * Number of queued messages of a session pausing its channel reads.
+     */
+    private final int maxQueuedMessages;
+
+    /**
+     * Number of queued messages of a session resuming its channel reads.
+     */
+    private final int resumeQueuedMessages;
+
+    /**
+     * Store keeping the resumable sessions, null if sessions are not resumable.
+     */
+    private final SessionResumeStore resumeStore;
+
+    /**
+     * Registry indexing the connected sessions, null if none.
+     */
+    private final SessionRegistry registry;
+
     public SessionServerHandlerFactory(final SessionManager sessionManager, final DecoderEncoder codec) {
+        this(sessionManager, codec, false, null, null, null, null, SessionDispatcher.DEFAULT_MAX_QUEUED_MESSAGES,
+                SessionDispatcher.DEFAULT_RESUME_QUEUED_MESSAGES, null, null);
+    }
+
+    /**
+     * @param sessionManager Session manager receiving the text messages.
+     * @param codec Codec used by the server.
+     * @param binary True if the STRING codec uses length prefixed binary frames, or if the WEBSOCKET codec forwards
+     *               the binary frames to the listener.
+     * @param binaryListener Listener for the binary messages, null to process them as text.
+     * @param writabilityListener Listener notified when a session writability changes, null if none.
+     * @param dispatchExecutor Executor processing the messages in order for each session, null to process them on the
+     *                         I/O threads.
+     */
+    public SessionServerHandlerFactory(final SessionManager sessionManager, final DecoderEncoder codec, final boolean binary,
+                                       final SessionBinaryListener binaryListener,
+                                       final SessionWritabilityListener writabilityListener,
+                                       final Executor dispatchExecutor) {
+        this(sessionManager, codec, binary, binaryListener, null, writabilityListener, dispatchExecutor,
+                SessionDispatcher.DEFAULT_MAX_QUEUED_MESSAGES, SessionDispatcher.DEFAULT_RESUME_QUEUED_MESSAGES,
+                null, null);
+    }
+
+    /**
+     * @param sessionManager Session manager receiving the text messages.
+     * @param codec Codec used by the server.
+     * @param binary True if the STRING codec uses length prefixed binary frames, or if the WEBSOCKET codec forwards
+     *               the binary frames to the listener.
+     * @param binaryListener Listener for the binary messages, null to process them as text.
+     * @param streamListener Listener receiving the binary websocket message fragments, null to assemble them for the
+     *                       binary listener.
+     * @param writabilityListener Listener notified when a session writability changes, null if none.
+     * @param dispatchExecutor Executor processing the messages in order for each session, null to process them on the
+     *                         I/O threads.
+     * @param maxQueuedMessages Number of queued messages of a session pausing its channel reads.
+     * @param resumeQueuedMessages Number of queued messages of a session resuming its channel reads.
+     * @param resumeStore Store keeping the resumable sessions, null if sessions are not resumable.
+     * @param registry Registry indexing the connected sessions, null if none.
+     */
+    SessionServerHandlerFactory(final SessionManager sessionManager, final DecoderEncoder codec, final boolean binary,
+                                final SessionBinaryListener binaryListener,
+                                final SessionStreamListener streamListener,
+                                final SessionWritabilityListener writabilityListener,
+                                final Executor dispatchExecutor, final int maxQueuedMessages,
+                                final int resumeQueuedMessages, final SessionResumeStore resumeStore,
+                                final SessionRegistry registry) {
         super();
+        this.maxQueuedMessages = maxQueuedMessages;
+        this.resumeQueuedMessages = resumeQueuedMessages;
+        this.streamListener = streamListener;
+        this.resumeStore = resumeStore;
+        this.registry = registry;
+        this.dispatchExecutor = dispatchExecutor;
         this.codec = codec;
+        this.binary = binary;
+        this.binaryListener = binaryListener;
+        this.writabilityListener = writabilityListener;
         this.handler = new SessionServerHandler(sessionManager);
     }
 
     @Override
     public ChannelHandler create() {
+        AbstractSessionMessageHandler<?> result;
         if(this.codec == DecoderEncoder.WEBSOCKET) {
-            return new SessionWebSocketMessageHandler(this.handler);
+            result = this.binary
+                    ? new SessionWebSocketMessageHandler(this.handler, this.binaryListener, this.streamListener)
+                    : new SessionWebSocketMessageHandler(this.handler);
+        } else if(this.binary && this.codec == DecoderEncoder.STRING) {
+            result = new SessionBinaryMessageHandler(this.handler, this.binaryListener);
+        } else {
+            result = new SessionMessageHandler(this.handler);
         }
-        return new SessionMessageHandler(this.handler);
+        result.setWritabilityListener(this.writabilityListener);
+        result.setRegistry(this.registry);
+        if (!this.binary) {
+            result.setResumeStore(this.resumeStore);
+        }
+        if (this.dispatchExecutor != null) {
+            result.setDispatcher(new SessionDispatcher(this.dispatchExecutor, this.dispatchMetrics,
+                    this.maxQueuedMessages, this.resumeQueuedMessages));
+        }
+        return result;
+    }
+
+    /**
+     * @return The metrics of the messages dispatched to the executor.
+     */
+    public DispatchMetrics getDispatchMetrics() {
+        return this.dispatchMetrics;
     }
 
     @Override
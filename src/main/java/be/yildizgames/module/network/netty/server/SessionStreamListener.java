@@ -0,0 +1,50 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import be.yildizgames.module.network.server.Session;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Receive the fragments of the binary websocket messages as they arrive, instead of the assembled message, so a large
+ * message never needs more memory than a fragment.
+ *
+ * @author Grégory Van den Borre
+ */
+@FunctionalInterface
+public interface SessionStreamListener {
+
+    /**
+     * Called on the I/O thread, or on the dispatch executor if any, for every fragment of a binary message, in order.
+     * The buffer is released once this method returns, it must be retained to be used later.
+     * A message is complete when its last fragment is received, a message that is not complete when the session
+     * is closed is lost.
+     *
+     * @param session Session sending the message.
+     * @param fragment Fragment payload.
+     * @param last True if this fragment is the last one of the message.
+     */
+    void fragmentReceived(Session session, ByteBuf fragment, boolean last);
+}
@@ -25,16 +25,70 @@
 package be.yildizgames.module.network.netty.server;
 
 import be.yildizgames.module.network.AbstractHandler;
+import be.yildizgames.module.network.netty.MessageSizeLimiter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 
 /**
+ * Receive the websocket data frames, text frames are processed as messages, binary frame payloads are forwarded to the
+ * binary listener without conversion.
+ * The fragments of a binary message are not aggregated by the pipeline, they are forwarded one by one to the stream
+ * listener if any, or assembled here, up to the maximum message size, for the binary listener.
+ *
  * @author Grégory Van den Borre
  */
-public class SessionWebSocketMessageHandler extends AbstractSessionMessageHandler<TextWebSocketFrame>{
+public class SessionWebSocketMessageHandler extends AbstractSessionMessageHandler<WebSocketFrame>{
+
+    /**
+     * Listener receiving the binary frames, null to process them as text.
+     */
+    private final SessionBinaryListener binaryListener;
+
+    /**
+     * Listener receiving the binary message fragments, null to assemble them for the binary listener.
+     */
+    private final SessionStreamListener streamListener;
+
+    /**
+     * Fragments of the binary message being assembled, null if none.
+     */
+    private CompositeByteBuf fragments;
+
+    /**
+     * True while the fragments of a binary message are received.
+     */
+    private boolean binaryFragments;
 
     public SessionWebSocketMessageHandler(AbstractHandler handler) {
+        this(handler, null);
+    }
+
+    /**
+     * @param handler Handler processing the text messages.
+     * @param binaryListener Listener receiving the binary frames, null to process them as text.
+     */
+    public SessionWebSocketMessageHandler(final AbstractHandler handler, final SessionBinaryListener binaryListener) {
+        this(handler, binaryListener, null);
+    }
+
+    /**
+     * @param handler Handler processing the text messages.
+     * @param binaryListener Listener receiving the binary frames, null to process them as text.
+     * @param streamListener Listener receiving the binary message fragments, null to assemble them for the binary
+     *                       listener.
+     */
+    public SessionWebSocketMessageHandler(final AbstractHandler handler, final SessionBinaryListener binaryListener,
+                                          final SessionStreamListener streamListener) {
         super(handler);
+        this.binaryListener = binaryListener;
+        this.streamListener = streamListener;
     }
 
     @Override
@@ -43,7 +97,76 @@ public class SessionWebSocketMessageHandler extends AbstractSessionMessageHandle
     }
 
     @Override
-    public void channelRead0(final ChannelHandlerContext ctx, final TextWebSocketFrame message) throws Exception {
-        this.getSession().ifPresent(s -> this.handler.processMessages(s, message.text()));
+    public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt) throws Exception {
+        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+            // Nothing can be sent to the client before the handshake is complete.
+            this.sessionReady();
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelRead0(final ChannelHandlerContext ctx, final WebSocketFrame message) throws Exception {
+        if (message instanceof TextWebSocketFrame) {
+            this.getSession().ifPresent(s -> this.processMessages(s, ((TextWebSocketFrame) message).text()));
+        } else if (message instanceof BinaryWebSocketFrame) {
+            if (message.isFinalFragment()) {
+                this.getSession().ifPresent(s -> this.processBinaryMessage(s, message.content(), this.binaryListener));
+            } else {
+                this.binaryFragments = true;
+                this.fragmentReceived(ctx, message.content(), false);
+            }
+        } else if (message instanceof ContinuationWebSocketFrame && this.binaryFragments) {
+            this.binaryFragments = !message.isFinalFragment();
+            this.fragmentReceived(ctx, message.content(), message.isFinalFragment());
+        }
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        this.releaseFragments();
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * Forward a binary message fragment to the stream listener, or add it to the message being assembled.
+     *
+     * @param ctx Channel context.
+     * @param fragment Fragment payload, released by the caller.
+     * @param last True if this fragment is the last one of the message.
+     */
+    private void fragmentReceived(final ChannelHandlerContext ctx, final ByteBuf fragment, final boolean last) {
+        if (this.streamListener != null) {
+            this.getSession().ifPresent(s -> this.processFragment(s, fragment, last, this.streamListener));
+            return;
+        }
+        if (this.fragments == null) {
+            this.fragments = ctx.alloc().compositeBuffer();
+        }
+        this.fragments.addComponent(true, fragment.retain());
+        MessageSizeLimiter limiter = ctx.pipeline().get(MessageSizeLimiter.class);
+        if (limiter != null && this.fragments.readableBytes() > limiter.getMaxMessageSize()) {
+            int length = this.fragments.readableBytes();
+            this.releaseFragments();
+            this.binaryFragments = false;
+            limiter.rejected();
+            throw new TooLongFrameException("Message length exceeds " + limiter.getMaxMessageSize() + ": " + length);
+        }
+        if (last) {
+            CompositeByteBuf message = this.fragments;
+            this.fragments = null;
+            try {
+                this.getSession().ifPresent(s -> this.processBinaryMessage(s, message, this.binaryListener));
+            } finally {
+                message.release();
+            }
+        }
+    }
+
+    private void releaseFragments() {
+        if (this.fragments != null) {
+            this.fragments.release();
+            this.fragments = null;
+        }
     }
 }
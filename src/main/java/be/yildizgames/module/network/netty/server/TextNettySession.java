@@ -25,6 +25,7 @@
 package be.yildizgames.module.network.netty.server;
 
 import be.yildizgames.common.model.PlayerId;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 
 /**
@@ -43,7 +44,12 @@ public class TextNettySession extends NettySession {
     }
 
     @Override
-    protected void write(Channel ch, String message) {
-        ch.writeAndFlush(message);
+    protected String buildMessage(String message) {
+        return message;
+    }
+
+    @Override
+    protected ByteBuf buildBinaryMessage(ByteBuf message) {
+        return message;
     }
 }
@@ -25,7 +25,9 @@
 package be.yildizgames.module.network.netty.server;
 
 import be.yildizgames.common.model.PlayerId;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 
 /**
@@ -44,7 +46,12 @@ public class WebSocketNettySession extends NettySession {
     }
 
     @Override
-    protected void write(Channel ch, String message) {
-        ch.writeAndFlush(new TextWebSocketFrame(message));
+    protected TextWebSocketFrame buildMessage(String message) {
+        return new TextWebSocketFrame(message);
+    }
+
+    @Override
+    protected BinaryWebSocketFrame buildBinaryMessage(ByteBuf message) {
+        return new BinaryWebSocketFrame(message);
     }
 }
@@ -26,12 +26,21 @@ module be.yildizgames.module.network.netty {
 
     requires be.yildizgames.module.network;
     requires be.yildizgames.common.model;
+    requires io.netty.buffer;
     requires io.netty.codec;
     requires io.netty.codec.http;
     requires io.netty.transport;
+    requires io.netty.transport.classes.epoll;
+    requires io.netty.transport.unix.common;
+    requires static io.netty.incubator.transport.classes.io_uring;
     requires io.netty.handler;
     requires io.netty.common;
+    requires java.management;
 
+    exports be.yildizgames.module.network.netty;
+    exports be.yildizgames.module.network.netty.client;
     exports be.yildizgames.module.network.netty.factory;
+    exports be.yildizgames.module.network.netty.load;
+    exports be.yildizgames.module.network.netty.server;
 
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler.ClientHandshakeStateEvent;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class HeartbeatHandlerTest {
+
+    private static final String BEGIN = MessageSeparation.MESSAGE_BEGIN;
+
+    private static final String END = MessageSeparation.MESSAGE_END;
+
+    @Nested
+    class Text {
+
+        @Test
+        void pingAnswered() {
+            EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(false, Duration.ZERO));
+            channel.writeInbound("\u0001ping:42");
+            Assertions.assertEquals(BEGIN + "\u0001pong:42" + END, channel.readOutbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void pongMeasured() {
+            HeartbeatHandler handler = new HeartbeatHandler(false, Duration.ZERO);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            Assertions.assertTrue(handler.getRoundTripTime().isEmpty());
+            long sent = System.nanoTime() - Duration.ofMillis(5).toNanos();
+            channel.writeInbound(BEGIN + "\u0001pong:" + sent + END);
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertTrue(handler.getRoundTripTime().orElseThrow().toMillis() >= 5);
+            Assertions.assertEquals(handler.getRoundTripTime(), handler.getLastRoundTripTime());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void invalidPong() {
+            HeartbeatHandler handler = new HeartbeatHandler(false, Duration.ZERO);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            channel.writeInbound("\u0001pong:abc");
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertTrue(handler.getRoundTripTime().isEmpty());
+        }
+
+        @Test
+        void otherMessages() {
+            EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(false, Duration.ZERO));
+            channel.writeInbound("hello");
+            Assertions.assertEquals("hello", channel.readInbound());
+            Assertions.assertNull(channel.readOutbound());
+        }
+
+        @Test
+        void interval() throws InterruptedException {
+            EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(false, Duration.ofMillis(10)));
+            Thread.sleep(30);
+            channel.runScheduledPendingTasks();
+            String ping = channel.readOutbound();
+            Assertions.assertTrue(ping.startsWith(BEGIN + "\u0001ping:"));
+            channel.close();
+        }
+    }
+
+    @Nested
+    class WebSocket {
+
+        @Test
+        void pingAnswered() {
+            EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(true, Duration.ZERO));
+            channel.writeInbound(new PingWebSocketFrame(Unpooled.wrappedBuffer(new byte[]{1, 2, 3})));
+            PongWebSocketFrame pong = channel.readOutbound();
+            Assertions.assertArrayEquals(new byte[]{1, 2, 3}, ByteBufUtil.getBytes(pong.content()));
+            pong.release();
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void pongMeasured() {
+            HeartbeatHandler handler = new HeartbeatHandler(true, Duration.ZERO);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            ByteBuf content = Unpooled.buffer(Long.BYTES).writeLong(System.nanoTime());
+            channel.writeInbound(new PongWebSocketFrame(content));
+            Assertions.assertTrue(handler.getRoundTripTime().isPresent());
+            Assertions.assertEquals(0, content.refCnt());
+            Assertions.assertNull(channel.readInbound());
+        }
+
+        @Test
+        void writerIdle() {
+            EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(true, Duration.ZERO));
+            channel.pipeline().fireUserEventTriggered(ClientHandshakeStateEvent.HANDSHAKE_COMPLETE);
+            channel.pipeline().fireUserEventTriggered(IdleStateEvent.WRITER_IDLE_STATE_EVENT);
+            PingWebSocketFrame ping = channel.readOutbound();
+            Assertions.assertEquals(Long.BYTES, ping.content().readableBytes());
+            ping.release();
+        }
+
+        @Test
+        void noPingBeforeHandshake() {
+            EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(true, Duration.ZERO));
+            channel.pipeline().fireUserEventTriggered(IdleStateEvent.WRITER_IDLE_STATE_EVENT);
+            Assertions.assertNull(channel.readOutbound());
+            channel.pipeline().fireUserEventTriggered(ClientHandshakeStateEvent.HANDSHAKE_COMPLETE);
+            channel.pipeline().fireUserEventTriggered(IdleStateEvent.WRITER_IDLE_STATE_EVENT);
+            PingWebSocketFrame ping = channel.readOutbound();
+            Assertions.assertNotNull(ping);
+            ping.release();
+        }
+    }
+
+    @Nested
+    class Idle {
+
+        @Test
+        void readerIdleCloses() {
+            EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(false, Duration.ZERO));
+            channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+            Assertions.assertFalse(channel.isOpen());
+        }
+
+        @Test
+        void writerIdlePings() {
+            EmbeddedChannel channel = new EmbeddedChannel(new HeartbeatHandler(false, Duration.ZERO));
+            channel.pipeline().fireUserEventTriggered(IdleStateEvent.WRITER_IDLE_STATE_EVENT);
+            String ping = channel.readOutbound();
+            Assertions.assertTrue(ping.startsWith(BEGIN + "\u0001ping:"));
+            Assertions.assertTrue(ping.endsWith(END));
+            Assertions.assertTrue(channel.isOpen());
+        }
+    }
+}
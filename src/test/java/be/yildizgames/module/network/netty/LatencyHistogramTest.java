@@ -0,0 +1,160 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class LatencyHistogramTest {
+
+    @Nested
+    class Buckets {
+
+        @Test
+        void exactUnderSubBuckets() {
+            for (long value = 0; value < 16; value++) {
+                Assertions.assertEquals(value, LatencyHistogram.value(LatencyHistogram.index(value)));
+            }
+        }
+
+        @Test
+        void powerOfTwoBoundaries() {
+            for (int exponent = 4; exponent < 63; exponent++) {
+                long lowest = 1L << exponent;
+                int index = LatencyHistogram.index(lowest);
+                Assertions.assertEquals(lowest, LatencyHistogram.value(index));
+                Assertions.assertEquals(index - 1, LatencyHistogram.index(lowest - 1));
+            }
+        }
+
+        @Test
+        void subBucketBoundaries() {
+            // From 32, every sub bucket covers 2 values.
+            Assertions.assertEquals(LatencyHistogram.index(32), LatencyHistogram.index(33));
+            Assertions.assertEquals(LatencyHistogram.index(32) + 1, LatencyHistogram.index(34));
+            Assertions.assertEquals(34, LatencyHistogram.value(LatencyHistogram.index(35)));
+        }
+
+        @Test
+        void relativeError() {
+            for (long value = 16; value < 1_000_000; value += 7) {
+                long lower = LatencyHistogram.value(LatencyHistogram.index(value));
+                Assertions.assertTrue(lower <= value);
+                Assertions.assertTrue(value - lower <= value / 16, () -> "value " + lower);
+            }
+        }
+
+        @Test
+        void maxValue() {
+            int index = LatencyHistogram.index(Long.MAX_VALUE);
+            Assertions.assertTrue(LatencyHistogram.value(index) <= Long.MAX_VALUE);
+            Assertions.assertTrue(index > LatencyHistogram.index(Long.MAX_VALUE / 2));
+            Assertions.assertEquals(Long.MAX_VALUE, LatencyHistogram.highest(index));
+        }
+
+        @Test
+        void highest() {
+            for (long value = 0; value < 1_000_000; value += 7) {
+                int index = LatencyHistogram.index(value);
+                long highest = LatencyHistogram.highest(index);
+                Assertions.assertEquals(index, LatencyHistogram.index(highest));
+                Assertions.assertEquals(index + 1, LatencyHistogram.index(highest + 1));
+                Assertions.assertTrue(highest - value <= value / 16);
+            }
+        }
+    }
+
+    @Nested
+    class Record {
+
+        @Test
+        void statistics() {
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (long value = 1; value <= 100; value++) {
+                histogram.record(value);
+            }
+            Assertions.assertEquals(100, histogram.getCount());
+            Assertions.assertEquals(100, histogram.getMax());
+            Assertions.assertEquals(50, histogram.getMean());
+            long median = histogram.getPercentile(50);
+            Assertions.assertTrue(median >= 50 && median <= 50 + 50 / 16, () -> "median " + median);
+            // The upper bound of the bucket holding 100 is capped by the largest value.
+            Assertions.assertEquals(100, histogram.getPercentile(100));
+        }
+
+        @Test
+        void negativeAsZero() {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(-5);
+            Assertions.assertEquals(1, histogram.getCount());
+            Assertions.assertEquals(0, histogram.getMax());
+            Assertions.assertEquals(0, histogram.getPercentile(100));
+        }
+
+        @Test
+        void reset() {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(10);
+            histogram.reset();
+            Assertions.assertEquals(0, histogram.getCount());
+            Assertions.assertEquals(0, histogram.getMax());
+            Assertions.assertEquals(0, histogram.getPercentile(99));
+        }
+
+        @Test
+        void terminatedThread() throws InterruptedException {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(10);
+            Thread thread = new Thread(() -> {
+                histogram.record(20);
+                histogram.record(1000);
+            });
+            thread.start();
+            thread.join();
+            Assertions.assertEquals(3, histogram.getCount());
+            Assertions.assertEquals(1000, histogram.getMax());
+            // Still counted once the recorder is folded.
+            Assertions.assertEquals(3, histogram.getCount());
+            Assertions.assertEquals(LatencyHistogram.highest(LatencyHistogram.index(20)), histogram.getPercentile(66));
+        }
+
+        @Test
+        void severalHistograms() {
+            LatencyHistogram first = new LatencyHistogram();
+            LatencyHistogram second = new LatencyHistogram();
+            first.record(10);
+            second.record(1000);
+            second.record(2000);
+            Assertions.assertEquals(1, first.getCount());
+            Assertions.assertEquals(10, first.getMax());
+            Assertions.assertEquals(2, second.getCount());
+            Assertions.assertEquals(2000, second.getMax());
+        }
+    }
+}
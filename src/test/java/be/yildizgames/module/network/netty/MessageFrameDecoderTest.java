@@ -0,0 +1,224 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class MessageFrameDecoderTest {
+
+    private static final String BEGIN = MessageSeparation.MESSAGE_BEGIN;
+
+    private static final String END = MessageSeparation.MESSAGE_END;
+
+    private static ByteBuf bytes(final String value) {
+        return Unpooled.copiedBuffer(value, CharsetUtil.UTF_8);
+    }
+
+    private static String repeat(final int length) {
+        return "a".repeat(length);
+    }
+
+    @Nested
+    class StripDelimiters {
+
+        @Test
+        void singleMessage() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(true, 1024));
+            channel.writeInbound(bytes(BEGIN + "hello" + END));
+            Assertions.assertEquals("hello", channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void severalMessagesInOneRead() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(true, 1024));
+            channel.writeInbound(bytes(BEGIN + "first" + END + BEGIN + "second" + END));
+            Assertions.assertEquals("first", channel.readInbound());
+            Assertions.assertEquals("second", channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void messageSplitOverTwoReads() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(true, 1024));
+            channel.writeInbound(bytes(BEGIN + "hel"));
+            Assertions.assertNull(channel.readInbound());
+            channel.writeInbound(bytes("lo" + END));
+            Assertions.assertEquals("hello", channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void delimiterSplitOverTwoReads() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(true, 1024));
+            channel.writeInbound(bytes(BEGIN + "hello" + END.substring(0, 1)));
+            Assertions.assertNull(channel.readInbound());
+            channel.writeInbound(bytes(END.substring(1) + BEGIN + "world" + END));
+            Assertions.assertEquals("hello", channel.readInbound());
+            Assertions.assertEquals("world", channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void oneByteAtATime() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(true, 1024));
+            byte[] message = (BEGIN + "hello" + END + BEGIN + "é" + END).getBytes(CharsetUtil.UTF_8);
+            for (byte b : message) {
+                channel.writeInbound(Unpooled.wrappedBuffer(new byte[]{b}));
+            }
+            Assertions.assertEquals("hello", channel.readInbound());
+            Assertions.assertEquals("é", channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void everyBeginRemoved() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(true, 1024));
+            channel.writeInbound(bytes(BEGIN + BEGIN + "hel" + BEGIN + "lo" + END + "world" + END));
+            Assertions.assertEquals("hello", channel.readInbound());
+            Assertions.assertEquals("world", channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void emptyMessageIgnored() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(true, 1024));
+            channel.writeInbound(bytes(BEGIN + END + BEGIN + "hello" + END));
+            Assertions.assertEquals("hello", channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+    }
+
+    @Nested
+    class KeepDelimiters {
+
+        @Test
+        void severalMessagesInOneRead() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(false, 1024));
+            channel.writeInbound(bytes(BEGIN + "first" + END + BEGIN + "second" + END));
+            Assertions.assertEquals(BEGIN + "first" + END, channel.readInbound());
+            Assertions.assertEquals(BEGIN + "second" + END, channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void delimiterSplitOverTwoReads() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(false, 1024));
+            channel.writeInbound(bytes(BEGIN + "hello" + END.substring(0, 1)));
+            Assertions.assertNull(channel.readInbound());
+            channel.writeInbound(bytes(END.substring(1)));
+            Assertions.assertEquals(BEGIN + "hello" + END, channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void maxLengthIncludesDelimiters() {
+            String message = BEGIN + "hello" + END;
+            int length = message.getBytes(CharsetUtil.UTF_8).length;
+            EmbeddedChannel accepting = new EmbeddedChannel(new MessageFrameDecoder(false, length));
+            accepting.writeInbound(bytes(message));
+            Assertions.assertEquals(message, accepting.readInbound());
+            EmbeddedChannel rejecting = new EmbeddedChannel(new MessageFrameDecoder(false, length - 1));
+            Assertions.assertThrows(TooLongFrameException.class, () -> rejecting.writeInbound(bytes(message)));
+        }
+    }
+
+    @Nested
+    class TooLongFrame {
+
+        @Test
+        void splitOverTwoReads() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(true, 16));
+            Assertions.assertThrows(TooLongFrameException.class, () -> channel.writeInbound(bytes(BEGIN + repeat(20))));
+            channel.writeInbound(bytes(repeat(10) + END + BEGIN + "ok" + END));
+            Assertions.assertEquals("ok", channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void delimiterSplitWhileDiscarding() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(true, 16));
+            String endStart = END.substring(0, 1);
+            String endRest = END.substring(1);
+            Assertions.assertThrows(TooLongFrameException.class,
+                    () -> channel.writeInbound(bytes(BEGIN + repeat(20) + endStart)));
+            channel.writeInbound(bytes(endRest + BEGIN + "ok" + END));
+            Assertions.assertEquals("ok", channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void completeInOneRead() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(true, 16));
+            Assertions.assertThrows(TooLongFrameException.class,
+                    () -> channel.writeInbound(bytes(BEGIN + repeat(20) + END + BEGIN + "ok" + END)));
+            // The following message is kept and decoded with the next read.
+            channel.writeInbound(Unpooled.EMPTY_BUFFER);
+            Assertions.assertEquals("ok", channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void discardedOnlyOnce() {
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageFrameDecoder(true, 16));
+            Assertions.assertThrows(TooLongFrameException.class, () -> channel.writeInbound(bytes(BEGIN + repeat(20))));
+            channel.writeInbound(bytes(repeat(20)));
+            channel.writeInbound(bytes(repeat(20)));
+            Assertions.assertNull(channel.readInbound());
+            channel.writeInbound(bytes(END + BEGIN + "ok" + END));
+            Assertions.assertEquals("ok", channel.readInbound());
+            Assertions.assertFalse(channel.finish());
+        }
+    }
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void zeroLength() {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new MessageFrameDecoder(true, 0));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.netty.client.SimpleClientHandlerFactory;
+import be.yildizgames.module.network.netty.client.SimpleClientNetty;
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class MessageSizeLimiterTest {
+
+    private static final String BEGIN = MessageSeparation.MESSAGE_BEGIN;
+
+    private static final String END = MessageSeparation.MESSAGE_END;
+
+    private static ByteBuf bytes(final String value) {
+        return Unpooled.copiedBuffer(value, CharsetUtil.UTF_8);
+    }
+
+    private static int size(final String value) {
+        return value.getBytes(CharsetUtil.UTF_8).length;
+    }
+
+    @Nested
+    class TextFrames {
+
+        @Test
+        void messageOverSeveralFrames() {
+            InboundSizeMetrics metrics = new InboundSizeMetrics();
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageSizeLimiter(size(BEGIN + "1234") + 2, metrics));
+            channel.writeInbound(new TextWebSocketFrame(BEGIN + "1234"));
+            TextWebSocketFrame accepted = channel.readInbound();
+            accepted.release();
+            Assertions.assertThrows(TooLongFrameException.class,
+                    () -> channel.writeInbound(new TextWebSocketFrame("56789")));
+            Assertions.assertEquals(1, metrics.getRejectedMessages());
+        }
+
+        @Test
+        void delimiterResets() {
+            InboundSizeMetrics metrics = new InboundSizeMetrics();
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageSizeLimiter(8, metrics));
+            channel.writeInbound(new TextWebSocketFrame("12345"));
+            channel.writeInbound(new TextWebSocketFrame("6" + END + "1234"));
+            channel.writeInbound(new TextWebSocketFrame("5" + END));
+            Assertions.assertEquals(0, metrics.getRejectedMessages());
+            for (int i = 0; i < 3; i++) {
+                TextWebSocketFrame frame = channel.readInbound();
+                frame.release();
+            }
+            Assertions.assertFalse(channel.finish());
+        }
+    }
+
+    @Nested
+    class Client {
+
+        @Test
+        void incompleteMessageTooLong() {
+            InboundSizeMetrics metrics = new InboundSizeMetrics();
+            SimpleClientNetty client = new SimpleClientNetty(new Bootstrap());
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageSizeLimiter(size(BEGIN + "1234") + 2, metrics),
+                    new SimpleClientHandlerFactory(client, DecoderEncoder.STRING, true).create());
+            channel.writeInbound(bytes(BEGIN + "1234"));
+            Assertions.assertTrue(channel.isOpen());
+            channel.writeInbound(bytes("56789"));
+            Assertions.assertEquals(1, metrics.getRejectedMessages());
+            Assertions.assertFalse(channel.isOpen());
+        }
+
+        @Test
+        void completeMessages() {
+            InboundSizeMetrics metrics = new InboundSizeMetrics();
+            SimpleClientNetty client = new SimpleClientNetty(new Bootstrap());
+            EmbeddedChannel channel = new EmbeddedChannel(new MessageSizeLimiter(8, metrics),
+                    new SimpleClientHandlerFactory(client, DecoderEncoder.STRING, true).create());
+            for (int i = 0; i < 4; i++) {
+                channel.writeInbound(bytes(BEGIN + "1234" + END));
+            }
+            Assertions.assertEquals(0, metrics.getRejectedMessages());
+            Assertions.assertTrue(channel.isOpen());
+        }
+    }
+}
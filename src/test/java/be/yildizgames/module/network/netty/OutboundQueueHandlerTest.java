@@ -0,0 +1,219 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class OutboundQueueHandlerTest {
+
+    private static ByteBuf bytes(final String value) {
+        return Unpooled.copiedBuffer(value, CharsetUtil.UTF_8);
+    }
+
+    private static String read(final EmbeddedChannel channel) {
+        ByteBuf result = channel.readOutbound();
+        if (result == null) {
+            return null;
+        }
+        try {
+            return result.toString(CharsetUtil.UTF_8);
+        } finally {
+            result.release();
+        }
+    }
+
+    /**
+     * Change the channel writability as the write buffer water mark would, and run the notification.
+     */
+    private static void writable(final EmbeddedChannel channel, final boolean writable) {
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, writable);
+        channel.runPendingTasks();
+    }
+
+    @Nested
+    class Write {
+
+        @Test
+        void writable() {
+            OutboundQueueHandler handler = new OutboundQueueHandler(2, SlowConsumerPolicy.DISCONNECT);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            channel.writeAndFlush(bytes("a"));
+            Assertions.assertEquals("a", read(channel));
+            Assertions.assertEquals(0, handler.getQueueDepth());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void notWritable() {
+            OutboundQueueHandler handler = new OutboundQueueHandler(2, SlowConsumerPolicy.DISCONNECT);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            writable(channel, false);
+            channel.writeAndFlush(bytes("a"));
+            channel.writeAndFlush(bytes("b"));
+            Assertions.assertNull(read(channel));
+            Assertions.assertEquals(2, handler.getQueueDepth());
+            writable(channel, true);
+            Assertions.assertEquals("a", read(channel));
+            Assertions.assertEquals("b", read(channel));
+            Assertions.assertEquals(0, handler.getQueueDepth());
+            Assertions.assertEquals(0, handler.getDroppedMessages());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void lowPriorityUnwrapped() {
+            EmbeddedChannel channel = new EmbeddedChannel(new OutboundQueueHandler(2, SlowConsumerPolicy.DISCONNECT));
+            channel.writeAndFlush(new LowPriorityMessage(bytes("a")));
+            Assertions.assertEquals("a", read(channel));
+            Assertions.assertFalse(channel.finish());
+        }
+    }
+
+    @Nested
+    class DropOldest {
+
+        @Test
+        void queueFull() {
+            OutboundQueueHandler handler = new OutboundQueueHandler(2, SlowConsumerPolicy.DROP_OLDEST);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            writable(channel, false);
+            ByteBuf oldest = bytes("a");
+            ChannelFuture dropped = channel.writeAndFlush(oldest);
+            channel.writeAndFlush(bytes("b"));
+            channel.writeAndFlush(bytes("c"));
+            Assertions.assertTrue(dropped.isDone());
+            Assertions.assertFalse(dropped.isSuccess());
+            Assertions.assertEquals(0, oldest.refCnt());
+            Assertions.assertEquals(1, handler.getDroppedMessages());
+            Assertions.assertEquals(2, handler.getQueueDepth());
+            Assertions.assertTrue(channel.isActive());
+            writable(channel, true);
+            Assertions.assertEquals("b", read(channel));
+            Assertions.assertEquals("c", read(channel));
+            Assertions.assertFalse(channel.finish());
+        }
+    }
+
+    @Nested
+    class DropLowPriority {
+
+        @Test
+        void lowPriorityQueued() {
+            OutboundQueueHandler handler = new OutboundQueueHandler(2, SlowConsumerPolicy.DROP_LOW_PRIORITY);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            writable(channel, false);
+            channel.writeAndFlush(bytes("a"));
+            ByteBuf low = bytes("b");
+            ChannelFuture dropped = channel.writeAndFlush(new LowPriorityMessage(low));
+            channel.writeAndFlush(bytes("c"));
+            Assertions.assertFalse(dropped.isSuccess());
+            Assertions.assertEquals(0, low.refCnt());
+            Assertions.assertEquals(1, handler.getDroppedMessages());
+            Assertions.assertTrue(channel.isActive());
+            writable(channel, true);
+            Assertions.assertEquals("a", read(channel));
+            Assertions.assertEquals("c", read(channel));
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void newMessageLowPriority() {
+            OutboundQueueHandler handler = new OutboundQueueHandler(2, SlowConsumerPolicy.DROP_LOW_PRIORITY);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            writable(channel, false);
+            channel.writeAndFlush(bytes("a"));
+            channel.writeAndFlush(bytes("b"));
+            ChannelFuture dropped = channel.writeAndFlush(new LowPriorityMessage(bytes("c")));
+            Assertions.assertFalse(dropped.isSuccess());
+            Assertions.assertTrue(channel.isActive());
+            writable(channel, true);
+            Assertions.assertEquals("a", read(channel));
+            Assertions.assertEquals("b", read(channel));
+            Assertions.assertNull(read(channel));
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void noLowPriority() {
+            OutboundQueueHandler handler = new OutboundQueueHandler(2, SlowConsumerPolicy.DROP_LOW_PRIORITY);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            writable(channel, false);
+            ChannelFuture first = channel.writeAndFlush(bytes("a"));
+            channel.writeAndFlush(bytes("b"));
+            channel.writeAndFlush(bytes("c"));
+            Assertions.assertFalse(first.isSuccess());
+            Assertions.assertEquals(3, handler.getDroppedMessages());
+            Assertions.assertFalse(channel.isActive());
+        }
+    }
+
+    @Nested
+    class Disconnect {
+
+        @Test
+        void queueFull() {
+            OutboundQueueHandler handler = new OutboundQueueHandler(2, SlowConsumerPolicy.DISCONNECT);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            writable(channel, false);
+            ByteBuf first = bytes("a");
+            ChannelFuture firstFuture = channel.writeAndFlush(first);
+            channel.writeAndFlush(bytes("b"));
+            ChannelFuture last = channel.writeAndFlush(bytes("c"));
+            Assertions.assertFalse(firstFuture.isSuccess());
+            Assertions.assertFalse(last.isSuccess());
+            Assertions.assertEquals(0, first.refCnt());
+            Assertions.assertEquals(3, handler.getDroppedMessages());
+            Assertions.assertEquals(0, handler.getQueueDepth());
+            Assertions.assertFalse(channel.isActive());
+            Assertions.assertNull(read(channel));
+        }
+
+        @Test
+        void channelClosed() {
+            OutboundQueueHandler handler = new OutboundQueueHandler(2, SlowConsumerPolicy.DISCONNECT);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            writable(channel, false);
+            ByteBuf pending = bytes("a");
+            ChannelFuture future = channel.writeAndFlush(pending);
+            channel.close();
+            Assertions.assertTrue(future.cause() instanceof ClosedChannelException);
+            Assertions.assertEquals(0, pending.refCnt());
+            Assertions.assertEquals(0, handler.getDroppedMessages());
+            Assertions.assertEquals(0, handler.getQueueDepth());
+        }
+    }
+}
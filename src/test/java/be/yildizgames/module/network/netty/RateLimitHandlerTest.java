@@ -0,0 +1,247 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.DecoderEncoder;
+import be.yildizgames.module.network.netty.server.SessionServerHandlerFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class RateLimitHandlerTest {
+
+    private static EmbeddedChannel channel(final RateLimitHandler handler) {
+        return new EmbeddedChannel(handler, handler.getMessageLimiter());
+    }
+
+    private static ByteBuf bytes(final int length) {
+        return Unpooled.wrappedBuffer(new byte[length]);
+    }
+
+    private static void drain(final Queue<Runnable> submitted) {
+        while (!submitted.isEmpty()) {
+            submitted.remove().run();
+        }
+    }
+
+    private static void waitScheduled(final EmbeddedChannel channel) throws InterruptedException {
+        long delay = channel.runScheduledPendingTasks();
+        Assertions.assertTrue(delay > 0);
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(delay) + 1);
+        channel.runScheduledPendingTasks();
+    }
+
+    @Nested
+    class Drop {
+
+        @Test
+        void messages() {
+            RateLimitMetrics metrics = new RateLimitMetrics();
+            EmbeddedChannel channel = channel(new RateLimitHandler(2, 0, RateLimitPolicy.DROP, metrics));
+            channel.writeInbound("a", "b", "c");
+            Assertions.assertEquals("a", channel.readInbound());
+            Assertions.assertEquals("b", channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertEquals(1, metrics.getDroppedMessages());
+            Assertions.assertTrue(channel.isActive());
+            Assertions.assertTrue(channel.config().isAutoRead());
+        }
+
+        @Test
+        void bytes() {
+            RateLimitMetrics metrics = new RateLimitMetrics();
+            EmbeddedChannel channel = channel(new RateLimitHandler(0, 10, RateLimitPolicy.DROP, metrics));
+            ByteBuf accepted = RateLimitHandlerTest.bytes(8);
+            ByteBuf dropped = RateLimitHandlerTest.bytes(8);
+            channel.writeInbound(accepted);
+            channel.writeInbound(dropped);
+            ByteBuf received = channel.readInbound();
+            Assertions.assertSame(accepted, received);
+            received.release();
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertEquals(0, dropped.refCnt());
+            Assertions.assertEquals(1, metrics.getDroppedMessages());
+            Assertions.assertTrue(channel.isActive());
+        }
+
+        @Test
+        void textBytes() {
+            RateLimitMetrics metrics = new RateLimitMetrics();
+            EmbeddedChannel channel = channel(new RateLimitHandler(0, 3, RateLimitPolicy.DROP, metrics));
+            // 2 encoded bytes for a single character.
+            channel.writeInbound("\u00e9", "\u00e9");
+            Assertions.assertEquals("\u00e9", channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertEquals(1, metrics.getDroppedMessages());
+        }
+
+        @Test
+        void fragmentedMessage() {
+            RateLimitMetrics metrics = new RateLimitMetrics();
+            EmbeddedChannel channel = channel(new RateLimitHandler(1, 0, RateLimitPolicy.DROP, metrics));
+            channel.writeInbound(new BinaryWebSocketFrame(false, 0, RateLimitHandlerTest.bytes(4)));
+            channel.writeInbound(new ContinuationWebSocketFrame(false, 0, RateLimitHandlerTest.bytes(4)));
+            channel.writeInbound(new ContinuationWebSocketFrame(true, 0, RateLimitHandlerTest.bytes(4)));
+            ContinuationWebSocketFrame dropped = new ContinuationWebSocketFrame(true, 0, RateLimitHandlerTest.bytes(4));
+            channel.writeInbound(new BinaryWebSocketFrame(false, 0, RateLimitHandlerTest.bytes(4)));
+            channel.writeInbound(dropped);
+            // Every fragment of the accepted message is received, none of the dropped one.
+            for (int i = 0; i < 3; i++) {
+                WebSocketFrame frame = channel.readInbound();
+                Assertions.assertEquals(i == 2, frame.isFinalFragment());
+                frame.release();
+            }
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertEquals(0, dropped.refCnt());
+            Assertions.assertEquals(1, metrics.getDroppedMessages());
+        }
+    }
+
+    @Nested
+    class Delay {
+
+        @Test
+        void messages() throws InterruptedException {
+            RateLimitMetrics metrics = new RateLimitMetrics();
+            EmbeddedChannel channel = channel(new RateLimitHandler(20, 0, RateLimitPolicy.DELAY, metrics));
+            for (int i = 0; i < 21; i++) {
+                channel.writeInbound("m" + i);
+            }
+            for (int i = 0; i < 21; i++) {
+                Assertions.assertEquals("m" + i, channel.readInbound());
+            }
+            Assertions.assertFalse(channel.config().isAutoRead());
+            Assertions.assertEquals(1, metrics.getPausedReads());
+            Assertions.assertEquals(0, metrics.getDroppedMessages());
+            long delay = channel.runScheduledPendingTasks();
+            Assertions.assertTrue(delay > 0);
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(delay) + 1);
+            channel.runScheduledPendingTasks();
+            Assertions.assertTrue(channel.config().isAutoRead());
+            Assertions.assertTrue(channel.isActive());
+        }
+
+        @Test
+        void bytes() {
+            RateLimitMetrics metrics = new RateLimitMetrics();
+            EmbeddedChannel channel = channel(new RateLimitHandler(0, 10, RateLimitPolicy.DELAY, metrics));
+            ByteBuf message = RateLimitHandlerTest.bytes(15);
+            channel.writeInbound(message);
+            ByteBuf received = channel.readInbound();
+            Assertions.assertSame(message, received);
+            received.release();
+            Assertions.assertFalse(channel.config().isAutoRead());
+            Assertions.assertEquals(1, metrics.getPausedReads());
+            Assertions.assertTrue(metrics.getPausedNanos() > 0);
+        }
+    }
+
+    @Nested
+    class Disconnect {
+
+        @Test
+        void messages() {
+            RateLimitMetrics metrics = new RateLimitMetrics();
+            EmbeddedChannel channel = channel(new RateLimitHandler(2, 0, RateLimitPolicy.DISCONNECT, metrics));
+            channel.writeInbound("a", "b", "c");
+            Assertions.assertEquals("a", channel.readInbound());
+            Assertions.assertEquals("b", channel.readInbound());
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertFalse(channel.isActive());
+            Assertions.assertEquals(1, metrics.getDisconnections());
+        }
+
+        @Test
+        void bytes() {
+            RateLimitMetrics metrics = new RateLimitMetrics();
+            EmbeddedChannel channel = channel(new RateLimitHandler(0, 10, RateLimitPolicy.DISCONNECT, metrics));
+            ByteBuf message = RateLimitHandlerTest.bytes(15);
+            channel.writeInbound(message);
+            Assertions.assertNull(channel.readInbound());
+            Assertions.assertEquals(0, message.refCnt());
+            Assertions.assertFalse(channel.isActive());
+            Assertions.assertEquals(1, metrics.getDisconnections());
+        }
+    }
+
+    @Nested
+    class DelayWithDispatcher {
+
+        /**
+         * Rate limited channel dispatching its messages to an executor, paused by both once 1024 messages are queued.
+         */
+        private EmbeddedChannel channel(final RateLimitMetrics metrics, final SessionServerHandlerFactory factory) {
+            RateLimitHandler handler = new RateLimitHandler(5, 0, RateLimitPolicy.DELAY, metrics);
+            EmbeddedChannel channel = new EmbeddedChannel(handler, handler.getMessageLimiter(), factory.create());
+            for (int i = 0; i < 1024; i++) {
+                channel.writeInbound(RateLimitHandlerTest.bytes(1));
+            }
+            Assertions.assertEquals(1, metrics.getPausedReads());
+            Assertions.assertEquals(1, factory.getDispatchMetrics().getPausedReads());
+            Assertions.assertFalse(channel.config().isAutoRead());
+            return channel;
+        }
+
+        @Test
+        void rateLimitResumedFirst() throws InterruptedException {
+            Queue<Runnable> submitted = new ArrayDeque<>();
+            SessionServerHandlerFactory factory = new SessionServerHandlerFactory(null, DecoderEncoder.STRING, true,
+                    (s, m) -> {}, null, submitted::add);
+            EmbeddedChannel channel = this.channel(new RateLimitMetrics(), factory);
+            waitScheduled(channel);
+            // The dispatch queue is still full.
+            Assertions.assertFalse(channel.config().isAutoRead());
+            drain(submitted);
+            Assertions.assertTrue(channel.config().isAutoRead());
+            Assertions.assertEquals(1024, factory.getDispatchMetrics().getDispatchedMessages());
+        }
+
+        @Test
+        void dispatcherResumedFirst() throws InterruptedException {
+            Queue<Runnable> submitted = new ArrayDeque<>();
+            SessionServerHandlerFactory factory = new SessionServerHandlerFactory(null, DecoderEncoder.STRING, true,
+                    (s, m) -> {}, null, submitted::add);
+            EmbeddedChannel channel = this.channel(new RateLimitMetrics(), factory);
+            drain(submitted);
+            // The rate limit delay is not elapsed.
+            Assertions.assertFalse(channel.config().isAutoRead());
+            waitScheduled(channel);
+            Assertions.assertTrue(channel.config().isAutoRead());
+        }
+    }
+}
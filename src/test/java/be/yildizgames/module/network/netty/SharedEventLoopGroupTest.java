@@ -0,0 +1,118 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import be.yildizgames.module.network.client.Client;
+import be.yildizgames.module.network.netty.factory.NettyFactory;
+import io.netty.channel.EventLoopGroup;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class SharedEventLoopGroupTest {
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void negativeThreads() {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new SharedEventLoopGroup(NettyTransport.NIO, -1));
+        }
+    }
+
+    @Nested
+    class Acquire {
+
+        @Test
+        void sameGroup() {
+            SharedEventLoopGroup shared = new SharedEventLoopGroup(NettyTransport.NIO, 1);
+            EventLoopGroup first = shared.acquire();
+            EventLoopGroup second = shared.acquire();
+            Assertions.assertSame(first, second);
+            Assertions.assertEquals(2, shared.getReferences());
+            shared.release();
+            shared.release();
+        }
+
+        @Test
+        void afterShutdown() {
+            SharedEventLoopGroup shared = new SharedEventLoopGroup(NettyTransport.NIO, 1);
+            EventLoopGroup first = shared.acquire();
+            shared.release();
+            EventLoopGroup second = shared.acquire();
+            Assertions.assertNotSame(first, second);
+            Assertions.assertFalse(second.isShuttingDown());
+            shared.release();
+        }
+    }
+
+    @Nested
+    class Release {
+
+        @Test
+        void lastOwner() {
+            SharedEventLoopGroup shared = new SharedEventLoopGroup(NettyTransport.NIO, 1);
+            EventLoopGroup group = shared.acquire();
+            shared.acquire();
+            shared.release();
+            Assertions.assertFalse(group.isShuttingDown());
+            Assertions.assertEquals(1, shared.getReferences());
+            shared.release();
+            Assertions.assertTrue(group.isShuttingDown());
+            Assertions.assertEquals(0, shared.getReferences());
+        }
+
+        @Test
+        void moreThanAcquired() {
+            SharedEventLoopGroup shared = new SharedEventLoopGroup(NettyTransport.NIO, 1);
+            shared.release();
+            Assertions.assertEquals(0, shared.getReferences());
+            EventLoopGroup group = shared.acquire();
+            Assertions.assertEquals(1, shared.getReferences());
+            shared.release();
+            Assertions.assertTrue(group.isShuttingDown());
+        }
+    }
+
+    @Nested
+    class ClientClose {
+
+        @Test
+        void releasedOnce() {
+            SharedEventLoopGroup shared = new SharedEventLoopGroup(NettyTransport.NIO, 1);
+            Client first = NettyFactory.createSimpleClientNetty(shared);
+            Client second = NettyFactory.createSimpleClientNetty(shared);
+            Assertions.assertEquals(2, shared.getReferences());
+            first.close();
+            first.close();
+            Assertions.assertEquals(1, shared.getReferences());
+            second.close();
+            Assertions.assertEquals(0, shared.getReferences());
+        }
+    }
+}
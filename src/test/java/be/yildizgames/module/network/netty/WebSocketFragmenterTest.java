@@ -0,0 +1,106 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class WebSocketFragmenterTest {
+
+    private static ByteBuf bytes(final String value) {
+        return Unpooled.copiedBuffer(value, CharsetUtil.UTF_8);
+    }
+
+    /**
+     * Read the next outbound frame, check its type and final flag, and return its content.
+     */
+    private static String read(final EmbeddedChannel channel, final Class<? extends WebSocketFrame> type,
+                               final boolean last) {
+        WebSocketFrame frame = channel.readOutbound();
+        try {
+            Assertions.assertTrue(type.isInstance(frame), "Unexpected frame: " + frame);
+            Assertions.assertEquals(last, frame.isFinalFragment());
+            return frame.content().toString(CharsetUtil.UTF_8);
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Nested
+    class Write {
+
+        @Test
+        void smallFrame() {
+            EmbeddedChannel channel = new EmbeddedChannel(new WebSocketFragmenter(4));
+            channel.writeAndFlush(new TextWebSocketFrame("abcd"));
+            Assertions.assertEquals("abcd", read(channel, TextWebSocketFrame.class, true));
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void textFrame() {
+            EmbeddedChannel channel = new EmbeddedChannel(new WebSocketFragmenter(4));
+            ChannelFuture future = channel.writeAndFlush(new TextWebSocketFrame("abcdefghij"));
+            Assertions.assertEquals("abcd", read(channel, TextWebSocketFrame.class, false));
+            Assertions.assertEquals("efgh", read(channel, ContinuationWebSocketFrame.class, false));
+            Assertions.assertEquals("ij", read(channel, ContinuationWebSocketFrame.class, true));
+            Assertions.assertTrue(future.isSuccess());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void binaryFrame() {
+            EmbeddedChannel channel = new EmbeddedChannel(new WebSocketFragmenter(4));
+            ByteBuf content = bytes("abcdefgh");
+            channel.writeAndFlush(new BinaryWebSocketFrame(content));
+            Assertions.assertEquals("abcd", read(channel, BinaryWebSocketFrame.class, false));
+            Assertions.assertEquals("efgh", read(channel, ContinuationWebSocketFrame.class, true));
+            // The fragments are slices, the content is released with the last one.
+            Assertions.assertEquals(0, content.refCnt());
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void alreadyFragmented() {
+            EmbeddedChannel channel = new EmbeddedChannel(new WebSocketFragmenter(4));
+            channel.writeAndFlush(new BinaryWebSocketFrame(false, 0, bytes("abcdefgh")));
+            Assertions.assertEquals("abcdefgh", read(channel, BinaryWebSocketFrame.class, false));
+            Assertions.assertFalse(channel.finish());
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.client;
+
+import be.yildizgames.module.network.netty.NettyTransport;
+import be.yildizgames.module.network.netty.SharedEventLoopGroup;
+import be.yildizgames.module.network.netty.factory.NettyFactory;
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class ClientNettyTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    private static final long TIMEOUT = 5;
+
+    private SharedEventLoopGroup group;
+
+    @BeforeEach
+    void createGroup() {
+        this.group = new SharedEventLoopGroup(NettyTransport.NIO, 1);
+    }
+
+    @AfterEach
+    void checkReleased() {
+        Assertions.assertEquals(0, this.group.getReferences());
+    }
+
+    private static ServerSocket server() throws IOException {
+        return new ServerSocket(0, 1, InetAddress.getByName(HOST));
+    }
+
+    /**
+     * @return A local port nothing listens on.
+     */
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = server()) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String message(final String content) {
+        return MessageSeparation.MESSAGE_BEGIN + content + MessageSeparation.MESSAGE_END;
+    }
+
+    private static String read(final InputStream in, final int length) throws IOException {
+        byte[] result = in.readNBytes(length);
+        if (result.length < length) {
+            throw new EOFException();
+        }
+        return new String(result, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the websocket handshake request, and accept it.
+     */
+    private static void acceptHandshake(final InputStream in, final OutputStream out) throws Exception {
+        StringBuilder request = new StringBuilder();
+        while (request.indexOf("\r\n\r\n") < 0) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            request.append((char) b);
+        }
+        String key = request.toString().lines()
+                .filter(l -> l.toLowerCase(Locale.ROOT).startsWith("sec-websocket-key:"))
+                .map(l -> l.substring(l.indexOf(':') + 1).trim())
+                .findFirst()
+                .orElseThrow();
+        byte[] digest = MessageDigest.getInstance("SHA-1")
+                .digest((key + "258EAFA5-E914-47DA-95CA-C5AB0DC85B11").getBytes(StandardCharsets.US_ASCII));
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + Base64.getEncoder().encodeToString(digest) + "\r\n\r\n";
+        out.write(response.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Read a short masked text frame sent by the client.
+     */
+    private static String readTextFrame(final InputStream in) throws IOException {
+        int opcode = in.read() & 0x0F;
+        Assertions.assertEquals(1, opcode);
+        int length = in.read() & 0x7F;
+        byte[] mask = in.readNBytes(4);
+        byte[] payload = in.readNBytes(length);
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (payload[i] ^ mask[i % 4]);
+        }
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    @Nested
+    class Connect {
+
+        @Test
+        void refusedKeepsGroupUntilClosed() throws Exception {
+            ClientNetty<?> client = (ClientNetty<?>) NettyFactory.createSimpleClientNetty(group);
+            client.connectImpl(HOST, closedPort());
+            Assertions.assertEquals(1, group.getReferences());
+            client.close();
+            Assertions.assertEquals(0, group.getReferences());
+        }
+
+        @Test
+        void closedTwice() {
+            ClientNetty<?> first = (ClientNetty<?>) NettyFactory.createSimpleClientNetty(group);
+            ClientNetty<?> second = (ClientNetty<?>) NettyFactory.createSimpleClientNetty(group);
+            first.close();
+            first.close();
+            // The second close of the first client must not release the reference of the second one.
+            Assertions.assertEquals(1, group.getReferences());
+            second.close();
+        }
+    }
+
+    @Nested
+    class ConnectAsync {
+
+        @Test
+        void connected() throws Exception {
+            ClientNetty<?> client = (ClientNetty<?>) NettyFactory.createSimpleClientNetty(group);
+            try (ServerSocket server = server()) {
+                CompletableFuture<Void> future = client.connectAsync(HOST, server.getLocalPort());
+                try (Socket ignored = server.accept()) {
+                    future.get(TIMEOUT, TimeUnit.SECONDS);
+                }
+            } finally {
+                client.close();
+            }
+        }
+
+        @Test
+        void refused() throws Exception {
+            ClientNetty<?> client = (ClientNetty<?>) NettyFactory.createSimpleClientNetty(group);
+            try {
+                CompletableFuture<Void> future = client.connectAsync(HOST, closedPort());
+                Assertions.assertThrows(ExecutionException.class, () -> future.get(TIMEOUT, TimeUnit.SECONDS));
+                Assertions.assertEquals(1, group.getReferences());
+            } finally {
+                client.close();
+            }
+        }
+
+        @Test
+        void webSocketClosedBeforeHandshake() throws Exception {
+            ClientNetty<?> client = (ClientNetty<?>) NettyFactory.createClientNetty(group);
+            try (ServerSocket server = server()) {
+                CompletableFuture<Void> future = client.connectAsync(HOST, server.getLocalPort());
+                // The handshake request is never answered.
+                server.accept().close();
+                Assertions.assertThrows(ExecutionException.class, () -> future.get(TIMEOUT, TimeUnit.SECONDS));
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Nested
+    class PendingWrites {
+
+        @Test
+        void flushedInOrderOnceConnected() throws Exception {
+            ClientNetty<?> client = (ClientNetty<?>) NettyFactory.createSimpleClientNetty(group);
+            try (ServerSocket server = server()) {
+                CompletableFuture<Void> future = client.connectAsync(HOST, server.getLocalPort());
+                client.sendMessage(message("first"));
+                client.sendMessage(message("second"));
+                try (Socket socket = server.accept()) {
+                    future.get(TIMEOUT, TimeUnit.SECONDS);
+                    client.sendMessage(message("third"));
+                    String expected = message("first") + message("second") + message("third");
+                    Assertions.assertEquals(expected,
+                            read(socket.getInputStream(), expected.getBytes(StandardCharsets.UTF_8).length));
+                }
+            } finally {
+                client.close();
+            }
+        }
+
+        @Test
+        void flushedAfterHandshake() throws Exception {
+            ClientNetty<?> client = (ClientNetty<?>) NettyFactory.createClientNetty(group);
+            try (ServerSocket server = server()) {
+                CompletableFuture<Void> future = client.connectAsync(HOST, server.getLocalPort());
+                client.sendMessage("hello");
+                try (Socket socket = server.accept()) {
+                    InputStream in = socket.getInputStream();
+                    // Nothing but the handshake request is sent before the response.
+                    acceptHandshake(in, socket.getOutputStream());
+                    future.get(TIMEOUT, TimeUnit.SECONDS);
+                    Assertions.assertEquals("hello", readTextFrame(in));
+                }
+            } finally {
+                client.close();
+            }
+        }
+
+        @Test
+        void discardedWhenRefused() throws Exception {
+            ClientNetty<?> client = (ClientNetty<?>) NettyFactory.createSimpleClientNetty(group);
+            try {
+                CompletableFuture<Void> future = client.connectAsync(HOST, closedPort());
+                client.sendMessage(message("lost"));
+                Assertions.assertThrows(ExecutionException.class, () -> future.get(TIMEOUT, TimeUnit.SECONDS));
+                try (ServerSocket server = server()) {
+                    client.connectAsync(HOST, server.getLocalPort());
+                    client.sendMessage(message("sent"));
+                    try (Socket socket = server.accept()) {
+                        String expected = message("sent");
+                        Assertions.assertEquals(expected,
+                                read(socket.getInputStream(), expected.getBytes(StandardCharsets.UTF_8).length));
+                    }
+                }
+            } finally {
+                client.close();
+            }
+        }
+    }
+}
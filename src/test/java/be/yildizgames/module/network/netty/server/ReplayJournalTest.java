@@ -0,0 +1,153 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class ReplayJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private static String message(final String content) {
+        return MessageSeparation.MESSAGE_BEGIN + content + MessageSeparation.MESSAGE_END;
+    }
+
+    private static int length(final String message) {
+        return message.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static List<String> replay(final ReplayJournal journal, final long received) {
+        List<String> result = new ArrayList<>();
+        journal.replay(received, result::add);
+        return result;
+    }
+
+    @Nested
+    class Replay {
+
+        @Test
+        void fromCount() {
+            ReplayJournal journal = new ReplayJournal(directory, 1024);
+            journal.append(message("m1"));
+            journal.append(message("m2"));
+            journal.append(message("m3"));
+            Assertions.assertEquals(List.of(message("m2"), message("m3")), replay(journal, 1));
+            Assertions.assertEquals(List.of(), replay(journal, 3));
+            journal.close();
+        }
+
+        @Test
+        void fromCountInsideASend() {
+            ReplayJournal journal = new ReplayJournal(directory, 1024);
+            journal.append(message("m1") + message("m2") + message("m3"));
+            Assertions.assertEquals(List.of(message("m3")), replay(journal, 2));
+            journal.close();
+        }
+
+        @Test
+        void canReplay() {
+            ReplayJournal journal = new ReplayJournal(directory, 1024);
+            journal.append(message("m1"));
+            journal.append(message("m2"));
+            Assertions.assertTrue(journal.canReplay(0));
+            Assertions.assertTrue(journal.canReplay(2));
+            Assertions.assertFalse(journal.canReplay(3));
+            journal.close();
+        }
+
+        @Test
+        void withoutDelimiterNotJournaled() {
+            ReplayJournal journal = new ReplayJournal(directory, 1024);
+            journal.append("no delimiter");
+            Assertions.assertTrue(journal.canReplay(0));
+            Assertions.assertFalse(journal.canReplay(1));
+            journal.close();
+        }
+
+        @Test
+        void closed() {
+            ReplayJournal journal = new ReplayJournal(directory, 1024);
+            journal.append(message("m1"));
+            journal.close();
+            Assertions.assertFalse(journal.canReplay(0));
+            Assertions.assertFalse(journal.canReplay(1));
+        }
+    }
+
+    @Nested
+    class WrapAround {
+
+        @Test
+        void oldestOverwritten() {
+            int size = length(message("m1"));
+            ReplayJournal journal = new ReplayJournal(directory, size * 3 + size / 2);
+            journal.append(message("m1"));
+            journal.append(message("m2"));
+            journal.append(message("m3"));
+            journal.append(message("m4"));
+            Assertions.assertFalse(journal.canReplay(0));
+            Assertions.assertTrue(journal.canReplay(1));
+            Assertions.assertEquals(List.of(message("m2"), message("m3"), message("m4")), replay(journal, 1));
+            journal.close();
+        }
+
+        @Test
+        void severalTurns() {
+            int size = length(message("m1"));
+            ReplayJournal journal = new ReplayJournal(directory, size * 3 + size / 2);
+            for (int i = 1; i <= 9; i++) {
+                journal.append(message("m" + i));
+            }
+            Assertions.assertFalse(journal.canReplay(5));
+            Assertions.assertTrue(journal.canReplay(6));
+            Assertions.assertEquals(List.of(message("m7"), message("m8"), message("m9")), replay(journal, 6));
+            Assertions.assertEquals(List.of(message("m9")), replay(journal, 8));
+            journal.close();
+        }
+
+        @Test
+        void messageLargerThanJournal() {
+            ReplayJournal journal = new ReplayJournal(directory, 8);
+            journal.append(message("a message longer than the journal"));
+            Assertions.assertFalse(journal.canReplay(0));
+            Assertions.assertTrue(journal.canReplay(1));
+            Assertions.assertEquals(List.of(), replay(journal, 1));
+            journal.close();
+        }
+    }
+}
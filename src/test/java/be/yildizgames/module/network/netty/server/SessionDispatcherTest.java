@@ -0,0 +1,211 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class SessionDispatcherTest {
+
+    /**
+     * Executor running the submitted dispatchers only when asked.
+     */
+    private static final class ManualExecutor implements Executor {
+
+        private final Queue<Runnable> submitted = new ArrayDeque<>();
+
+        /**
+         * True to reject the submitted dispatchers, as a shut down or saturated executor.
+         */
+        private boolean rejecting;
+
+        @Override
+        public void execute(final Runnable command) {
+            if (this.rejecting) {
+                throw new RejectedExecutionException("test");
+            }
+            this.submitted.add(command);
+        }
+
+        private int size() {
+            return this.submitted.size();
+        }
+
+        private void runNext() {
+            this.submitted.remove().run();
+        }
+    }
+
+    @Nested
+    class Dispatch {
+
+        @Test
+        void inOrder() {
+            ManualExecutor executor = new ManualExecutor();
+            DispatchMetrics metrics = new DispatchMetrics();
+            SessionDispatcher dispatcher = new SessionDispatcher(executor, metrics);
+            List<Integer> processed = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                int value = i;
+                dispatcher.dispatch(() -> processed.add(value));
+            }
+            Assertions.assertEquals(1, executor.size());
+            Assertions.assertEquals(3, metrics.getQueueDepth());
+            executor.runNext();
+            Assertions.assertEquals(List.of(0, 1, 2), processed);
+            Assertions.assertEquals(0, executor.size());
+            Assertions.assertEquals(0, metrics.getQueueDepth());
+            Assertions.assertEquals(3, metrics.getDispatchedMessages());
+        }
+
+        @Test
+        void batch() {
+            ManualExecutor executor = new ManualExecutor();
+            SessionDispatcher dispatcher = new SessionDispatcher(executor, new DispatchMetrics());
+            List<Integer> processed = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int value = i;
+                dispatcher.dispatch(() -> processed.add(value));
+            }
+            executor.runNext();
+            Assertions.assertEquals(64, processed.size());
+            // Submitted again for the remaining messages.
+            Assertions.assertEquals(1, executor.size());
+            executor.runNext();
+            Assertions.assertEquals(100, processed.size());
+            Assertions.assertEquals(99, processed.get(99));
+            Assertions.assertEquals(0, executor.size());
+        }
+
+        @Test
+        void error() {
+            ManualExecutor executor = new ManualExecutor();
+            SessionDispatcher dispatcher = new SessionDispatcher(executor, new DispatchMetrics());
+            List<String> processed = new ArrayList<>();
+            dispatcher.dispatch(() -> {
+                throw new IllegalStateException("test");
+            });
+            dispatcher.dispatch(() -> processed.add("after"));
+            executor.runNext();
+            Assertions.assertEquals(List.of("after"), processed);
+        }
+    }
+
+    @Nested
+    class BackPressure {
+
+        @Test
+        void pauseAndResume() {
+            ManualExecutor executor = new ManualExecutor();
+            DispatchMetrics metrics = new DispatchMetrics();
+            SessionDispatcher dispatcher = new SessionDispatcher(executor, metrics);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            dispatcher.setChannel(channel);
+            for (int i = 0; i < 1023; i++) {
+                dispatcher.dispatch(() -> {});
+            }
+            Assertions.assertTrue(channel.config().isAutoRead());
+            dispatcher.dispatch(() -> {});
+            Assertions.assertFalse(channel.config().isAutoRead());
+            Assertions.assertEquals(1, metrics.getPausedReads());
+            // 64 messages per batch, reads resume once 512 messages at most are queued.
+            for (int i = 0; i < 7; i++) {
+                executor.runNext();
+            }
+            Assertions.assertFalse(channel.config().isAutoRead());
+            executor.runNext();
+            Assertions.assertTrue(channel.config().isAutoRead());
+            while (executor.size() > 0) {
+                executor.runNext();
+            }
+            Assertions.assertEquals(1024, metrics.getDispatchedMessages());
+            Assertions.assertEquals(1, metrics.getPausedReads());
+        }
+
+        @Test
+        void withoutChannel() {
+            ManualExecutor executor = new ManualExecutor();
+            DispatchMetrics metrics = new DispatchMetrics();
+            SessionDispatcher dispatcher = new SessionDispatcher(executor, metrics);
+            for (int i = 0; i < 2000; i++) {
+                dispatcher.dispatch(() -> {});
+            }
+            Assertions.assertEquals(0, metrics.getPausedReads());
+        }
+
+        @Test
+        void configuredBounds() {
+            ManualExecutor executor = new ManualExecutor();
+            DispatchMetrics metrics = new DispatchMetrics();
+            SessionDispatcher dispatcher = new SessionDispatcher(executor, metrics, 4, 1);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            dispatcher.setChannel(channel);
+            for (int i = 0; i < 3; i++) {
+                dispatcher.dispatch(() -> {});
+            }
+            Assertions.assertTrue(channel.config().isAutoRead());
+            dispatcher.dispatch(() -> {});
+            Assertions.assertFalse(channel.config().isAutoRead());
+            executor.runNext();
+            Assertions.assertTrue(channel.config().isAutoRead());
+            Assertions.assertEquals(4, metrics.getDispatchedMessages());
+        }
+
+        @Test
+        void rejected() {
+            ManualExecutor executor = new ManualExecutor();
+            DispatchMetrics metrics = new DispatchMetrics();
+            SessionDispatcher dispatcher = new SessionDispatcher(executor, metrics, 2, 0);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            dispatcher.setChannel(channel);
+            List<Integer> processed = new ArrayList<>();
+            executor.rejecting = true;
+            dispatcher.dispatch(() -> processed.add(0));
+            dispatcher.dispatch(() -> processed.add(1));
+            // Paused by the full queue, resumed since no run is scheduled.
+            Assertions.assertEquals(1, metrics.getPausedReads());
+            Assertions.assertTrue(channel.config().isAutoRead());
+            executor.rejecting = false;
+            dispatcher.dispatch(() -> processed.add(2));
+            Assertions.assertEquals(1, executor.size());
+            Assertions.assertFalse(channel.config().isAutoRead());
+            executor.runNext();
+            Assertions.assertEquals(List.of(0, 1, 2), processed);
+            Assertions.assertTrue(channel.config().isAutoRead());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class SessionGroupTest {
+
+    private static SessionGroup group() {
+        return new SessionGroup("test", UnpooledByteBufAllocator.DEFAULT);
+    }
+
+    @Nested
+    class Add {
+
+        @Test
+        void twice() {
+            SessionGroup group = group();
+            EmbeddedChannel channel = new EmbeddedChannel();
+            NettySession session = (NettySession) NettySessionFactory.createAnonymousText(channel);
+            Assertions.assertTrue(group.add(session));
+            Assertions.assertFalse(group.add(session));
+            Assertions.assertEquals(1, group.size());
+        }
+
+        @Test
+        void closedSessionRemoved() {
+            SessionGroup group = group();
+            EmbeddedChannel text = new EmbeddedChannel();
+            EmbeddedChannel webSocket = new EmbeddedChannel();
+            group.add(NettySessionFactory.createAnonymousText(text));
+            group.add(NettySessionFactory.createAnonymousWebSocket(webSocket));
+            Assertions.assertEquals(2, group.size());
+            text.close();
+            Assertions.assertEquals(1, group.size());
+            webSocket.close();
+            Assertions.assertEquals(0, group.size());
+        }
+    }
+
+    @Nested
+    class Broadcast {
+
+        @Test
+        void mixedChannels() {
+            SessionGroup group = group();
+            EmbeddedChannel text = new EmbeddedChannel();
+            EmbeddedChannel otherText = new EmbeddedChannel();
+            EmbeddedChannel webSocket = new EmbeddedChannel();
+            group.add(NettySessionFactory.createAnonymousText(text));
+            group.add(NettySessionFactory.createAnonymousText(otherText));
+            group.add(NettySessionFactory.createAnonymousWebSocket(webSocket));
+            group.broadcast("hello");
+            ByteBuf first = text.readOutbound();
+            ByteBuf second = otherText.readOutbound();
+            TextWebSocketFrame frame = webSocket.readOutbound();
+            Assertions.assertEquals("hello", first.toString(CharsetUtil.UTF_8));
+            Assertions.assertEquals("hello", second.toString(CharsetUtil.UTF_8));
+            Assertions.assertEquals("hello", frame.text());
+            // Both text channels share the same encoded buffer, released with the last duplicate.
+            Assertions.assertFalse(first.release());
+            Assertions.assertTrue(second.release());
+            Assertions.assertTrue(frame.release());
+            Assertions.assertNull(text.readOutbound());
+            Assertions.assertNull(webSocket.readOutbound());
+        }
+
+        @Test
+        void removedSession() {
+            SessionGroup group = group();
+            EmbeddedChannel channel = new EmbeddedChannel();
+            NettySession session = (NettySession) NettySessionFactory.createAnonymousText(channel);
+            group.add(session);
+            Assertions.assertTrue(group.remove(session));
+            group.broadcast("hello");
+            Assertions.assertNull(channel.readOutbound());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import be.yildizgames.common.model.PlayerId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class SessionRegistryTest {
+
+    private static final PlayerId PLAYER = PlayerId.WORLD;
+
+    @TempDir
+    Path directory;
+
+    private static NettySession session(final EmbeddedChannel channel) {
+        return (NettySession) NettySessionFactory.createAnonymousText(channel);
+    }
+
+    @Nested
+    class Register {
+
+        @Test
+        void byChannel() {
+            SessionRegistry registry = new SessionRegistry();
+            EmbeddedChannel channel = new EmbeddedChannel();
+            NettySession session = session(channel);
+            registry.register(session);
+            Assertions.assertSame(session, registry.get(channel).orElseThrow());
+            Assertions.assertEquals(1, registry.size());
+            registry.unregister(session, channel);
+            Assertions.assertTrue(registry.get(channel).isEmpty());
+            Assertions.assertEquals(0, registry.size());
+        }
+    }
+
+    @Nested
+    class Bind {
+
+        @Test
+        void byPlayer() {
+            SessionRegistry registry = new SessionRegistry();
+            NettySession session = session(new EmbeddedChannel());
+            registry.register(session);
+            registry.bind(PLAYER, session);
+            Assertions.assertSame(session, registry.get(PLAYER).orElseThrow());
+            Assertions.assertEquals(1, registry.getPlayerCount());
+        }
+
+        @Test
+        void replaced() {
+            SessionRegistry registry = new SessionRegistry();
+            NettySession first = session(new EmbeddedChannel());
+            NettySession second = session(new EmbeddedChannel());
+            registry.bind(PLAYER, first);
+            registry.bind(PLAYER, second);
+            Assertions.assertSame(second, registry.get(PLAYER).orElseThrow());
+            // Unbinding the replaced session keeps the new one.
+            registry.unbind(first);
+            Assertions.assertSame(second, registry.get(PLAYER).orElseThrow());
+            Assertions.assertEquals(1, registry.getPlayerCount());
+        }
+
+        @Test
+        void unboundWhenClosed() {
+            SessionRegistry registry = new SessionRegistry();
+            EmbeddedChannel channel = new EmbeddedChannel();
+            NettySession session = session(channel);
+            registry.register(session);
+            registry.bind(PLAYER, session);
+            registry.unregister(session, channel);
+            Assertions.assertTrue(registry.get(PLAYER).isEmpty());
+            Assertions.assertEquals(0, registry.getPlayerCount());
+        }
+    }
+
+    @Nested
+    class Resume {
+
+        @Test
+        void keptWhileResumable() {
+            SessionRegistry registry = new SessionRegistry();
+            SessionResumeStore store = new SessionResumeStore(directory, 1024, Duration.ofMinutes(1));
+            EmbeddedChannel first = new EmbeddedChannel();
+            NettySession session = session(first);
+            String token = store.register(session);
+            registry.register(session);
+            registry.bind(PLAYER, session);
+
+            registry.unregister(session, first);
+            store.disconnected(session, first);
+            Assertions.assertEquals(0, registry.size());
+            Assertions.assertSame(session, registry.get(PLAYER).orElseThrow());
+
+            EmbeddedChannel second = new EmbeddedChannel();
+            store.resume(token, 0).orElseThrow().resume(second, 0);
+            registry.register(session);
+            Assertions.assertSame(session, registry.get(second).orElseThrow());
+            Assertions.assertSame(session, registry.get(PLAYER).orElseThrow());
+            Assertions.assertEquals(1, registry.size());
+            store.discard(session);
+        }
+
+        @Test
+        void unboundWhenDiscarded() {
+            SessionRegistry registry = new SessionRegistry();
+            SessionResumeStore store = new SessionResumeStore(directory, 1024, Duration.ofMinutes(1));
+            EmbeddedChannel channel = new EmbeddedChannel();
+            NettySession session = session(channel);
+            store.register(session);
+            registry.register(session);
+            registry.bind(PLAYER, session);
+            registry.unregister(session, channel);
+            store.discard(session);
+            Assertions.assertTrue(registry.get(PLAYER).isEmpty());
+            Assertions.assertEquals(0, registry.getPlayerCount());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import be.yildizgames.module.network.protocol.MessageSeparation;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class SessionResumeStoreTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(20);
+
+    @TempDir
+    Path directory;
+
+    private static NettySession session(final EmbeddedChannel channel) {
+        return (NettySession) NettySessionFactory.createAnonymousText(channel);
+    }
+
+    /**
+     * Wait for the resume window to be over, and run the expiration.
+     */
+    private static void expire(final EmbeddedChannel channel) throws InterruptedException {
+        Thread.sleep(WINDOW.toMillis() * 2);
+        channel.runScheduledPendingTasks();
+    }
+
+    @Nested
+    class Expiry {
+
+        @Test
+        void notResumed() throws InterruptedException {
+            SessionResumeStore store = new SessionResumeStore(directory, 1024, WINDOW);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            NettySession session = session(channel);
+            String token = store.register(session);
+            store.disconnected(session, channel);
+            Assertions.assertEquals(1, store.size());
+            expire(channel);
+            Assertions.assertEquals(0, store.size());
+            Assertions.assertTrue(store.resume(token, 0).isEmpty());
+            Assertions.assertFalse(session.getJournal().canReplay(0));
+        }
+
+        @Test
+        void resumedBeforeExpiry() throws InterruptedException {
+            SessionResumeStore store = new SessionResumeStore(directory, 1024, WINDOW);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            NettySession session = session(channel);
+            String token = store.register(session);
+            store.disconnected(session, channel);
+            Assertions.assertSame(session, store.resume(token, 0).orElseThrow());
+            expire(channel);
+            Assertions.assertEquals(1, store.size());
+            store.discard(session);
+        }
+
+        @Test
+        void resumedOnAnotherChannel() throws InterruptedException {
+            SessionResumeStore store = new SessionResumeStore(directory, 1024, WINDOW);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            NettySession session = session(channel);
+            String token = store.register(session);
+            store.disconnected(session, channel);
+            EmbeddedChannel other = new EmbeddedChannel();
+            session.resume(other, 0);
+            expire(channel);
+            Assertions.assertEquals(1, store.size());
+            Assertions.assertSame(other, session.getChannel());
+            Assertions.assertTrue(store.resume(token, 0).isPresent());
+            store.discard(session);
+        }
+
+        @Test
+        void disconnectedFromPreviousChannel() throws InterruptedException {
+            SessionResumeStore store = new SessionResumeStore(directory, 1024, WINDOW);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            NettySession session = session(channel);
+            store.register(session);
+            EmbeddedChannel other = new EmbeddedChannel();
+            session.resume(other, 0);
+            // The previous channel closing after the resume must not expire the session.
+            store.disconnected(session, channel);
+            expire(channel);
+            Assertions.assertEquals(1, store.size());
+            store.discard(session);
+        }
+    }
+
+    @Nested
+    class Resume {
+
+        @Test
+        void unknownToken() {
+            SessionResumeStore store = new SessionResumeStore(directory, 1024, WINDOW);
+            Assertions.assertTrue(store.resume("unknown", 0).isEmpty());
+        }
+
+        @Test
+        void missedMessagesNotAvailable() {
+            SessionResumeStore store = new SessionResumeStore(directory, 1024, WINDOW);
+            NettySession session = session(new EmbeddedChannel());
+            String token = store.register(session);
+            session.getJournal().append(MessageSeparation.MESSAGE_BEGIN + "m1" + MessageSeparation.MESSAGE_END);
+            Assertions.assertTrue(store.resume(token, 1).isPresent());
+            Assertions.assertTrue(store.resume(token, 2).isEmpty());
+            store.discard(session);
+        }
+
+        @Test
+        void discarded() {
+            SessionResumeStore store = new SessionResumeStore(directory, 1024, WINDOW);
+            NettySession session = session(new EmbeddedChannel());
+            String token = store.register(session);
+            store.discard(session);
+            Assertions.assertEquals(0, store.size());
+            Assertions.assertTrue(store.resume(token, 0).isEmpty());
+        }
+    }
+
+    @Nested
+    class Close {
+
+        @Test
+        void everySessionDiscarded() {
+            SessionResumeStore store = new SessionResumeStore(directory, 1024, WINDOW);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            NettySession connected = session(channel);
+            NettySession disconnected = session(new EmbeddedChannel());
+            String token = store.register(connected);
+            store.register(disconnected);
+            store.disconnected(disconnected, disconnected.getChannel());
+            store.close();
+            Assertions.assertEquals(0, store.size());
+            Assertions.assertTrue(store.resume(token, 0).isEmpty());
+            Assertions.assertFalse(connected.getJournal().canReplay(0));
+            Assertions.assertFalse(disconnected.getJournal().canReplay(0));
+        }
+
+        @Test
+        void disconnectedAfterClose() {
+            SessionResumeStore store = new SessionResumeStore(directory, 1024, WINDOW);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            NettySession session = session(channel);
+            store.register(session);
+            store.close();
+            store.disconnected(session, channel);
+            // No expiration is scheduled for an already discarded session.
+            Assertions.assertEquals(-1, channel.runScheduledPendingTasks());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of the Yildiz-Engine project, licenced under the MIT License  (MIT)
+ *
+ *  Copyright (c) 2019 Grégory Van den Borre
+ *
+ *  More infos available: https://engine.yildiz-games.be
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ *  documentation files (the "Software"), to deal in the Software without restriction, including without
+ *  limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ *  of the Software, and to permit persons to whom the Software is furnished to do so,
+ *  subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all copies or substantial
+ *  portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ *  WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ *  OR COPYRIGHT  HOLDERS BE LIABLE FOR ANY CLAIM,
+ *  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE  SOFTWARE.
+ *
+ */
+
+package be.yildizgames.module.network.netty.server;
+
+import be.yildizgames.module.network.server.Session;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Grégory Van den Borre
+ */
+class SessionWebSocketMessageHandlerTest {
+
+    private static ByteBuf bytes(final String value) {
+        return Unpooled.copiedBuffer(value, CharsetUtil.UTF_8);
+    }
+
+    @Nested
+    class BinaryFrame {
+
+        @Test
+        void forwardedToListener() {
+            List<String> received = new ArrayList<>();
+            List<Session> sessions = new ArrayList<>();
+            EmbeddedChannel channel = new EmbeddedChannel(new SessionWebSocketMessageHandler(null, (s, m) -> {
+                sessions.add(s);
+                received.add(m.toString(CharsetUtil.UTF_8));
+            }));
+            ByteBuf content = bytes("binary");
+            channel.writeInbound(new BinaryWebSocketFrame(content));
+            Assertions.assertEquals(List.of("binary"), received);
+            Assertions.assertTrue(sessions.get(0) instanceof WebSocketNettySession);
+            Assertions.assertEquals(0, content.refCnt());
+            Assertions.assertFalse(channel.finish());
+        }
+    }
+
+    @Nested
+    class Fragments {
+
+        @Test
+        void assembled() {
+            List<String> received = new ArrayList<>();
+            EmbeddedChannel channel = new EmbeddedChannel(new SessionWebSocketMessageHandler(null,
+                    (s, m) -> received.add(m.toString(CharsetUtil.UTF_8))));
+            channel.writeInbound(new BinaryWebSocketFrame(false, 0, bytes("bin")));
+            channel.writeInbound(new ContinuationWebSocketFrame(false, 0, bytes("ary")));
+            Assertions.assertTrue(received.isEmpty());
+            channel.writeInbound(new ContinuationWebSocketFrame(true, 0, bytes("!")));
+            Assertions.assertEquals(List.of("binary!"), received);
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void streamed() {
+            List<String> received = new ArrayList<>();
+            EmbeddedChannel channel = new EmbeddedChannel(new SessionWebSocketMessageHandler(null, null,
+                    (s, f, last) -> received.add(f.toString(CharsetUtil.UTF_8) + ":" + last)));
+            channel.writeInbound(new BinaryWebSocketFrame(false, 0, bytes("bin")));
+            channel.writeInbound(new ContinuationWebSocketFrame(false, 0, bytes("ary")));
+            channel.writeInbound(new ContinuationWebSocketFrame(true, 0, bytes("!")));
+            Assertions.assertEquals(List.of("bin:false", "ary:false", "!:true"), received);
+            Assertions.assertFalse(channel.finish());
+        }
+
+        @Test
+        void releasedWhenClosed() {
+            EmbeddedChannel channel = new EmbeddedChannel(new SessionWebSocketMessageHandler(null,
+                    (s, m) -> Assertions.fail("Incomplete message")));
+            ByteBuf content = bytes("bin");
+            channel.writeInbound(new BinaryWebSocketFrame(false, 0, content));
+            Assertions.assertEquals(1, content.refCnt());
+            channel.close();
+            Assertions.assertEquals(0, content.refCnt());
+        }
+    }
+}